@@ -1,5 +1,7 @@
 package crazy;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -17,6 +19,8 @@ import crazy.gui.CrazyCircus;
  *  compte.
  * Si le paramètre donné est trop grand, c'est MAX_ANIMALS_NB qui est pris en
  *  compte.
+ * Le second argument, facultatif, est le chemin d'un fichier auquel sont
+ *  ajoutées les parties jouées (voir crazy.record.GameRecorder).
  */
 public final class Main {
 
@@ -33,11 +37,22 @@ public final class Main {
     public static void main(String[] args) {
         int n = n(args);
         final Set<AnimalColor> animals = animals(n);
+        final String record = args.length > 1 ? args[1] : null;
         
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                new CrazyCircus<AnimalColor>(animals).display();
+                CrazyCircus<AnimalColor> game =
+                        new CrazyCircus<AnimalColor>(animals);
+                if (record != null) {
+                    try {
+                        game.record(Paths.get(record));
+                    } catch (IOException e) {
+                        System.err.println("enregistrement impossible : "
+                                + e.getMessage());
+                    }
+                }
+                game.display();
             }
         });
     }
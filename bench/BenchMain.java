@@ -0,0 +1,35 @@
+package crazy.bench;
+
+/**
+ * Point d'entrée des mesures de performance.
+ * Le premier argument (facultatif) restreint les mesures aux cas dont le nom
+ *  le contient, par exemple "model." ou "executeOrder".
+ * Les arguments suivants (facultatifs) remplacent les nombres d'éléments de
+ *  Harness.DEFAULT_SIZES.
+ * Exemple : java crazy.bench.BenchMain manager. 3 10 64
+ */
+public final class BenchMain {
+
+    private BenchMain() {
+        // rien
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        String filter = args.length > 0 ? args[0] : "";
+        int[] sizes = Harness.DEFAULT_SIZES;
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        Harness h = new Harness(System.out, filter);
+        h.header();
+        ModelBench.register(h, sizes);
+        ManagerBench.register(h, sizes);
+        PodiumBench.register(h, sizes);
+    }
+}
@@ -0,0 +1,127 @@
+package crazy.bench;
+
+import java.io.PrintStream;
+
+import util.Contract;
+
+/**
+ * Banc de mesure minimal, sur le modèle de JMH : chaque cas est préparé pour
+ *  un paramètre (le nombre d'éléments), calibré pour qu'une itération dure
+ *  environ ITERATION_NANOS, exécuté WARMUP_ITERATIONS fois pour laisser le
+ *  compilateur optimiser, puis mesuré MEASURE_ITERATIONS fois.
+ * Le résultat de chaque itération est versé dans un puits volatile pour que
+ *  le travail mesuré ne puisse pas être éliminé.
+ */
+public final class Harness {
+
+    // ATTRIBUTS
+
+    /**
+     * Les nombres d'éléments utilisés par défaut : toutes les tailles de jeu
+     *  (de 2 à 10 animaux), puis des ensembles synthétiques plus grands.
+     */
+    public static final int[] DEFAULT_SIZES = {
+        2, 3, 4, 5, 6, 7, 8, 9, 10, 16, 32, 64
+    };
+
+    private static final long ITERATION_NANOS = 100000000L;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURE_ITERATIONS = 5;
+
+    private static volatile long sink;
+
+    private final PrintStream out;
+    private final String filter;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un banc qui écrit ses résultats sur out et ne mesure que les cas dont le
+     *  nom contient filter (tous si filter est vide).
+     * @pre <pre>
+     *     out != null && filter != null </pre>
+     */
+    public Harness(PrintStream out, String filter) {
+        Contract.checkCondition(out != null && filter != null);
+
+        this.out = out;
+        this.filter = filter;
+    }
+
+    // COMMANDES
+
+    /**
+     * Mesure c pour chacun des paramètres de params.
+     * @pre <pre>
+     *     name != null && c != null && params != null </pre>
+     */
+    public void measure(String name, Case c, int[] params) {
+        Contract.checkCondition(name != null && c != null && params != null);
+
+        if (!name.contains(filter)) {
+            return;
+        }
+        for (int p : params) {
+            if (c.setUp(p)) {
+                measure(name, c, p);
+            }
+        }
+    }
+
+    /**
+     * Affiche l'en-tête du tableau des résultats.
+     */
+    public void header() {
+        out.printf("%-32s %5s %14s %10s%n", "cas", "n", "ns/op", "±");
+    }
+
+    // OUTILS
+
+    private void measure(String name, Case c, int p) {
+        long ops = 1;
+        while (time(c, ops) < ITERATION_NANOS / 10) {
+            ops *= 2;
+        }
+        ops = Math.max(1, ops * 10);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            time(c, ops);
+        }
+        double[] samples = new double[MEASURE_ITERATIONS];
+        double mean = 0;
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            samples[i] = (double) time(c, ops) / ops;
+            mean += samples[i];
+        }
+        mean /= MEASURE_ITERATIONS;
+        double var = 0;
+        for (double s : samples) {
+            var += (s - mean) * (s - mean);
+        }
+        double dev = Math.sqrt(var / MEASURE_ITERATIONS);
+        out.printf("%-32s %5d %14.1f %10.1f%n", name, p, mean, dev);
+    }
+
+    private static long time(Case c, long ops) {
+        long start = System.nanoTime();
+        sink += c.run(ops);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Un cas mesuré.
+     */
+    public interface Case {
+
+        /**
+         * Prépare ce cas pour n éléments.
+         * Retourne false si ce cas n'a pas de sens pour n.
+         */
+        boolean setUp(int n);
+
+        /**
+         * Exécute ops fois l'opération mesurée et retourne une valeur qui en
+         *  dépend.
+         */
+        long run(long ops);
+    }
+}
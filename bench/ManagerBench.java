@@ -0,0 +1,94 @@
+package crazy.bench;
+
+import java.beans.PropertyVetoException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+import crazy.model.PodiumManager.Rank;
+import crazy.model.PodiumModel;
+import crazy.model.StdPodiumManager;
+
+/**
+ * Mesures de StdPodiumManager (sans observateur) : executeOrder pour chaque
+ *  ordre, et reinit, qui comprend le tirage des configurations.
+ * LO et KI sont mesurés ensemble pour que la configuration reste stable.
+ */
+final class ManagerBench {
+
+    private ManagerBench() {
+        // rien
+    }
+
+    static void register(Harness h, int[] sizes) {
+        h.measure("manager.executeOrder(LO+KI)",
+                new OrderCase(Order.LO, Order.KI), sizes);
+        for (Order o : new Order[] {Order.MA, Order.NI, Order.SO}) {
+            h.measure("manager.executeOrder(" + o.name() + ")",
+                    new OrderCase(o), sizes);
+        }
+        h.measure("manager.reinit", new ManagerCase() {
+            @Override
+            public long run(long ops) {
+                long r = 0;
+                for (long i = 0; i < ops; i++) {
+                    manager.reinit();
+                    r += manager.getModels().get(Rank.WORK_LEFT).size();
+                }
+                return r;
+            }
+        }, sizes);
+    }
+
+    /**
+     * Un cas portant sur un gestionnaire dont chaque podium de travail
+     *  contient au moins un élément (au moins deux dès que n >= 4).
+     */
+    private abstract static class ManagerCase implements Harness.Case {
+        PodiumManager<Integer> manager;
+
+        @Override
+        public boolean setUp(int n) {
+            Set<Integer> elems = new HashSet<Integer>();
+            for (int i = 0; i < n; i++) {
+                elems.add(i);
+            }
+            manager = new StdPodiumManager<Integer>(elems);
+            int min = n >= 4 ? 2 : 1;
+            Map<Rank, PodiumModel<Integer>> m = manager.getModels();
+            while (m.get(Rank.WORK_LEFT).size() < min
+                    || m.get(Rank.WORK_RIGHT).size() < min) {
+                manager.reinit();
+                m = manager.getModels();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Exécution répétée d'une suite d'ordres.
+     */
+    private static class OrderCase extends ManagerCase {
+        private final Order[] orders;
+
+        OrderCase(Order... orders) {
+            this.orders = orders;
+        }
+
+        @Override
+        public long run(long ops) {
+            try {
+                for (long i = 0; i < ops; i++) {
+                    for (Order o : orders) {
+                        manager.executeOrder(o);
+                    }
+                }
+            } catch (PropertyVetoException e) {
+                throw new AssertionError(e);
+            }
+            return manager.getShotsNb();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package crazy.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import crazy.model.PodiumModel;
+import crazy.model.StdPodiumModel;
+
+/**
+ * Mesures des opérations de StdPodiumModel, sur un podium de capacité n
+ *  contenant les entiers de 0 à n - 1 (ou n - 1 d'entre eux pour addTop).
+ */
+final class ModelBench {
+
+    private ModelBench() {
+        // rien
+    }
+
+    static void register(Harness h, int[] sizes) {
+        h.measure("model.addTop+removeTop", new ModelCase() {
+            @Override
+            public long run(long ops) {
+                long r = 0;
+                for (long i = 0; i < ops; i++) {
+                    model.addTop(extra);
+                    model.removeTop();
+                    r += model.size();
+                }
+                return r;
+            }
+            @Override
+            int initialSize(int n) {
+                return n - 1;
+            }
+        }, sizes);
+        h.measure("model.removeBottom+addTop", new ModelCase() {
+            @Override
+            public long run(long ops) {
+                long r = 0;
+                for (long i = 0; i < ops; i++) {
+                    Integer e = model.bottom();
+                    model.removeBottom();
+                    model.addTop(e);
+                    r += e;
+                }
+                return r;
+            }
+        }, sizes);
+        h.measure("model.rotate", new ModelCase() {
+            @Override
+            public long run(long ops) {
+                long r = 0;
+                for (long i = 0; i < ops; i++) {
+                    model.rotate();
+                    r += model.top();
+                }
+                return r;
+            }
+        }, sizes);
+        h.measure("model.similar", new ModelCase() {
+            @Override
+            public long run(long ops) {
+                long r = 0;
+                for (long i = 0; i < ops; i++) {
+                    if (model.similar(copy)) {
+                        r += 1;
+                    }
+                }
+                return r;
+            }
+        }, sizes);
+        h.measure("model.toString", new ModelCase() {
+            @Override
+            public long run(long ops) {
+                long r = 0;
+                for (long i = 0; i < ops; i++) {
+                    r += model.toString().length();
+                }
+                return r;
+            }
+        }, sizes);
+    }
+
+    /**
+     * Un cas portant sur un modèle, sa copie et un élément absent du modèle.
+     */
+    private abstract static class ModelCase implements Harness.Case {
+        PodiumModel<Integer> model;
+        PodiumModel<Integer> copy;
+        Integer extra;
+
+        @Override
+        public boolean setUp(int n) {
+            List<Integer> init = new ArrayList<Integer>(n);
+            for (int i = 0; i < initialSize(n); i++) {
+                init.add(i);
+            }
+            model = new StdPodiumModel<Integer>(init, n);
+            copy = new StdPodiumModel<Integer>(init, n);
+            extra = n - 1;
+            return true;
+        }
+
+        int initialSize(int n) {
+            return n;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package crazy.bench;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import crazy.model.StdPodiumModel;
+import crazy.view.Drawable;
+import crazy.view.Podium;
+
+/**
+ * Mesure du dessin d'un Podium plein dans une image hors écran.
+ */
+final class PodiumBench {
+
+    private PodiumBench() {
+        // rien
+    }
+
+    static void register(Harness h, int[] sizes) {
+        h.measure("view.Podium.paint", new Harness.Case() {
+            private Podium<Tile> podium;
+            private Graphics2D g;
+
+            @Override
+            public boolean setUp(int n) {
+                List<Tile> tiles = new ArrayList<Tile>(n);
+                for (int i = 0; i < n; i++) {
+                    tiles.add(new Tile(i, n));
+                }
+                podium = new Podium<Tile>(new StdPodiumModel<Tile>(tiles, n));
+                // hors d'une fenêtre, rien n'est hérité du conteneur
+                podium.setBackground(Color.WHITE);
+                podium.setForeground(Color.BLACK);
+                Dimension d = podium.getPreferredSize();
+                podium.setSize(d);
+                BufferedImage img = new BufferedImage(d.width, d.height,
+                        BufferedImage.TYPE_INT_RGB);
+                if (g != null) {
+                    g.dispose();
+                }
+                g = img.createGraphics();
+                return true;
+            }
+
+            @Override
+            public long run(long ops) {
+                for (long i = 0; i < ops; i++) {
+                    g.setClip(null);
+                    podium.paint(g);
+                }
+                return podium.getModel().size();
+            }
+        }, sizes);
+    }
+
+    /**
+     * Un élément synthétique, d'une couleur qui dépend de son rang.
+     */
+    private static final class Tile implements Drawable {
+        private final Color color;
+
+        Tile(int i, int n) {
+            color = Color.getHSBColor((float) i / n, 1f, 1f);
+        }
+
+        @Override
+        public void draw(Graphics g) {
+            Rectangle r = g.getClipBounds();
+            g.setColor(Color.DARK_GRAY);
+            g.drawRect(0, 0, r.width - 1, r.height - 1);
+            g.setColor(color);
+            g.fillRect(1, 1, r.width - 2, r.height - 2);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package crazy.explore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import crazy.solver.PackedState;
+import util.Contract;
+
+/**
+ * Coordinateur d'un parcours en largeur réparti entre plusieurs processus
+ *  (BfsWorker), sur une ou plusieurs machines.
+ * Chaque calculateur possède une partie des configurations (voir
+ *  Partition) : il mémorise celles qu'il a atteintes et les niveaux qu'elles
+ *  forment. Les configurations voisines d'un niveau sont envoyées à leurs
+ *  propriétaires par des fichiers du répertoire partagé, par séries triées
+ *  (RankFile) ; le coordinateur n'échange avec les calculateurs, par des
+ *  connexions TCP, que des commandes et des comptes.
+ * Chaque niveau d franchit deux barrières :
+ * <ul>
+ *   <li> EXPAND : chaque calculateur développe sa part du niveau d et écrit
+ *        un fichier par destinataire ;</li>
+ *   <li> MERGE : chaque calculateur lit les fichiers qui lui sont destinés,
+ *        retient les configurations qu'il n'avait pas encore atteintes, qui
+ *        forment sa part du niveau d + 1, et en donne le nombre.</li>
+ * </ul>
+ * Le parcours s'arrête au premier niveau vide.
+ * @inv <pre>
+ *     getWorkersNb() >= 1 </pre>
+ */
+public class BfsCoordinator {
+
+    // ATTRIBUTS
+
+    static final int CONFIG = 1;
+    static final int EXPAND = 2;
+    static final int MERGE = 3;
+    static final int STOP = 4;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final ServerSocket server;
+    private final int workersNb;
+    private final int n;
+    private final int k;
+    private final boolean soAllowed;
+    private final Path dir;
+    private final int bufferSize;
+    private final PrintStream log;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un coordinateur qui attend workersNb calculateurs sur server, pour un
+     *  parcours depuis PackedState.identity(n, k) qui autorise SO si et
+     *  seulement si soAllowed.
+     * dir est le répertoire partagé, tel que le voient les calculateurs ;
+     *  chacun d'eux dispose d'un tampon de bufferSize rangs. La progression
+     *  est décrite dans log s'il n'est pas null.
+     * @pre <pre>
+     *     server != null && dir != null
+     *     workersNb >= 1
+     *     2 <= n <= PackedState.MAX_ELEMENTS
+     *     0 <= k <= n
+     *     bufferSize >= workersNb </pre>
+     */
+    public BfsCoordinator(ServerSocket server, int workersNb, int n, int k,
+            boolean soAllowed, Path dir, int bufferSize, PrintStream log) {
+        Contract.checkCondition(server != null && dir != null);
+        Contract.checkCondition(workersNb >= 1);
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+        Contract.checkCondition(0 <= k && k <= n);
+        Contract.checkCondition(bufferSize >= workersNb);
+
+        this.server = server;
+        this.workersNb = workersNb;
+        this.n = n;
+        this.k = k;
+        this.soAllowed = soAllowed;
+        this.dir = dir;
+        this.bufferSize = bufferSize;
+        this.log = log;
+    }
+
+    // REQUETES
+
+    public int getWorkersNb() {
+        return workersNb;
+    }
+
+    // COMMANDES
+
+    /**
+     * Attend les calculateurs, conduit le parcours et en retourne le bilan.
+     * Les calculateurs sont arrêtés à la fin du parcours.
+     * @throws IOException en cas d'erreur de communication, notamment si un
+     *  calculateur s'arrête avant la fin
+     */
+    public DistanceReport run() throws IOException {
+        long start = System.nanoTime();
+        List<Link> links = new ArrayList<Link>(workersNb);
+        try {
+            for (int i = 0; i < workersNb; i++) {
+                Link l = new Link(server.accept());
+                links.add(l);
+                l.out.writeInt(CONFIG);
+                l.out.writeInt(i);
+                l.out.writeInt(workersNb);
+                l.out.writeInt(n);
+                l.out.writeInt(k);
+                l.out.writeBoolean(soAllowed);
+                l.out.writeInt(bufferSize);
+                l.out.writeUTF(dir.toString());
+                l.out.flush();
+            }
+            long[] sizes = new long[] {collectSizes(links)};
+            int d = 0;
+            long size = sizes[0];
+            while (size > 0) {
+                broadcast(links, EXPAND, d);
+                collectSizes(links);
+                broadcast(links, MERGE, d);
+                size = collectSizes(links);
+                d += 1;
+                if (log != null) {
+                    log.printf("niveau %d : %d configurations (%.1f s)%n",
+                            d, size,
+                            (System.nanoTime() - start) / NANOS_PER_SECOND);
+                }
+                if (size > 0) {
+                    sizes = Arrays.copyOf(sizes, d + 1);
+                    sizes[d] = size;
+                }
+            }
+            // le niveau d, vide, est le dernier
+            broadcast(links, STOP, d);
+            return new DistanceReport(n, k, soAllowed, sizes,
+                    System.nanoTime() - start);
+        } finally {
+            for (Link l : links) {
+                l.socket.close();
+            }
+        }
+    }
+
+    // OUTILS
+
+    private static void broadcast(List<Link> links, int command, int d)
+            throws IOException {
+        for (Link l : links) {
+            l.out.writeInt(command);
+            l.out.writeInt(d);
+            l.out.flush();
+        }
+    }
+
+    /**
+     * Attend la réponse de chaque calculateur et retourne leur somme.
+     */
+    private static long collectSizes(List<Link> links) throws IOException {
+        long sum = 0;
+        for (Link l : links) {
+            try {
+                sum += l.in.readLong();
+            } catch (EOFException e) {
+                throw new IOException("un calculateur s'est arrêté", e);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * La connexion avec un calculateur.
+     */
+    private static final class Link {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Link(Socket s) throws IOException {
+            socket = s;
+            in = new DataInputStream(
+                    new BufferedInputStream(s.getInputStream()));
+            out = new DataOutputStream(
+                    new BufferedOutputStream(s.getOutputStream()));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package crazy.explore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import crazy.model.Order;
+import crazy.solver.PackedState;
+import crazy.solver.StateRanking;
+import util.Contract;
+
+/**
+ * Calculateur d'un parcours en largeur réparti, piloté par un
+ *  BfsCoordinator.
+ * Un calculateur range ses fichiers dans le sous-répertoire worker-i du
+ *  répertoire partagé, où i est son numéro : l'ensemble de ses
+ *  configurations atteintes (MappedBitSet, indexé par Partition.localIndex)
+ *  et sa part du niveau courant. Les fichiers échangés avec les autres
+ *  calculateurs (exchange-d-i-j.bin, de i vers j, au niveau d) sont
+ *  supprimés par leur destinataire une fois lus.
+ */
+public class BfsWorker {
+
+    // ATTRIBUTS
+
+    private final String host;
+    private final int port;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un calculateur qui se met à la disposition du coordinateur à l'écoute
+     *  sur host:port.
+     * @pre <pre>
+     *     host != null </pre>
+     */
+    public BfsWorker(String host, int port) {
+        Contract.checkCondition(host != null);
+
+        this.host = host;
+        this.port = port;
+    }
+
+    // COMMANDES
+
+    /**
+     * Se connecte au coordinateur et exécute ses commandes jusqu'à STOP.
+     * @throws IOException en cas d'erreur d'entrée-sortie, ou si la
+     *  connexion est rompue
+     */
+    public void run() throws IOException {
+        Socket socket = new Socket(host, port);
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != BfsCoordinator.CONFIG) {
+                throw new IOException("commande inattendue");
+            }
+            Task t = new Task(in.readInt(), in.readInt(), in.readInt(),
+                    in.readInt(), in.readBoolean(), in.readInt(),
+                    Paths.get(in.readUTF()));
+            out.writeLong(t.init());
+            out.flush();
+            while (true) {
+                int command = in.readInt();
+                int d = in.readInt();
+                if (command == BfsCoordinator.EXPAND) {
+                    t.expand(d);
+                    out.writeLong(0);
+                } else if (command == BfsCoordinator.MERGE) {
+                    out.writeLong(t.merge(d));
+                } else if (command == BfsCoordinator.STOP) {
+                    t.clean(d);
+                    return;
+                } else {
+                    throw new IOException("commande inattendue");
+                }
+                out.flush();
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    // OUTILS
+
+    /**
+     * La part d'un parcours confiée à un calculateur.
+     */
+    private static final class Task {
+        private final int id;
+        private final int workersNb;
+        private final int n;
+        private final int k;
+        private final Order[] orders;
+        private final Path shared;
+        private final Path dir;
+        private final Partition partition;
+        private final MappedBitSet visited;
+        // un tampon par destinataire lors de EXPAND, un seul lors de MERGE
+        private final long[][] buffers;
+        private final int[] sizes;
+        private final long[] buffer;
+
+        Task(int id, int workersNb, int n, int k, boolean soAllowed,
+                int bufferSize, Path shared) throws IOException {
+            this.id = id;
+            this.workersNb = workersNb;
+            this.n = n;
+            this.k = k;
+            this.shared = shared;
+            orders = soAllowed ? Order.values()
+                    : new Order[] {Order.LO, Order.KI, Order.MA, Order.NI};
+            dir = shared.resolve("worker-" + id);
+            Files.createDirectories(dir);
+            partition = new Partition(StateRanking.count(n), workersNb);
+            visited = new MappedBitSet(dir.resolve("visited.bin"),
+                    partition.localSize(id));
+            visited.clear();
+            buffers = new long[workersNb][bufferSize / workersNb];
+            sizes = new int[workersNb];
+            buffer = new long[bufferSize];
+        }
+
+        /**
+         * Produit la part du niveau 0 et en retourne la taille.
+         */
+        long init() throws IOException {
+            long root = StateRanking.rank(PackedState.identity(n, k), n);
+            RankFile.Writer w = new RankFile.Writer(level(0));
+            try {
+                if (partition.ownerOf(root) == id) {
+                    visited.set(partition.localIndex(root));
+                    w.writeRun(new long[] {root}, 1);
+                    return 1;
+                }
+                return 0;
+            } finally {
+                w.close();
+            }
+        }
+
+        /**
+         * Développe la part du niveau d : écrit les rangs des configurations
+         *  voisines dans un fichier par destinataire.
+         */
+        void expand(int d) throws IOException {
+            RankFile.Writer[] outs = new RankFile.Writer[workersNb];
+            RankFile.Reader in = new RankFile.Reader(level(d));
+            try {
+                for (int j = 0; j < workersNb; j++) {
+                    outs[j] = new RankFile.Writer(exchange(d, id, j));
+                }
+                while (in.hasNext()) {
+                    long s = StateRanking.unrank(in.next(), n);
+                    for (Order o : orders) {
+                        long t = PackedState.unapply(s, o, n);
+                        if (t == s) {
+                            continue;
+                        }
+                        long r = StateRanking.rank(t, n);
+                        int j = partition.ownerOf(r);
+                        if (sizes[j] == buffers[j].length) {
+                            spill(j, outs[j]);
+                        }
+                        buffers[j][sizes[j]++] = r;
+                    }
+                }
+                for (int j = 0; j < workersNb; j++) {
+                    spill(j, outs[j]);
+                }
+            } finally {
+                in.close();
+                for (RankFile.Writer w : outs) {
+                    if (w != null) {
+                        w.close();
+                    }
+                }
+            }
+            Files.delete(level(d));
+        }
+
+        /**
+         * Lit les fichiers destinés à ce calculateur au niveau d, produit sa
+         *  part du niveau d + 1 et en retourne la taille.
+         */
+        long merge(int d) throws IOException {
+            RankFile.Writer out = new RankFile.Writer(level(d + 1));
+            long total = 0;
+            int size = 0;
+            try {
+                for (int i = 0; i < workersNb; i++) {
+                    Path file = exchange(d, i, id);
+                    RankFile.Reader in = new RankFile.Reader(file);
+                    try {
+                        while (in.hasNext()) {
+                            long r = in.next();
+                            if (visited.set(partition.localIndex(r))) {
+                                if (size == buffer.length) {
+                                    Arrays.sort(buffer, 0, size);
+                                    out.writeRun(buffer, size);
+                                    size = 0;
+                                }
+                                buffer[size++] = r;
+                                total += 1;
+                            }
+                        }
+                    } finally {
+                        in.close();
+                    }
+                    Files.delete(file);
+                }
+                if (size > 0) {
+                    Arrays.sort(buffer, 0, size);
+                    out.writeRun(buffer, size);
+                }
+            } finally {
+                out.close();
+            }
+            return total;
+        }
+
+        /**
+         * Supprime les fichiers du calculateur, après le niveau vide d.
+         */
+        void clean(int d) throws IOException {
+            Files.deleteIfExists(level(d));
+            Files.deleteIfExists(dir.resolve("visited.bin"));
+            Files.deleteIfExists(dir);
+        }
+
+        /**
+         * Trie et dédoublonne le tampon du destinataire j, et l'écrit dans
+         *  out en une série.
+         */
+        private void spill(int j, RankFile.Writer out) throws IOException {
+            long[] b = buffers[j];
+            Arrays.sort(b, 0, sizes[j]);
+            int count = 0;
+            for (int i = 0; i < sizes[j]; i++) {
+                if (i == 0 || b[i] != b[i - 1]) {
+                    b[count++] = b[i];
+                }
+            }
+            if (count > 0) {
+                out.writeRun(b, count);
+            }
+            sizes[j] = 0;
+        }
+
+        private Path level(int d) {
+            return dir.resolve(String.format("level-%03d.bin", d));
+        }
+
+        private Path exchange(int d, int from, int to) {
+            return shared.resolve(String.format("exchange-%03d-%d-%d.bin", d,
+                    from, to));
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package crazy.explore;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import crazy.model.Order;
+import crazy.solver.PackedState;
+import crazy.solver.StateRanking;
+import util.Contract;
+
+/**
+ * Parcours en largeur, hors mémoire, de toutes les configurations sur n
+ *  éléments depuis l'objectif PackedState.identity(n, k), en défaisant les
+ *  ordres : la variante de ParallelBfs pour les n (12 à 14) dont les
+ *  configurations se comptent en milliards.
+ * Tout est stocké dans un répertoire de travail :
+ * <ul>
+ *   <li> visited.bin : l'ensemble des configurations atteintes, tableau de
+ *        StateRanking.count(n) bits projeté en mémoire (MappedBitSet) ;</li>
+ *   <li> level-d.bin : les rangs des configurations à distance d, par
+ *        séries triées (RankFile) ;</li>
+ *   <li> checkpoint : la taille de chacun des niveaux terminés.</li>
+ * </ul>
+ * Le niveau d + 1 est produit en lisant le niveau d : les rangs des
+ *  configurations voisines sont accumulés dans un tampon de bufferSize
+ *  rangs qui, une fois plein, est trié et dédoublonné, puis confronté
+ *  au tableau de bits dans l'ordre croissant des rangs, c'est-à-dire en le
+ *  parcourant séquentiellement ; les rangs nouveaux forment une série
+ *  triée du niveau d + 1.
+ * Le tas ne contient que le tampon (8 * bufferSize octets). Il faut sur le
+ *  disque StateRanking.count(n) / 8 octets pour le tableau de bits et de
+ *  l'ordre de 1 à 3 octets par configuration pour les niveaux.
+ * Le point de reprise est remplacé, de façon atomique, à la fin de chaque
+ *  niveau, une fois le niveau et le tableau de bits écrits sur le disque.
+ *  Après une interruption, run() reprend au dernier niveau terminé : le
+ *  tableau de bits, qui peut contenir des configurations du niveau
+ *  interrompu, est reconstruit à partir des niveaux terminés.
+ * @inv <pre>
+ *     2 <= getElementsNb() <= PackedState.MAX_ELEMENTS
+ *     0 <= getGoalSplit() <= getElementsNb()
+ *     getBufferSize() >= 1 </pre>
+ */
+public class DiskBfs {
+
+    // ATTRIBUTS
+
+    /**
+     * La taille par défaut du tampon, en rangs (128 Mo).
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 24;
+
+    private static final byte[] MAGIC = {'C', 'C', 'B', 'F'};
+    private static final byte VERSION = 1;
+    private static final String VISITED = "visited.bin";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String CHECKPOINT_TMP = "checkpoint.tmp";
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Path dir;
+    private final int n;
+    private final int k;
+    private final boolean soAllowed;
+    private final Order[] orders;
+    private final int bufferSize;
+    private final PrintStream log;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un parcours depuis PackedState.identity(n, k), qui autorise SO si et
+     *  seulement si soAllowed, dont les fichiers sont rangés dans dir (créé
+     *  au besoin) et dont la progression est décrite dans log s'il n'est pas
+     *  null.
+     * @pre <pre>
+     *     dir != null
+     *     2 <= n <= PackedState.MAX_ELEMENTS
+     *     0 <= k <= n
+     *     bufferSize >= 1 </pre>
+     */
+    public DiskBfs(Path dir, int n, int k, boolean soAllowed, int bufferSize,
+            PrintStream log) {
+        Contract.checkCondition(dir != null);
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+        Contract.checkCondition(0 <= k && k <= n);
+        Contract.checkCondition(bufferSize >= 1);
+
+        this.dir = dir;
+        this.n = n;
+        this.k = k;
+        this.soAllowed = soAllowed;
+        this.bufferSize = bufferSize;
+        this.log = log;
+        orders = soAllowed ? Order.values()
+                : new Order[] {Order.LO, Order.KI, Order.MA, Order.NI};
+    }
+
+    // REQUETES
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getElementsNb() {
+        return n;
+    }
+
+    public int getGoalSplit() {
+        return k;
+    }
+
+    public boolean isSoAllowed() {
+        return soAllowed;
+    }
+
+    // COMMANDES
+
+    /**
+     * Effectue le parcours, ou le reprend là où il s'était arrêté, et en
+     *  retourne le bilan (sa durée cumule celle des exécutions précédentes).
+     * Si v n'est pas null, v.visit(r, d) est appelé une fois pour chaque
+     *  configuration, de rang r et de distance d, y compris celles des
+     *  niveaux terminés lors d'une exécution précédente, toujours depuis le
+     *  thread appelant.
+     * @throws IOException en cas d'erreur d'entrée-sortie, ou si dir contient
+     *  un autre parcours
+     */
+    public DistanceReport run(ParallelBfs.Visitor v) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        MappedBitSet visited = new MappedBitSet(dir.resolve(VISITED),
+                StateRanking.count(n));
+        Checkpoint cp = readCheckpoint();
+        if (cp == null) {
+            cp = new Checkpoint(new long[] {1}, 0, false);
+            long root = StateRanking.rank(PackedState.identity(n, k), n);
+            visited.clear();
+            visited.set(root);
+            if (v != null) {
+                v.visit(root, 0);
+            }
+            RankFile.Writer w = new RankFile.Writer(level(0));
+            w.writeRun(new long[] {root}, 1);
+            w.close();
+            visited.force();
+            writeCheckpoint(cp);
+        } else {
+            if (!cp.complete) {
+                visited.clear();
+            }
+            for (int d = 0; d < cp.sizes.length; d++) {
+                if (!cp.complete || v != null) {
+                    replay(d, cp.complete ? null : visited, v);
+                }
+            }
+        }
+        long[] sizes = cp.sizes;
+        long before = cp.elapsedNanos;
+        boolean complete = cp.complete;
+        long[] buf = complete ? null : new long[bufferSize];
+        while (!complete) {
+            int d = sizes.length;
+            long size = expand(d, visited, buf, v);
+            if (size == 0) {
+                Files.delete(level(d));
+                complete = true;
+            } else {
+                sizes = Arrays.copyOf(sizes, d + 1);
+                sizes[d] = size;
+            }
+            visited.force();
+            long elapsed = before + System.nanoTime() - start;
+            writeCheckpoint(new Checkpoint(sizes, elapsed, complete));
+            if (log != null) {
+                log.printf("n=%d k=%d : niveau %d, %d configurations"
+                        + " (%.1f s)%n", n, k, d, size,
+                        elapsed / NANOS_PER_SECOND);
+            }
+        }
+        return new DistanceReport(n, k, soAllowed, sizes,
+                before + System.nanoTime() - start);
+    }
+
+    /**
+     * Effectue le parcours, ou le reprend là où il s'était arrêté, et en
+     *  retourne le bilan.
+     * @throws IOException en cas d'erreur d'entrée-sortie, ou si dir contient
+     *  un autre parcours
+     */
+    public DistanceReport run() throws IOException {
+        return run(null);
+    }
+
+    // OUTILS
+
+    private Path level(int d) {
+        return dir.resolve(String.format("level-%03d.bin", d));
+    }
+
+    /**
+     * Produit le niveau d à partir du niveau d - 1 et en retourne la taille.
+     */
+    private long expand(int d, MappedBitSet visited, long[] buf,
+            ParallelBfs.Visitor v) throws IOException {
+        RankFile.Reader in = new RankFile.Reader(level(d - 1));
+        RankFile.Writer out = new RankFile.Writer(level(d));
+        long total = 0;
+        try {
+            int size = 0;
+            while (in.hasNext()) {
+                long s = StateRanking.unrank(in.next(), n);
+                for (Order o : orders) {
+                    long t = PackedState.unapply(s, o, n);
+                    if (t == s) {
+                        continue;
+                    }
+                    if (size == buf.length) {
+                        total += spill(buf, size, d, visited, out, v);
+                        size = 0;
+                    }
+                    buf[size++] = StateRanking.rank(t, n);
+                }
+            }
+            total += spill(buf, size, d, visited, out, v);
+        } finally {
+            in.close();
+            out.close();
+        }
+        return total;
+    }
+
+    /**
+     * Trie les size premiers rangs de buf, pose les bits de ceux qui ne
+     *  l'étaient pas encore et les écrit dans out, en une série.
+     * Retourne leur nombre.
+     */
+    private static int spill(long[] buf, int size, int d, MappedBitSet visited,
+            RankFile.Writer out, ParallelBfs.Visitor v) throws IOException {
+        Arrays.sort(buf, 0, size);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            long r = buf[i];
+            if ((i == 0 || r != buf[i - 1]) && visited.set(r)) {
+                buf[count++] = r;
+                if (v != null) {
+                    v.visit(r, d);
+                }
+            }
+        }
+        if (count > 0) {
+            out.writeRun(buf, count);
+        }
+        return count;
+    }
+
+    /**
+     * Relit le niveau d : pose les bits de ses rangs dans visited et le
+     *  transmet à v, s'ils ne sont pas null.
+     */
+    private void replay(int d, MappedBitSet visited, ParallelBfs.Visitor v)
+            throws IOException {
+        RankFile.Reader in = new RankFile.Reader(level(d));
+        try {
+            while (in.hasNext()) {
+                long r = in.next();
+                if (visited != null) {
+                    visited.set(r);
+                }
+                if (v != null) {
+                    v.visit(r, d);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Le point de reprise de dir, ou null s'il n'y en a pas.
+     * @throws IOException si le point de reprise est illisible ou décrit un
+     *  autre parcours
+     */
+    private Checkpoint readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file));
+        byte[] magic = new byte[MAGIC.length];
+        b.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || b.get() != VERSION
+                || b.get() != n || b.get() != k
+                || (b.get() != 0) != soAllowed) {
+            throw new IOException(dir + " contient un autre parcours");
+        }
+        boolean complete = b.get() != 0;
+        long elapsed = b.getLong();
+        long[] sizes = new long[b.getInt()];
+        for (int d = 0; d < sizes.length; d++) {
+            sizes[d] = b.getLong();
+        }
+        return new Checkpoint(sizes, elapsed, complete);
+    }
+
+    /**
+     * Remplace le point de reprise de dir par cp.
+     */
+    private void writeCheckpoint(Checkpoint cp) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(MAGIC.length + 5 + Long.BYTES
+                + Integer.BYTES + Long.BYTES * cp.sizes.length);
+        b.put(MAGIC).put(VERSION).put((byte) n).put((byte) k)
+                .put((byte) (soAllowed ? 1 : 0))
+                .put((byte) (cp.complete ? 1 : 0))
+                .putLong(cp.elapsedNanos).putInt(cp.sizes.length);
+        for (long s : cp.sizes) {
+            b.putLong(s);
+        }
+        b.flip();
+        Path tmp = dir.resolve(CHECKPOINT_TMP);
+        FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            while (b.hasRemaining()) {
+                ch.write(b);
+            }
+            ch.force(true);
+        } finally {
+            ch.close();
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Le contenu d'un point de reprise.
+     */
+    private static final class Checkpoint {
+        private final long[] sizes;
+        private final long elapsedNanos;
+        private final boolean complete;
+
+        Checkpoint(long[] sizes, long elapsedNanos, boolean complete) {
+            this.sizes = sizes;
+            this.elapsedNanos = elapsedNanos;
+            this.complete = complete;
+        }
+    }
+}
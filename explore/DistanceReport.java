@@ -0,0 +1,113 @@
+package crazy.explore;
+
+import java.util.Arrays;
+
+import util.Contract;
+
+/**
+ * Le bilan d'un parcours en largeur complet depuis l'objectif
+ *  PackedState.identity(n, k) : nombre de configurations à chaque distance,
+ *  durée.
+ * @inv <pre>
+ *     getMaxDistance() >= 0
+ *     forall 0 <= d <= getMaxDistance() : getLevelSize(d) >= 1
+ *     getLevelSize(0) == 1
+ *     getStatesNb() == somme des getLevelSize(d)
+ *     getElapsedNanos() >= 0 </pre>
+ */
+public final class DistanceReport {
+
+    // ATTRIBUTS
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final int elementsNb;
+    private final int goalSplit;
+    private final boolean soAllowed;
+    private final long[] levelSizes;
+    private final long elapsedNanos;
+
+    // CONSTRUCTEURS
+
+    /**
+     * @pre <pre>
+     *     sizes != null && sizes.length >= 1 </pre>
+     */
+    public DistanceReport(int n, int k, boolean so, long[] sizes,
+            long nanos) {
+        Contract.checkCondition(sizes != null && sizes.length >= 1);
+
+        elementsNb = n;
+        goalSplit = k;
+        soAllowed = so;
+        levelSizes = Arrays.copyOf(sizes, sizes.length);
+        elapsedNanos = nanos;
+    }
+
+    // REQUETES
+
+    /**
+     * La distance moyenne d'une configuration à l'objectif.
+     */
+    public double getAverageDistance() {
+        double sum = 0;
+        for (int d = 0; d < levelSizes.length; d++) {
+            sum += (double) d * levelSizes[d];
+        }
+        return sum / getStatesNb();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getElementsNb() {
+        return elementsNb;
+    }
+
+    public int getGoalSplit() {
+        return goalSplit;
+    }
+
+    /**
+     * Le nombre de configurations à distance d de l'objectif.
+     * @pre <pre>
+     *     0 <= d <= getMaxDistance() </pre>
+     */
+    public long getLevelSize(int d) {
+        Contract.checkCondition(0 <= d && d <= getMaxDistance());
+
+        return levelSizes[d];
+    }
+
+    /**
+     * La plus grande distance d'une configuration à l'objectif.
+     */
+    public int getMaxDistance() {
+        return levelSizes.length - 1;
+    }
+
+    /**
+     * Le nombre de configurations atteintes.
+     */
+    public long getStatesNb() {
+        long sum = 0;
+        for (long s : levelSizes) {
+            sum += s;
+        }
+        return sum;
+    }
+
+    public boolean isSoAllowed() {
+        return soAllowed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d k=%d%s : %d configurations, distance"
+                + " maximale %d, moyenne %.3f (%.3f s) %s",
+                elementsNb, goalSplit, soAllowed ? "" : " sans SO",
+                getStatesNb(), getMaxDistance(), getAverageDistance(),
+                elapsedNanos / NANOS_PER_SECOND, Arrays.toString(levelSizes));
+    }
+}
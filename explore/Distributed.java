@@ -0,0 +1,96 @@
+package crazy.explore;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Point d'entrée du parcours en largeur réparti (voir BfsCoordinator).
+ * Trois modes, selon le premier argument :
+ * <ul>
+ *   <li> coordinator port w n k so|noso dir : attend w calculateurs sur le
+ *        port donné, dir étant le répertoire partagé ;</li>
+ *   <li> worker host port : se met à la disposition du coordinateur à
+ *        l'écoute sur host:port ;</li>
+ *   <li> local w n k so|noso [dir] : lance w calculateurs, chacun dans sa
+ *        propre JVM sur cette machine (avec le même classpath), et les
+ *        coordonne ; dir est par défaut un répertoire temporaire.</li>
+ * </ul>
+ * Le bilan du parcours est affiché par le coordinateur.
+ */
+public final class Distributed {
+
+    private static final int BUFFER_SIZE = 1 << 22;
+
+    private Distributed() {
+        // rien
+    }
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        if (args.length >= 3 && args[0].equals("worker")) {
+            new BfsWorker(args[1], Integer.parseInt(args[2])).run();
+        } else if (args.length >= 7 && args[0].equals("coordinator")) {
+            ServerSocket server = new ServerSocket(Integer.parseInt(args[1]));
+            try {
+                System.out.println(new BfsCoordinator(server,
+                        Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                        Integer.parseInt(args[4]), !args[5].equals("noso"),
+                        Paths.get(args[6]), BUFFER_SIZE, System.out).run());
+            } finally {
+                server.close();
+            }
+        } else if (args.length >= 5 && args[0].equals("local")) {
+            Path dir = args.length > 5 ? Paths.get(args[5])
+                    : Files.createTempDirectory("bfs");
+            System.out.println(local(Integer.parseInt(args[1]),
+                    Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                    !args[4].equals("noso"), dir));
+        } else {
+            System.err.println("usage : java crazy.explore.Distributed"
+                    + " coordinator port w n k so|noso dir"
+                    + " | worker host port | local w n k so|noso [dir]");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Effectue un parcours réparti entre w JVM lancées sur cette machine.
+     */
+    public static DistanceReport local(int w, int n, int k, boolean so,
+            Path dir) throws IOException, InterruptedException {
+        ServerSocket server = new ServerSocket(0, w,
+                InetAddress.getLoopbackAddress());
+        List<Process> workers = new ArrayList<Process>(w);
+        try {
+            String java = System.getProperty("java.home") + File.separator
+                    + "bin" + File.separator + "java";
+            for (int i = 0; i < w; i++) {
+                ProcessBuilder pb = new ProcessBuilder(java, "-cp",
+                        System.getProperty("java.class.path"),
+                        Distributed.class.getName(), "worker",
+                        server.getInetAddress().getHostAddress(),
+                        String.valueOf(server.getLocalPort()));
+                pb.inheritIO();
+                workers.add(pb.start());
+            }
+            DistanceReport r = new BfsCoordinator(server, w, n, k, so, dir,
+                    BUFFER_SIZE, System.out).run();
+            for (Process p : workers) {
+                p.waitFor();
+            }
+            return r;
+        } finally {
+            server.close();
+            for (Process p : workers) {
+                p.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package crazy.explore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Point d'entrée du calcul des distances de toutes les configurations.
+ * Arguments (tous facultatifs), dans l'ordre :
+ * <ul>
+ *   <li> le plus grand nombre d'éléments (DEFAULT_MAX_ELEMENTS par
+ *        défaut) ;</li>
+ *   <li> "so" ou "noso", selon que SO est autorisé ou non ("so" par
+ *        défaut) ;</li>
+ *   <li> le nombre de threads (le nombre de processeurs par défaut) ;</li>
+ *   <li> un répertoire : s'il est donné, les parcours sont effectués hors
+ *        mémoire (DiskBfs), dans un sous-répertoire par valeur de n et de k,
+ *        et un parcours interrompu reprend au dernier niveau terminé.</li>
+ * </ul>
+ * Pour chaque n à partir de 2, et chaque taille k <= n / 2 du podium gauche
+ *  de l'objectif (les autres s'en déduisent en échangeant les podiums, voir
+ *  CanonicalForm), le bilan du parcours est affiché, suivi du nombre de Dieu
+ *  de n : la plus grande distance d'une partie sur n éléments.
+ */
+public final class Explore {
+
+    private static final int DEFAULT_MAX_ELEMENTS = 9;
+
+    private Explore() {
+        // rien
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maxN = args.length > 0
+                ? Integer.parseInt(args[0]) : DEFAULT_MAX_ELEMENTS;
+        boolean so = !(args.length > 1 && args[1].equals("noso"));
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        Path dir = args.length > 3 ? Paths.get(args[3]) : null;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int n = 2; n <= maxN; n++) {
+                int god = 0;
+                for (int k = 0; k <= n / 2; k++) {
+                    DistanceReport r;
+                    if (dir == null) {
+                        r = new ParallelBfs(n, k, so, pool).run();
+                    } else {
+                        r = new DiskBfs(dir.resolve(n + "-" + k), n, k, so,
+                                DiskBfs.DEFAULT_BUFFER_SIZE, System.out).run();
+                    }
+                    System.out.println(r);
+                    god = Math.max(god, r.getMaxDistance());
+                }
+                System.out.println("n=" + n + " : nombre de Dieu " + god);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
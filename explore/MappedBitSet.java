@@ -0,0 +1,110 @@
+package crazy.explore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tableau de bits stocké dans un fichier projeté en mémoire, par blocs de
+ *  1 Go : sa taille n'est limitée que par le disque, et le système ne garde
+ *  en mémoire que les pages utilisées récemment.
+ * Les accès ne sont pas synchronisés.
+ */
+final class MappedBitSet {
+
+    // ATTRIBUTS
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    private static final int BYTE_SHIFT = 3;
+    private static final int BIT_MASK = (1 << BYTE_SHIFT) - 1;
+
+    private final long bytes;
+    private final MappedByteBuffer[] chunks;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Le tableau de size bits stocké dans file, créé (à zéro) au besoin.
+     * Le contenu d'un fichier existant est conservé.
+     */
+    MappedBitSet(Path file, long size) throws IOException {
+        bytes = (size + BIT_MASK) >>> BYTE_SHIFT;
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() < bytes) {
+                ch.write(ByteBuffer.allocate(1), bytes - 1);
+            }
+            int count = (int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT);
+            chunks = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long from = (long) i << CHUNK_SHIFT;
+                chunks[i] = ch.map(MapMode.READ_WRITE, from,
+                        Math.min(bytes - from, CHUNK_MASK + 1));
+            }
+        } finally {
+            // les projections survivent à la fermeture du canal
+            ch.close();
+        }
+    }
+
+    // REQUETES
+
+    /**
+     * Indique si le bit i est posé.
+     */
+    boolean get(long i) {
+        long p = i >>> BYTE_SHIFT;
+        int b = chunks[(int) (p >>> CHUNK_SHIFT)].get((int) (p & CHUNK_MASK));
+        return (b & (1 << (i & BIT_MASK))) != 0;
+    }
+
+    // COMMANDES
+
+    /**
+     * Pose le bit i.
+     * Retourne false s'il l'était déjà.
+     */
+    boolean set(long i) {
+        long p = i >>> BYTE_SHIFT;
+        MappedByteBuffer c = chunks[(int) (p >>> CHUNK_SHIFT)];
+        int q = (int) (p & CHUNK_MASK);
+        int b = c.get(q);
+        int bit = 1 << (i & BIT_MASK);
+        if ((b & bit) != 0) {
+            return false;
+        }
+        c.put(q, (byte) (b | bit));
+        return true;
+    }
+
+    /**
+     * Remet tous les bits à zéro.
+     */
+    void clear() {
+        for (MappedByteBuffer c : chunks) {
+            int len = c.capacity();
+            int i = 0;
+            for (; i + Long.BYTES <= len; i += Long.BYTES) {
+                c.putLong(i, 0L);
+            }
+            for (; i < len; i++) {
+                c.put(i, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Écrit sur le disque les modifications en attente.
+     */
+    void force() {
+        for (MappedByteBuffer c : chunks) {
+            c.force();
+        }
+    }
+}
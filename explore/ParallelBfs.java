@@ -0,0 +1,274 @@
+package crazy.explore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import crazy.model.Order;
+import crazy.solver.PackedState;
+import crazy.solver.StateRanking;
+import util.Contract;
+
+/**
+ * Parcours en largeur parallèle de toutes les configurations sur n éléments,
+ *  depuis l'objectif PackedState.identity(n, k), en défaisant les ordres :
+ *  chaque configuration est atteinte à sa distance à l'objectif.
+ * Le parcours progresse niveau par niveau. Les configurations sont désignées
+ *  par leur rang (voir StateRanking) :
+ * <ul>
+ *   <li> l'ensemble des configurations atteintes est un tableau de bits
+ *        (AtomicLongArray) de StateRanking.count(n) bits, dont les bits
+ *        sont posés par compareAndSet : seul le thread qui pose un bit
+ *        retient la configuration correspondante ;</li>
+ *   <li> un niveau est une liste de blocs d'au plus CHUNK rangs ; les blocs
+ *        du niveau d sont répartis entre les threads d'un ForkJoinPool par
+ *        division récursive, et chaque tâche range les rangs qu'elle
+ *        découvre dans ses propres blocs, qui forment ensemble le niveau
+ *        d + 1.</li>
+ * </ul>
+ * Aucun verrou n'est pris : les seuls accès partagés en écriture sont les
+ *  compareAndSet sur le tableau de bits, sur des mots le plus souvent
+ *  distincts.
+ * Il faut StateRanking.count(n) / 8 octets pour le tableau de bits, et
+ *  8 octets par configuration pour les deux plus gros niveaux consécutifs.
+ * @inv <pre>
+ *     2 <= getElementsNb() <= MAX_ELEMENTS
+ *     0 <= getGoalSplit() <= getElementsNb() </pre>
+ */
+public class ParallelBfs {
+
+    /**
+     * Le traitement appliqué à chaque configuration atteinte.
+     */
+    public interface Visitor {
+
+        /**
+         * La configuration de rang r est à distance d de l'objectif.
+         */
+        void visit(long r, int d);
+    }
+
+    // ATTRIBUTS
+
+    /**
+     * Le plus grand nombre d'éléments pour lequel le tableau de bits peut
+     *  être alloué (ses mots sont indexés par des int).
+     */
+    public static final int MAX_ELEMENTS = 13;
+
+    /**
+     * Le nombre maximal de rangs d'un bloc.
+     */
+    public static final int CHUNK = 1 << 12;
+
+    private static final int INITIAL_CHUNK = 1 << 6;
+    private static final int WORD_SHIFT = 6;
+
+    private final int n;
+    private final int k;
+    private final boolean soAllowed;
+    private final Order[] orders;
+    private final ForkJoinPool pool;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un parcours depuis PackedState.identity(n, k), qui autorise SO si et
+     *  seulement si soAllowed, exécuté par pool.
+     * @pre <pre>
+     *     2 <= n <= MAX_ELEMENTS
+     *     0 <= k <= n
+     *     pool != null </pre>
+     */
+    public ParallelBfs(int n, int k, boolean soAllowed, ForkJoinPool pool) {
+        Contract.checkCondition(2 <= n && n <= MAX_ELEMENTS);
+        Contract.checkCondition(0 <= k && k <= n);
+        Contract.checkCondition(pool != null);
+
+        this.n = n;
+        this.k = k;
+        this.soAllowed = soAllowed;
+        this.pool = pool;
+        List<Order> l = new ArrayList<Order>();
+        for (Order o : Order.values()) {
+            if (soAllowed || o != Order.SO) {
+                l.add(o);
+            }
+        }
+        orders = l.toArray(new Order[l.size()]);
+    }
+
+    // REQUETES
+
+    public int getElementsNb() {
+        return n;
+    }
+
+    public int getGoalSplit() {
+        return k;
+    }
+
+    public boolean isSoAllowed() {
+        return soAllowed;
+    }
+
+    // COMMANDES
+
+    /**
+     * Effectue le parcours et en retourne le bilan.
+     * Si v n'est pas null, v.visit(r, d) est appelé une fois pour chaque
+     *  configuration, de rang r et de distance d, depuis les threads de
+     *  pool : v doit donc pouvoir être appelé en parallèle.
+     */
+    public DistanceReport run(Visitor v) {
+        long start = System.nanoTime();
+        AtomicLongArray visited = new AtomicLongArray(
+                (int) ((StateRanking.count(n) + Long.SIZE - 1) >>> WORD_SHIFT));
+        long root = StateRanking.rank(PackedState.identity(n, k), n);
+        mark(visited, root);
+        if (v != null) {
+            v.visit(root, 0);
+        }
+        Chunk first = new Chunk();
+        first.add(root);
+        List<Chunk> level = new ArrayList<Chunk>();
+        level.add(first);
+        List<Long> sizes = new ArrayList<Long>();
+        sizes.add(1L);
+        for (int d = 1; true; d++) {
+            List<Chunk> next = pool.invoke(
+                    new Expand(level, 0, level.size(), d, visited, v));
+            long size = 0;
+            for (Chunk c : next) {
+                size += c.size;
+            }
+            if (size == 0) {
+                break;
+            }
+            sizes.add(size);
+            level = next;
+        }
+        long[] result = new long[sizes.size()];
+        for (int d = 0; d < result.length; d++) {
+            result[d] = sizes.get(d);
+        }
+        return new DistanceReport(n, k, soAllowed, result,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Effectue le parcours et en retourne le bilan.
+     */
+    public DistanceReport run() {
+        return run(null);
+    }
+
+    // OUTILS
+
+    /**
+     * Pose le bit r de visited.
+     * Retourne false s'il l'était déjà.
+     */
+    private static boolean mark(AtomicLongArray visited, long r) {
+        int w = (int) (r >>> WORD_SHIFT);
+        long bit = 1L << r;
+        long old = visited.get(w);
+        while ((old & bit) == 0) {
+            if (visited.compareAndSet(w, old, old | bit)) {
+                return true;
+            }
+            old = visited.get(w);
+        }
+        return false;
+    }
+
+    /**
+     * Un bloc de rangs, dont le tableau grandit au besoin jusqu'à CHUNK :
+     *  les derniers niveaux, clairsemés, n'occupent ainsi que la place de
+     *  leurs rangs.
+     */
+    private static final class Chunk {
+        private long[] ranks = new long[INITIAL_CHUNK];
+        private int size;
+
+        boolean isFull() {
+            return size == CHUNK;
+        }
+
+        void add(long r) {
+            if (size == ranks.length) {
+                ranks = Arrays.copyOf(ranks, 2 * size);
+            }
+            ranks[size] = r;
+            size += 1;
+        }
+    }
+
+    /**
+     * Développe les blocs de rangs lo à hi - 1 d'un niveau : retourne les
+     *  blocs des configurations découvertes, à distance d.
+     */
+    private final class Expand extends RecursiveTask<List<Chunk>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Chunk> level;
+        private final int lo;
+        private final int hi;
+        private final int d;
+        private final AtomicLongArray visited;
+        private final Visitor visitor;
+
+        Expand(List<Chunk> level, int lo, int hi, int d,
+                AtomicLongArray visited, Visitor visitor) {
+            this.level = level;
+            this.lo = lo;
+            this.hi = hi;
+            this.d = d;
+            this.visited = visited;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                Expand right = new Expand(level, mid, hi, d, visited, visitor);
+                right.fork();
+                List<Chunk> result = new Expand(level, lo, mid, d, visited,
+                        visitor).compute();
+                result.addAll(right.join());
+                return result;
+            }
+            List<Chunk> result = new ArrayList<Chunk>();
+            Chunk out = new Chunk();
+            Chunk in = level.get(lo);
+            for (int i = 0; i < in.size; i++) {
+                long s = StateRanking.unrank(in.ranks[i], n);
+                for (Order o : orders) {
+                    long t = PackedState.unapply(s, o, n);
+                    if (t == s) {
+                        continue;
+                    }
+                    long r = StateRanking.rank(t, n);
+                    if (mark(visited, r)) {
+                        if (out.isFull()) {
+                            result.add(out);
+                            out = new Chunk();
+                        }
+                        out.add(r);
+                        if (visitor != null) {
+                            visitor.visit(r, d);
+                        }
+                    }
+                }
+            }
+            if (out.size > 0) {
+                result.add(out);
+            }
+            return result;
+        }
+    }
+}
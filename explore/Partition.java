@@ -0,0 +1,73 @@
+package crazy.explore;
+
+/**
+ * Répartition des rangs de configurations entre plusieurs calculateurs.
+ * Les rangs sont groupés en blocs de BLOCK rangs consécutifs, et chaque bloc
+ *  est attribué à un calculateur par hachage de son numéro : les blocs d'un
+ *  même calculateur sont ainsi disséminés dans tout l'espace des rangs, et
+ *  chacun reçoit sensiblement la même part de chaque niveau.
+ * Un calculateur numérote ses blocs dans l'ordre croissant : un rang qu'il
+ *  possède a donc aussi un indice local, dense, qui lui permet de ne stocker
+ *  que sa part de l'ensemble des configurations atteintes.
+ */
+final class Partition {
+
+    // ATTRIBUTS
+
+    static final int BLOCK_SHIFT = 16;
+
+    private static final long BLOCK_MASK = (1L << BLOCK_SHIFT) - 1;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int HASH_SHIFT = 33;
+
+    private final int workersNb;
+    // l'indice de chaque bloc parmi ceux de son calculateur
+    private final int[] localBlocks;
+    private final int[] blocksNbs;
+
+    // CONSTRUCTEURS
+
+    /**
+     * La répartition de count rangs entre workersNb calculateurs.
+     */
+    Partition(long count, int workersNb) {
+        this.workersNb = workersNb;
+        localBlocks = new int[(int) ((count + BLOCK_MASK) >>> BLOCK_SHIFT)];
+        blocksNbs = new int[workersNb];
+        for (int b = 0; b < localBlocks.length; b++) {
+            int w = owner(b);
+            localBlocks[b] = blocksNbs[w];
+            blocksNbs[w] += 1;
+        }
+    }
+
+    // REQUETES
+
+    /**
+     * Le calculateur qui possède le rang r.
+     */
+    int ownerOf(long r) {
+        return owner((int) (r >>> BLOCK_SHIFT));
+    }
+
+    /**
+     * L'indice local du rang r parmi ceux de son calculateur.
+     */
+    long localIndex(long r) {
+        return (long) localBlocks[(int) (r >>> BLOCK_SHIFT)] << BLOCK_SHIFT
+                | (r & BLOCK_MASK);
+    }
+
+    /**
+     * Le nombre d'indices locaux du calculateur w.
+     */
+    long localSize(int w) {
+        return (long) blocksNbs[w] << BLOCK_SHIFT;
+    }
+
+    // OUTILS
+
+    private int owner(int block) {
+        return (int) (((block * GOLDEN) >>> HASH_SHIFT) % workersNb);
+    }
+}
@@ -0,0 +1,171 @@
+package crazy.explore;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fichier de rangs écrit par séries triées.
+ * Chaque série commence par le varint 0, suivi, pour chacun de ses rangs
+ *  (strictement croissants), du varint de son écart au rang précédent (au
+ *  rang -1 pour le premier) : les écarts valent au moins 1, et ne prennent
+ *  souvent qu'un ou deux octets.
+ * Les lectures et écritures passent par un tampon direct de BUFFER_SIZE
+ *  octets.
+ */
+final class RankFile {
+
+    // ATTRIBUTS
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_VARINT = 10;
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MASK = (1 << VARINT_BITS) - 1;
+    private static final int VARINT_MORE = 1 << VARINT_BITS;
+
+    // CONSTRUCTEURS
+
+    private RankFile() {
+        // rien
+    }
+
+    // OUTILS
+
+    /**
+     * Écriture d'un fichier de rangs (remplacé s'il existe).
+     */
+    static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+
+        Writer(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        /**
+         * Écrit la série des size premiers rangs de ranks, strictement
+         *  croissants.
+         */
+        void writeRun(long[] ranks, int size) throws IOException {
+            reserve();
+            buf.put((byte) 0);
+            long prev = -1;
+            for (int i = 0; i < size; i++) {
+                reserve();
+                long w = ranks[i] - prev;
+                while ((w & ~VARINT_MASK) != 0) {
+                    buf.put((byte) ((w & VARINT_MASK) | VARINT_MORE));
+                    w >>>= VARINT_BITS;
+                }
+                buf.put((byte) w);
+                prev = ranks[i];
+            }
+        }
+
+        /**
+         * Vide le tampon, force l'écriture sur le disque et ferme le
+         *  fichier.
+         */
+        void close() throws IOException {
+            try {
+                drain();
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void reserve() throws IOException {
+            if (buf.remaining() < MAX_VARINT) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+    }
+
+    /**
+     * Lecture séquentielle d'un fichier de rangs.
+     */
+    static final class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+        private boolean eof;
+        private long prev;
+
+        Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buf.flip();
+        }
+
+        /**
+         * Indique s'il reste des rangs à lire.
+         */
+        boolean hasNext() throws IOException {
+            while (true) {
+                fill();
+                if (!buf.hasRemaining()) {
+                    return false;
+                }
+                if (buf.get(buf.position()) != 0) {
+                    return true;
+                }
+                // début d'une série
+                buf.get();
+                prev = -1;
+            }
+        }
+
+        /**
+         * Le rang suivant.
+         * @pre <pre>
+         *     hasNext() </pre>
+         */
+        long next() throws IOException {
+            if (!hasNext()) {
+                throw new EOFException();
+            }
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf.get();
+                v |= (long) (b & VARINT_MASK) << shift;
+                shift += VARINT_BITS;
+            } while ((b & VARINT_MORE) != 0);
+            prev += v;
+            return prev;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+
+        private void fill() throws IOException {
+            if (eof || buf.remaining() >= MAX_VARINT) {
+                return;
+            }
+            buf.compact();
+            while (buf.hasRemaining()) {
+                if (channel.read(buf) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            buf.flip();
+        }
+    }
+}
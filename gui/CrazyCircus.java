@@ -6,13 +6,23 @@ import java.awt.GridLayout;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyVetoException;
 import java.beans.VetoableChangeListener;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -21,8 +31,12 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTextArea;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -31,14 +45,38 @@ import crazy.model.PodiumManager;
 import crazy.model.PodiumModel;
 import crazy.model.StdPodiumManager;
 import crazy.model.PodiumManager.Rank;
+import crazy.puzzle.PuzzleGenerator;
+import crazy.puzzle.PuzzleGenerator.SoRule;
+import crazy.record.GameRecorder;
+import crazy.record.RecordedDealer;
+import crazy.record.RecordedGame;
+import crazy.solver.AStarSolver;
+import crazy.solver.Solver;
+import crazy.solver.TranspositionTable;
 import crazy.view.Drawable;
 import crazy.view.Podium;
+import util.Contract;
 
 public class CrazyCircus<E extends Drawable> {
 
     // ATTRIBUTS
 
+    // délais entre deux ordres rejoués, en millisecondes
+    private static final int REPLAY_DELAY = 500;
+    private static final int MIN_REPLAY_DELAY = 100;
+    private static final int MAX_REPLAY_DELAY = 3000;
+    // nombre d'entrées de la table partagée par les solveurs des indices
+    private static final int HINT_TABLE_SIZE = 1 << 16;
+
     private PodiumManager<E> manager;
+    private final List<E> universe;
+    private GameRecorder<E> recorder;
+    private Timer replayer;
+    private final Solver soSolver;
+    private final Solver noSoSolver;
+    private final HintService<E> hints;
+    private final PuzzleGenerator<E> generator;
+    private final RecordedDealer replayDealer;
     
     private final JFrame frame;
     private final Map<Rank, Podium<E>> allPodiums;
@@ -46,18 +84,35 @@ public class CrazyCircus<E extends Drawable> {
     private final JButton restart;
     private final JTextArea output;
     private final JCheckBox soAllower;
+    private final JLabel hint;
+    private final JSpinner difficulty;
 
     // CONSTRUCTEURS
 
     public CrazyCircus(Set<E> drawables) {
         // MODELE
-        manager = new StdPodiumManager<E>(drawables);
+        generator = new PuzzleGenerator<E>(drawables);
+        replayDealer = new RecordedDealer(generator.dealer());
+        manager = new StdPodiumManager<E>(drawables, new Random(),
+                replayDealer);
+        universe = GameRecorder.referenceOrder(drawables);
+        TranspositionTable table = new TranspositionTable(HINT_TABLE_SIZE);
+        AStarSolver s = new AStarSolver(true);
+        s.setTable(table);
+        soSolver = s;
+        s = new AStarSolver(false);
+        s.setTable(table);
+        noSoSolver = s;
+        hints = new HintService<E>(manager, noSoSolver);
         // VUE
         frame = new JFrame("Crazy Circus");
         commandButtons = buildCommandButtons();
         restart = new JButton("Nouvelle Partie");
         output = buildOutput();
         soAllower = new JCheckBox("Autoriser SO");
+        hint = createMinorLabel("");
+        // borné par la difficulté maximale (voir updateDifficultyBound)
+        difficulty = new JSpinner(new SpinnerNumberModel(0, 0, 0, 1));
         allPodiums = buildAllPodiums();
         placeComponents();
         // CONTROLEUR
@@ -72,8 +127,94 @@ public class CrazyCircus<E extends Drawable> {
         frame.setVisible(true);
     }
 
+    /**
+     * Enregistre dans file (voir GameRecorder) les parties jouées jusqu'à la
+     *  fermeture de la fenêtre, en commençant par la partie en cours.
+     * @pre <pre>
+     *     file != null
+     *     aucun enregistrement n'est en cours </pre>
+     * @throws IOException si file ne peut être ouvert
+     */
+    public void record(Path file) throws IOException {
+        Contract.checkCondition(file != null);
+        Contract.checkCondition(recorder == null);
+
+        recorder = new GameRecorder<E>(manager, universe, file);
+    }
+
+    /**
+     * Rejoue la partie g : la configuration initiale enregistrée est
+     *  restaurée (voir RecordedDealer), puis les ordres sont exécutés un à
+     *  un, au rythme où ils ont été donnés si g est chronométrée (dans la
+     *  limite de MIN_REPLAY_DELAY à MAX_REPLAY_DELAY millisecondes), toutes
+     *  les REPLAY_DELAY millisecondes sinon.
+     * Une nouvelle partie interrompt le rejeu.
+     * L'éventuel enregistrement (voir record) est suspendu pendant le rejeu :
+     *  la partie rejouée n'est pas enregistrée une seconde fois.
+     * @pre <pre>
+     *     g != null
+     *     g.getElementsNb() == nombre d'éléments du jeu </pre>
+     */
+    public void replay(final RecordedGame g) {
+        Contract.checkCondition(g != null);
+        Contract.checkCondition(g.getElementsNb() == universe.size());
+
+        stopReplay();
+        if (recorder != null) {
+            recorder.suspend();
+        }
+        replayDealer.load(g);
+        manager.reinit(g.getSeed());
+        output.setText("");
+        if (g.getOrders().contains(Order.SO)) {
+            soAllower.setSelected(true);
+        }
+        updateStateButtons(true);
+        replayer = new Timer(replayDelay(g, 0), new ActionListener() {
+            private int next;
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (next < g.getOrders().size()) {
+                    try {
+                        manager.executeOrder(g.getOrders().get(next));
+                    } catch (PropertyVetoException e1) {
+                        output.append("* ");
+                    }
+                    next += 1;
+                }
+                if (next < g.getOrders().size()) {
+                    replayer.setDelay(replayDelay(g, next));
+                } else {
+                    stopReplay();
+                }
+            }
+        });
+        replayer.setRepeats(true);
+        replayer.start();
+    }
+
     // OUTILS
 
+    private int replayDelay(RecordedGame g, int i) {
+        if (!g.isTimed()) {
+            return REPLAY_DELAY;
+        }
+        long ms = TimeUnit.NANOSECONDS.toMillis(g.getDelay(i));
+        return (int) Math.max(MIN_REPLAY_DELAY,
+                Math.min(MAX_REPLAY_DELAY, ms));
+    }
+
+    private void stopReplay() {
+        if (replayer != null) {
+            replayer.stop();
+            replayer = null;
+            if (recorder != null) {
+                recorder.resume();
+            }
+            updateStateButtons(manager.isFinished());
+        }
+    }
+
     private JTextArea buildOutput() {
         final int outRowsNb = 4;
         final int outColsNb = 10;
@@ -119,6 +260,13 @@ public class CrazyCircus<E extends Drawable> {
                 } //--
                 q.add(r);
                 q.add(restart);
+                r = new JPanel();
+                { //--
+                    r.add(new JLabel("Coups (0 : au hasard) :"));
+                    r.add(difficulty);
+                } //--
+                q.add(r);
+                q.add(hint);
             } //--
             p.add(q, BorderLayout.NORTH);
         } //--
@@ -157,6 +305,21 @@ public class CrazyCircus<E extends Drawable> {
 
     private void connectControllers() {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                hints.shutdown();
+                generator.shutdown();
+                if (recorder != null) {
+                    try {
+                        recorder.close();
+                    } catch (IOException e1) {
+                        System.err.println("enregistrement interrompu : "
+                                + e1.getMessage());
+                    }
+                }
+            }
+        });
 
         ActionListener al = new ActionListener() {
             @Override
@@ -177,8 +340,15 @@ public class CrazyCircus<E extends Drawable> {
         restart.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                manager.reinit();
+                stopReplay();
                 output.setText("");
+                newGame();
+            }
+        });
+        difficulty.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                prefill();
             }
         });
         
@@ -187,7 +357,7 @@ public class CrazyCircus<E extends Drawable> {
 			@Override
 			public void propertyChange(PropertyChangeEvent evt) {
 				boolean gameOver= (Boolean) evt.getNewValue();
-				updateStateButtons(gameOver);
+				updateStateButtons(gameOver || replayer != null);
 				if (gameOver) {
 					output.append("\ngagné en :"+manager.getShotsNb()+" coups et "+ formatTime(manager.getTimeDelta()));
 				}
@@ -211,6 +381,34 @@ public class CrazyCircus<E extends Drawable> {
 				}
 			}
 		});
+
+        soAllower.addItemListener(new ItemListener() {
+            @Override
+            public void itemStateChanged(ItemEvent e) {
+                hints.setSolver(soAllower.isSelected() ? soSolver : noSoSolver);
+                updateDifficultyBound();
+                prefill();
+            }
+        });
+        generator.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateDifficultyBound();
+                    }
+                });
+            }
+        });
+        updateDifficultyBound();
+        hints.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                updateHint();
+            }
+        });
+        updateHint();
         
 }
     
@@ -222,6 +420,64 @@ private void updateStateButtons(boolean b) {
 	}
 }
 
+/**
+ * Lance une nouvelle partie : au hasard, ou dont les solutions minimales
+ *  ont la longueur demandée (avec ou sans SO selon soAllower).
+ * La partie demandée est prise dans les réserves du générateur, sans
+ *  attendre : si aucune n'est prête, la partie est tirée au hasard.
+ */
+private void newGame() {
+    int d = (Integer) difficulty.getValue();
+    if (d == 0) {
+        manager.reinit();
+        return;
+    }
+    try {
+        manager.reinit(generator.nextSeed(d, soRule()));
+    } catch (NoSuchElementException e) {
+        output.setText("aucune partie en " + d + " coups prête :"
+                + " partie au hasard\n");
+        manager.reinit();
+    }
+}
+
+/**
+ * Borne difficulty par la plus grande difficulté connue du générateur pour
+ *  la règle en vigueur.
+ */
+private void updateDifficultyBound() {
+    SpinnerNumberModel m = (SpinnerNumberModel) difficulty.getModel();
+    int max = Math.max(0, generator.getMaxLength(soRule()));
+    m.setMaximum(max);
+    if ((Integer) m.getValue() > max) {
+        m.setValue(max);
+    }
+}
+
+private void prefill() {
+    int d = (Integer) difficulty.getValue();
+    if (d > 0) {
+        generator.prefill(d, soRule());
+    }
+}
+
+private SoRule soRule() {
+    return soAllower.isSelected() ? SoRule.ANY : SoRule.FORBIDDEN;
+}
+
+private void updateHint() {
+    if (hints.isComputing()) {
+        hint.setText("Indice : calcul...");
+    } else if (hints.getNextOrder() != null) {
+        hint.setText("Indice : " + hints.getNextOrder().label()
+                + " (" + hints.getDistance() + " coups)");
+    } else if (hints.getDistance() == HintService.UNKNOWN) {
+        hint.setText("Indice : objectif inaccessible");
+    } else {
+        hint.setText("");
+    }
+}
+
 private void reinitPodiums() {
 	Map<Rank, PodiumModel<E>> models = manager.getModels();
 	for (Rank r : Rank.values()) {
@@ -0,0 +1,244 @@
+package crazy.gui;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+import crazy.solver.CanonicalForm;
+import crazy.solver.Solver;
+import util.Contract;
+
+/**
+ * Calcul en tâche de fond d'un indice pour la partie en cours d'un
+ *  gestionnaire de podiums : le prochain ordre d'une solution minimale et le
+ *  nombre d'ordres restant à donner.
+ * Chaque notification de la propriété finished du gestionnaire, émise après
+ *  chaque ordre, annulation, rétablissement ou réinitialisation (c'est le
+ *  cas de StdPodiumManager et de ConcurrentPodiumManager), relance le
+ *  calcul, une seule fois par coup : la configuration de travail est relevée
+ *  (sous forme canonique) dans le thread qui notifie le changement, puis le
+ *  solveur s'exécute sur un thread dédié. Un calcul devenu inutile est
+ *  annulé en interrompant ce thread (voir Solver), et son résultat, s'il
+ *  arrive malgré tout, est ignoré.
+ * Le résultat est publié sur l'EDT : le gestionnaire, les requêtes de ce
+ *  service et ses PCL (propriété hint) ne sont utilisés que depuis l'EDT.
+ * @inv <pre>
+ *     getSolver() != null
+ *     isComputing() ==> getNextOrder() == null && getDistance() == UNKNOWN
+ *     getDistance() == 0 ==> getNextOrder() == null </pre>
+ */
+public class HintService<E> {
+
+    // ATTRIBUTS
+
+    public static final String PROP_HINT = "hint";
+
+    /**
+     * La distance d'une configuration en cours de calcul ou dont l'objectif
+     *  est inaccessible.
+     */
+    public static final int UNKNOWN = -1;
+
+    private final PodiumManager<E> manager;
+    private final ExecutorService executor;
+    private final PropertyChangeSupport pcs;
+    private final PropertyChangeListener trigger;
+    private Solver solver;
+    // le calcul en cours, et son numéro
+    private Future<?> pending;
+    private long generation;
+    private Order nextOrder;
+    private int distance;
+    private boolean computing;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un service qui calcule les indices de la partie en cours de m avec s,
+     *  et qui lance aussitôt le premier calcul.
+     * @pre <pre>
+     *     m != null && s != null
+     *     2 <= nombre d'éléments de m <= PackedState.MAX_ELEMENTS </pre>
+     */
+    public HintService(PodiumManager<E> m, Solver s) {
+        Contract.checkCondition(m != null && s != null);
+
+        manager = m;
+        solver = s;
+        distance = UNKNOWN;
+        pcs = new PropertyChangeSupport(this);
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "indices");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+        trigger = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                restart();
+            }
+        };
+        manager.addPropertyChangeListener(PodiumManager.PROP_FINISHED,
+                trigger);
+        restart();
+    }
+
+    // REQUETES
+
+    /**
+     * Le nombre d'ordres d'une solution minimale de la partie en cours.
+     * Vaut UNKNOWN pendant le calcul, ou si l'objectif est inaccessible avec
+     *  les ordres autorisés par getSolver().
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * Le premier ordre d'une solution minimale de la partie en cours.
+     * Vaut null pendant le calcul, si la partie est finie, ou si l'objectif
+     *  est inaccessible.
+     */
+    public Order getNextOrder() {
+        return nextOrder;
+    }
+
+    public Solver getSolver() {
+        return solver;
+    }
+
+    /**
+     * Indique si un indice est en cours de calcul.
+     */
+    public boolean isComputing() {
+        return computing;
+    }
+
+    // COMMANDES
+
+    /**
+     * Ajoute un PCL pour la propriété hint, notifiée sur l'EDT à chaque
+     *  changement de l'indice (début et fin d'un calcul).
+     * @pre <pre>
+     *     lnr != null </pre>
+     */
+    public void addPropertyChangeListener(PropertyChangeListener lnr) {
+        Contract.checkCondition(lnr != null);
+
+        pcs.addPropertyChangeListener(PROP_HINT, lnr);
+    }
+
+    /**
+     * Retire un PCL pour la propriété hint.
+     * @pre <pre>
+     *     lnr != null </pre>
+     */
+    public void removePropertyChangeListener(PropertyChangeListener lnr) {
+        Contract.checkCondition(lnr != null);
+
+        pcs.removePropertyChangeListener(PROP_HINT, lnr);
+    }
+
+    /**
+     * Remplace le solveur par s (par exemple lorsque SO est autorisé ou
+     *  interdit) et relance le calcul.
+     * @pre <pre>
+     *     s != null </pre>
+     * @post <pre>
+     *     getSolver() == s </pre>
+     */
+    public void setSolver(Solver s) {
+        Contract.checkCondition(s != null);
+
+        solver = s;
+        restart();
+    }
+
+    /**
+     * Annule le calcul en cours, cesse d'observer le gestionnaire et arrête
+     *  le thread de calcul.
+     */
+    public void shutdown() {
+        manager.removePropertyChangeListener(PodiumManager.PROP_FINISHED,
+                trigger);
+        cancel();
+        executor.shutdownNow();
+    }
+
+    // OUTILS
+
+    private void cancel() {
+        generation += 1;
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    /**
+     * Annule le calcul en cours et en lance un nouveau, sauf si la partie
+     *  est finie.
+     */
+    private void restart() {
+        cancel();
+        if (manager.isFinished()) {
+            setHint(null, 0, false);
+            return;
+        }
+        final CanonicalForm<E> c = CanonicalForm.of(manager);
+        final Solver s = solver;
+        final long g = generation;
+        setHint(null, UNKNOWN, true);
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                List<Order> path;
+                try {
+                    path = s.solve(c.getState(), c.getGoal(),
+                            c.getElementsNb());
+                } catch (CancellationException e) {
+                    return;
+                }
+                final Order o;
+                final int d;
+                if (path == null) {
+                    o = null;
+                    d = UNKNOWN;
+                } else {
+                    o = path.isEmpty() ? null : c.toOriginal(path).get(0);
+                    d = path.size();
+                }
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (g == generation) {
+                            pending = null;
+                            setHint(o, d, false);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void setHint(Order o, int d, boolean c) {
+        nextOrder = o;
+        distance = d;
+        computing = c;
+        pcs.firePropertyChange(PROP_HINT, null, d);
+    }
+}
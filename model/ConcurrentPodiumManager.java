@@ -0,0 +1,759 @@
+package crazy.model;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.beans.PropertyVetoException;
+import java.beans.VetoableChangeListener;
+import java.beans.VetoableChangeSupport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+
+import util.Contract;
+
+/**
+ * Implémentation de PodiumManager utilisable par plusieurs threads sans
+ *  verrou global.
+ * Tout l'état d'une partie (les quatre podiums, le nombre d'ordres, le
+ *  dernier ordre, la date de début et la durée, l'historique) est un
+ *  instantané immuable (Snapshot) rangé dans une AtomicReference. Chaque
+ *  commande calcule l'instantané suivant à partir de l'instantané courant et
+ *  l'installe par compareAndSet, en recommençant si un autre thread l'a
+ *  devancée : les ordres exécutés simultanément le sont tous, l'un après
+ *  l'autre, et une suite d'ordres (executeOrders) est appliquée d'un bloc.
+ * Chaque podium est codé comme dans PackedPodiumModel : un quartet par
+ *  élément (son rang dans l'ordre de référence, celui de StdPodiumManager),
+ *  la taille dans les bits 60 à 63. Une partie est donc finie si et
+ *  seulement si ses mots de travail et d'objectif sont égaux.
+ * Les lectures ne prennent aucun verrou : getSnapshot() retourne l'état
+ *  courant, cohérent, qui ne change plus. Les requêtes du gestionnaire et
+ *  celles des modèles de getModels() lisent chacune l'instantané courant au
+ *  moment de l'appel : pour plusieurs lectures cohérentes entre elles (un
+ *  affichage complet par exemple), il faut passer par un instantané.
+ * Les notifications sont émises par le thread qui a installé le nouvel
+ *  instantané, après son installation : deux threads concurrents peuvent
+ *  donc les émettre dans un ordre différent de celui des ordres, et un
+ *  observateur doit relire l'état plutôt que de se fier à la seule valeur
+ *  de l'événement. Les VCL de lastOrder sont consultés avant l'installation,
+ *  sur l'état lu à ce moment-là.
+ * Les distributions sont celles de StdPodiumManager (une même graine donne
+ *  la même configuration), obtenues sous le verrou d'un gestionnaire
+ *  StdPodiumManager privé : seules reinit() et reinit(seed) le prennent.
+ * Chaque instantané désigne celui qui le précède : l'historique est la
+ *  chaîne de ces instantanés. Elle conserve au moins les
+ *  StdPodiumManager.HISTORY_SIZE derniers ordres, comme StdPodiumManager ;
+ *  lorsqu'elle atteint le double, elle est recopiée sur ses HISTORY_SIZE
+ *  derniers instantanés et les plus anciens sont abandonnés, ce qui ne
+ *  coûte, en moyenne, qu'une copie par ordre. Les instantanés de la chaîne
+ *  ne désignent aucun instantané à rétablir (seul l'instantané courant peut
+ *  le faire) : la mémoire retenue est ainsi bornée.
+ * Les modèles de getModels() sont en lecture seule (voir getModels()).
+ * @inv <pre>
+ *     getSnapshot() != null </pre>
+ */
+public class ConcurrentPodiumManager<E> implements PodiumManager<E> {
+
+    /**
+     * Un état complet et immuable d'une partie.
+     */
+    public final class Snapshot {
+        // les mots des podiums, indexés par l'ordinal de leur rang
+        private final long[] words;
+        private final int shotsNb;
+        private final Order lastOrder;
+        private final long seed;
+        private final long time;
+        private final long delta;
+        // l'instantané qui précède le dernier ordre, et celui que redo()
+        //  rétablirait
+        private final Snapshot previous;
+        private final Snapshot next;
+        // le nombre d'instantanés de la chaîne des previous
+        private final int depth;
+
+        private Snapshot(long[] words, int shotsNb, Order lastOrder, long seed,
+                long time, Snapshot previous, Snapshot next) {
+            this.words = words;
+            this.shotsNb = shotsNb;
+            this.lastOrder = lastOrder;
+            this.seed = seed;
+            this.time = time;
+            this.previous = previous;
+            this.next = next;
+            depth = previous == null ? 0 : previous.depth + 1;
+            delta = isFinished() ? System.currentTimeMillis() - time : 0;
+        }
+
+        /**
+         * Une copie de s, précédée de previous, sans instantané à rétablir.
+         */
+        private Snapshot(Snapshot s, Snapshot previous) {
+            words = s.words;
+            shotsNb = s.shotsNb;
+            lastOrder = s.lastOrder;
+            seed = s.seed;
+            time = s.time;
+            delta = s.delta;
+            this.previous = previous;
+            next = null;
+            depth = previous == null ? 0 : previous.depth + 1;
+        }
+
+        // REQUETES
+
+        public int getShotsNb() {
+            return shotsNb;
+        }
+
+        public Order getLastOrder() {
+            return lastOrder;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * La date de début de la partie, en millisecondes.
+         */
+        public long getStartTime() {
+            return time;
+        }
+
+        public long getTimeDelta() {
+            return delta;
+        }
+
+        public boolean isFinished() {
+            return words[Rank.WORK_LEFT.ordinal()]
+                    == words[Rank.GOAL_LEFT.ordinal()]
+                    && words[Rank.WORK_RIGHT.ordinal()]
+                            == words[Rank.GOAL_RIGHT.ordinal()];
+        }
+
+        public boolean canUndo() {
+            return previous != null;
+        }
+
+        public boolean canRedo() {
+            return next != null;
+        }
+
+        /**
+         * Le mot qui code le podium r (voir PackedPodiumModel).
+         * @pre <pre>
+         *     r != null </pre>
+         */
+        public long getWord(Rank r) {
+            Contract.checkCondition(r != null);
+
+            return words[r.ordinal()];
+        }
+
+        /**
+         * Le nombre d'éléments du podium r.
+         * @pre <pre>
+         *     r != null </pre>
+         */
+        public int size(Rank r) {
+            Contract.checkCondition(r != null);
+
+            return PackedPodiumModel.sizeOf(words[r.ordinal()]);
+        }
+
+        /**
+         * L'élément de rang i (à partir de la base) du podium r, ou null si
+         *  i >= size(r).
+         * @pre <pre>
+         *     r != null
+         *     0 <= i < nombre d'éléments du gestionnaire </pre>
+         */
+        public E elementAt(Rank r, int i) {
+            Contract.checkCondition(r != null);
+            Contract.checkCondition(0 <= i && i < universe.length);
+
+            long w = words[r.ordinal()];
+            return i < PackedPodiumModel.sizeOf(w) ? elementOf(w, i) : null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Rank r : Rank.values()) {
+                sb.append('[');
+                for (int i = 0; i < size(r); i++) {
+                    sb.append(elementAt(r, i)).append('|');
+                }
+                sb.append("] ");
+            }
+            return sb.append(shotsNb).append(" coups").toString();
+        }
+
+        // OUTILS
+
+        /**
+         * L'instantané qui suit l'exécution de orders, précédé d'un
+         *  instantané par ordre (chacun peut être annulé séparément).
+         */
+        private Snapshot execute(Order[] orders) {
+            long[] w = words.clone();
+            Snapshot s = next == null ? this : new Snapshot(this, previous);
+            for (int i = 0; i < orders.length; i++) {
+                apply(w, orders[i]);
+                s = new Snapshot(i == orders.length - 1 ? w : w.clone(),
+                        s.shotsNb + 1, orders[i], seed, time, s, null);
+                if (s.depth >= 2 * StdPodiumManager.HISTORY_SIZE) {
+                    s = s.trim();
+                }
+            }
+            return s;
+        }
+
+        /**
+         * Une copie de cet instantané (sans instantané à rétablir) et de ses
+         *  HISTORY_SIZE prédécesseurs, dont le plus ancien n'a plus de
+         *  prédécesseur.
+         */
+        private Snapshot trim() {
+            List<Snapshot> chain =
+                    new ArrayList<Snapshot>(StdPodiumManager.HISTORY_SIZE + 1);
+            Snapshot s = this;
+            while (chain.size() <= StdPodiumManager.HISTORY_SIZE) {
+                chain.add(s);
+                s = s.previous;
+            }
+            s = null;
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                s = new Snapshot(chain.get(i), s);
+            }
+            return s;
+        }
+
+        /**
+         * L'instantané qui précède le dernier ordre, dont redo() rétablit
+         *  celui-ci.
+         */
+        private Snapshot undo() {
+            return new Snapshot(previous.words, previous.shotsNb,
+                    previous.lastOrder, seed, time, previous.previous, this);
+        }
+    }
+
+    // ATTRIBUTS
+
+    private final E[] universe;
+    private final AtomicReference<Snapshot> state;
+    private final Map<Rank, View> views;
+    private final PropertyChangeSupport pcs;
+    private final VetoableChangeSupport vcs;
+    // fournit les distributions, sous son propre verrou
+    private final StdPodiumManager<E> dealer;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un gestionnaire dont les graines des parties sont tirées de rnd, et
+     *  dont les configurations sont distribuées par d (par
+     *  StdPodiumManager.randomDeal si d est null), comme par
+     *  StdPodiumManager.
+     * @pre <pre>
+     *     elems != null
+     *     2 <= elems.size() <= PackedPodiumModel.MAX_CAPACITY
+     *     rnd != null </pre>
+     */
+    public ConcurrentPodiumManager(Set<E> elems, Random rnd,
+            StdPodiumManager.Dealer d) {
+        Contract.checkCondition(elems != null);
+        Contract.checkCondition(2 <= elems.size()
+                && elems.size() <= PackedPodiumModel.MAX_CAPACITY);
+        Contract.checkCondition(rnd != null);
+
+        universe = referenceOrder(elems);
+        dealer = new StdPodiumManager<E>(elems, rnd, d);
+        pcs = new PropertyChangeSupport(this);
+        vcs = new VetoableChangeSupport(this);
+        views = new EnumMap<Rank, View>(Rank.class);
+        for (Rank r : Rank.values()) {
+            views.put(r, new View(r));
+        }
+        state = new AtomicReference<Snapshot>(deal());
+    }
+
+    /**
+     * @pre <pre>
+     *     elems != null
+     *     2 <= elems.size() <= PackedPodiumModel.MAX_CAPACITY
+     *     rnd != null </pre>
+     */
+    public ConcurrentPodiumManager(Set<E> elems, Random rnd) {
+        this(elems, rnd, null);
+    }
+
+    /**
+     * @pre <pre>
+     *     elems != null
+     *     2 <= elems.size() <= PackedPodiumModel.MAX_CAPACITY </pre>
+     */
+    public ConcurrentPodiumManager(Set<E> elems) {
+        this(elems, new Random());
+    }
+
+    // REQUETES
+
+    /**
+     * L'état courant de la partie.
+     */
+    public Snapshot getSnapshot() {
+        return state.get();
+    }
+
+    @Override
+    public boolean canRedo() {
+        return state.get().canRedo();
+    }
+
+    @Override
+    public boolean canUndo() {
+        return state.get().canUndo();
+    }
+
+    @Override
+    public Order getLastOrder() {
+        return state.get().getLastOrder();
+    }
+
+    /**
+     * Les quatre modèles de podium, en lecture seule : chacun est une vue de
+     *  l'instantané courant, dont les commandes (addTop, removeBottom,
+     *  removeTop, rotate) lèvent UnsupportedOperationException.
+     */
+    @Override
+    public Map<Rank, PodiumModel<E>> getModels() {
+        return new EnumMap<Rank, PodiumModel<E>>(views);
+    }
+
+    @Override
+    public long getSeed() {
+        return state.get().getSeed();
+    }
+
+    @Override
+    public int getShotsNb() {
+        return state.get().getShotsNb();
+    }
+
+    @Override
+    public long getTimeDelta() {
+        return state.get().getTimeDelta();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return state.get().isFinished();
+    }
+
+    @Override
+    public PropertyChangeListener[] getPropertyChangeListeners(String pName) {
+        Contract.checkCondition(pName != null);
+
+        return pcs.getPropertyChangeListeners(pName);
+    }
+
+    @Override
+    public VetoableChangeListener[] getVetoableChangeListeners(String pName) {
+        Contract.checkCondition(pName != null);
+
+        return vcs.getVetoableChangeListeners(pName);
+    }
+
+    // COMMANDES
+
+    @Override
+    public void addPropertyChangeListener(String pName,
+            PropertyChangeListener lnr) {
+        Contract.checkCondition(pName != null && lnr != null);
+
+        pcs.addPropertyChangeListener(pName, lnr);
+    }
+
+    @Override
+    public void removePropertyChangeListener(String pName,
+            PropertyChangeListener lnr) {
+        Contract.checkCondition(pName != null && lnr != null);
+
+        pcs.removePropertyChangeListener(pName, lnr);
+    }
+
+    @Override
+    public void addVetoableChangeListener(String pName,
+            VetoableChangeListener lnr) {
+        Contract.checkCondition(pName != null && lnr != null);
+
+        vcs.addVetoableChangeListener(pName, lnr);
+    }
+
+    @Override
+    public void removeVetoableChangeListener(String pName,
+            VetoableChangeListener lnr) {
+        Contract.checkCondition(pName != null && lnr != null);
+
+        vcs.removeVetoableChangeListener(pName, lnr);
+    }
+
+    @Override
+    public void executeOrder(Order o) throws PropertyVetoException {
+        Contract.checkCondition(o != null);
+
+        executeOrders(new Order[] {o});
+    }
+
+    @Override
+    public void executeOrders(List<Order> orders) throws PropertyVetoException {
+        Contract.checkCondition(orders != null);
+
+        executeOrders(orders.toArray(new Order[orders.size()]));
+    }
+
+    @Override
+    public void executeOrders(Order[] orders) throws PropertyVetoException {
+        Contract.checkCondition(orders != null);
+        for (Order o : orders) {
+            Contract.checkCondition(o != null);
+        }
+
+        if (orders.length == 0) {
+            return;
+        }
+        if (vcs.hasListeners(PROP_LAST_ORDER)) {
+            Order previous = state.get().getLastOrder();
+            for (Order o : orders) {
+                // l'ancienne valeur est omise lorsqu'elle est égale à o (voir
+                //  StdPodiumManager)
+                vcs.fireVetoableChange(PROP_LAST_ORDER,
+                        previous == o ? null : previous, o);
+                previous = o;
+            }
+        }
+        Snapshot s;
+        Snapshot t;
+        do {
+            s = state.get();
+            t = s.execute(orders);
+        } while (!state.compareAndSet(s, t));
+        fireChanges(s, t);
+    }
+
+    @Override
+    public void redo() {
+        Snapshot s;
+        Snapshot t;
+        do {
+            s = state.get();
+            Contract.checkCondition(s.canRedo());
+            t = s.next;
+        } while (!state.compareAndSet(s, t));
+        fireChanges(s, t);
+    }
+
+    @Override
+    public void undo() {
+        Snapshot s;
+        Snapshot t;
+        do {
+            s = state.get();
+            Contract.checkCondition(s.canUndo());
+            t = s.undo();
+        } while (!state.compareAndSet(s, t));
+        fireChanges(s, t);
+    }
+
+    @Override
+    public void reinit() {
+        Snapshot s;
+        Snapshot t;
+        synchronized (dealer) {
+            dealer.reinit();
+            t = deal();
+            s = state.getAndSet(t);
+        }
+        fireReinit(s, t);
+    }
+
+    @Override
+    public void reinit(long seed) {
+        Snapshot s;
+        Snapshot t;
+        synchronized (dealer) {
+            dealer.reinit(seed);
+            t = deal();
+            s = state.getAndSet(t);
+        }
+        fireReinit(s, t);
+    }
+
+    // OUTILS
+
+    /**
+     * Le premier instantané de la partie en cours de dealer.
+     */
+    private Snapshot deal() {
+        Map<Rank, PodiumModel<E>> models = dealer.getModels();
+        long[] words = new long[Rank.values().length];
+        for (Rank r : Rank.values()) {
+            PodiumModel<E> m = models.get(r);
+            long w = 0;
+            for (int i = 0; i < m.size(); i++) {
+                w = PackedPodiumModel.withTop(w, ordinalOf(m.elementAt(i)));
+            }
+            words[r.ordinal()] = w;
+        }
+        return new Snapshot(words, 0, null, dealer.getSeed(),
+                System.currentTimeMillis(), null, null);
+    }
+
+    /**
+     * Notifie les changements qui font passer de s à t : ceux des podiums
+     *  modifiés, puis ceux de lastOrder et de finished.
+     */
+    private void fireChanges(Snapshot s, Snapshot t) {
+        for (Rank r : Rank.values()) {
+            if (s.words[r.ordinal()] != t.words[r.ordinal()]) {
+                views.get(r).fireStateChanged();
+            }
+        }
+        if (pcs.hasListeners(PROP_LAST_ORDER)) {
+            pcs.firePropertyChange(PROP_LAST_ORDER, null, t.getLastOrder());
+        }
+        if (pcs.hasListeners(PROP_FINISHED)) {
+            pcs.firePropertyChange(PROP_FINISHED, null, t.isFinished());
+        }
+    }
+
+    /**
+     * Notifie les changements d'une réinitialisation qui fait passer de s à
+     *  t : ceux des podiums modifiés, puis celui de finished.
+     */
+    private void fireReinit(Snapshot s, Snapshot t) {
+        for (Rank r : Rank.values()) {
+            if (s.words[r.ordinal()] != t.words[r.ordinal()]) {
+                views.get(r).fireStateChanged();
+            }
+        }
+        if (pcs.hasListeners(PROP_FINISHED)) {
+            pcs.firePropertyChange(PROP_FINISHED, null, t.isFinished());
+        }
+    }
+
+    /**
+     * Applique l'ordre o aux mots w.
+     */
+    private static void apply(long[] w, Order o) {
+        int left = Rank.WORK_LEFT.ordinal();
+        int right = Rank.WORK_RIGHT.ordinal();
+        switch (o) {
+            case LO:
+                sendTop(w, left, right);
+                break;
+            case KI:
+                sendTop(w, right, left);
+                break;
+            case MA:
+                w[left] = PackedPodiumModel.rotated(w[left]);
+                break;
+            case NI:
+                w[right] = PackedPodiumModel.rotated(w[right]);
+                break;
+            case SO:
+                exchangeTops(w, left, right);
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static void sendTop(long[] w, int from, int to) {
+        // la capacité de chaque podium est le nombre d'éléments : to n'est
+        //  jamais plein si from n'est pas vide
+        int fs = PackedPodiumModel.sizeOf(w[from]);
+        if (fs > 0) {
+            int e = PackedPodiumModel.ordinalAt(w[from], fs - 1);
+            w[from] = PackedPodiumModel.withoutTop(w[from]);
+            w[to] = PackedPodiumModel.withTop(w[to], e);
+        }
+    }
+
+    private static void exchangeTops(long[] w, int left, int right) {
+        int ls = PackedPodiumModel.sizeOf(w[left]);
+        int rs = PackedPodiumModel.sizeOf(w[right]);
+        if (ls > 0 && rs > 0) {
+            int a = PackedPodiumModel.ordinalAt(w[left], ls - 1);
+            int b = PackedPodiumModel.ordinalAt(w[right], rs - 1);
+            w[left] = PackedPodiumModel.withTop(
+                    PackedPodiumModel.withoutTop(w[left]), b);
+            w[right] = PackedPodiumModel.withTop(
+                    PackedPodiumModel.withoutTop(w[right]), a);
+        }
+    }
+
+    /**
+     * L'élément contenu dans le quartet de rang i du mot w.
+     */
+    private E elementOf(long w, int i) {
+        return universe[PackedPodiumModel.ordinalAt(w, i)];
+    }
+
+    private int ordinalOf(E e) {
+        for (int i = 0; i < universe.length; i++) {
+            if (universe[i].equals(e)) {
+                return i;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    /**
+     * Les éléments de elems dans l'ordre de référence de StdPodiumManager.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E[] referenceOrder(Set<E> elems) {
+        Object[] a = elems.toArray();
+        try {
+            Arrays.sort(a);
+        } catch (ClassCastException e) {
+            a = elems.toArray();
+        }
+        return (E[]) a;
+    }
+
+    /**
+     * Le modèle d'un podium : une vue de l'instantané courant, en lecture
+     *  seule.
+     * La liste des observateurs (EventListenerList) supporte les ajouts et
+     *  les notifications concurrents.
+     */
+    private final class View implements PodiumModel<E> {
+        private final Rank rank;
+        private final EventListenerList eventListeners;
+        private final ChangeEvent event;
+
+        View(Rank rank) {
+            this.rank = rank;
+            eventListeners = new EventListenerList();
+            event = new ChangeEvent(this);
+        }
+
+        @Override
+        public E bottom() {
+            long w = state.get().getWord(rank);
+            Contract.checkCondition(PackedPodiumModel.sizeOf(w) > 0);
+
+            return elementOf(w, 0);
+        }
+
+        @Override
+        public int capacity() {
+            return universe.length;
+        }
+
+        @Override
+        public E elementAt(int i) {
+            Contract.checkCondition(0 <= i && i < capacity());
+
+            return state.get().elementAt(rank, i);
+        }
+
+        @Override
+        public ChangeListener[] getChangeListeners() {
+            return eventListeners.getListeners(ChangeListener.class);
+        }
+
+        @Override
+        public boolean similar(PodiumModel<E> that) {
+            Contract.checkCondition(that != null);
+
+            long w = state.get().getWord(rank);
+            int size = PackedPodiumModel.sizeOf(w);
+            boolean result = that.capacity() == capacity()
+                    && that.size() == size;
+            for (int i = 0; result && i < size; i++) {
+                result = elementOf(w, i).equals(that.elementAt(i));
+            }
+            return result;
+        }
+
+        @Override
+        public int size() {
+            return state.get().size(rank);
+        }
+
+        @Override
+        public E top() {
+            long w = state.get().getWord(rank);
+            Contract.checkCondition(PackedPodiumModel.sizeOf(w) > 0);
+
+            return elementOf(w, PackedPodiumModel.sizeOf(w) - 1);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder res = new StringBuilder("[");
+            long w = state.get().getWord(rank);
+            for (int i = 0; i < PackedPodiumModel.sizeOf(w); i++) {
+                res.append(elementOf(w, i)).append('|');
+            }
+            return res.append(']').toString();
+        }
+
+        @Override
+        public void addChangeListener(ChangeListener cl) {
+            Contract.checkCondition(cl != null);
+
+            eventListeners.add(ChangeListener.class, cl);
+        }
+
+        @Override
+        public void removeChangeListener(ChangeListener cl) {
+            Contract.checkCondition(cl != null);
+
+            eventListeners.remove(ChangeListener.class, cl);
+        }
+
+        @Override
+        public void addTop(E elem) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeBottom() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeTop() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void rotate() {
+            throw new UnsupportedOperationException();
+        }
+
+        void fireStateChanged() {
+            Object[] listeners = eventListeners.getListenerList();
+            for (int i = listeners.length - 2; i >= 0; i -= 2) {
+                if (listeners[i] == ChangeListener.class) {
+                    ((ChangeListener) listeners[i + 1]).stateChanged(event);
+                }
+            }
+        }
+    }
+}
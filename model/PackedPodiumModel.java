@@ -0,0 +1,360 @@
+package crazy.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+
+import util.Contract;
+
+/**
+ * Implémentation de PodiumModel dont tout l'état tient dans un long.
+ * Les éléments sont pris dans un univers d'au plus 16 éléments distincts
+ *  fixé à la construction ; chacun est représenté par son rang dans cet
+ *  univers (son ordinal), codé sur 4 bits.
+ * Le quartet de rang i (bits 4i à 4i + 3) contient l'ordinal de
+ *  elementAt(i), les quartets de rang supérieur ou égal à size() sont nuls
+ *  et la taille occupe les bits 60 à 63.
+ * Les commandes se réduisent ainsi à des décalages et des masques, et deux
+ *  modèles de même univers sont similaires si et seulement si leurs mots
+ *  sont égaux. Ces opérations sur les mots sont aussi offertes au paquetage
+ *  sous forme de fonctions statiques (voir ConcurrentPodiumManager).
+ * Le tableau universe est partagé entre les modèles construits avec lui (ce
+ *  qui rend leur comparaison immédiate) et ne doit plus être modifié.
+ * La liste des observateurs n'est créée qu'à l'ajout du premier d'entre eux.
+ * @inv <pre>
+ *     capacity() <= MAX_CAPACITY
+ *     forall i, 0 <= i < size() :
+ *         elementAt(i) == getUniverse()[ordinalAt(i)] </pre>
+ * @cons <pre>
+ * $ARGS$ E[] universe, List<E> init, int capacity
+ * $PRE$
+ *     universe != null && universe.length <= MAX_UNIVERSE
+ *     les éléments de universe sont non null et distincts
+ *     init != null
+ *     init.size() <= capacity <= MAX_CAPACITY
+ *     forall i, 0 <= i < init.size() : init.get(i) appartient à universe
+ * $POST$
+ *     capacity() == capacity
+ *     size() == init.size()
+ *     forall i, 0 <= i < size() : elementAt(i) == init.get(i) </pre>
+ */
+public class PackedPodiumModel<E> implements PodiumModel<E> {
+
+    // ATTRIBUTS
+
+    /**
+     * La capacité maximale d'un modèle compact.
+     */
+    public static final int MAX_CAPACITY = 15;
+
+    /**
+     * Le nombre maximal d'éléments de l'univers.
+     */
+    public static final int MAX_UNIVERSE = 16;
+
+    private static final int BITS = 4;
+    private static final long NIBBLE = 0xFL;
+    private static final int SIZE_SHIFT = 60;
+    private static final long ELEMS_MASK = (1L << SIZE_SHIFT) - 1;
+
+    private final E[] universe;
+    private final int capacity;
+    private long word;
+    private EventListenerList eventListeners;
+    private ChangeEvent event;
+
+    // CONSTRUCTEURS
+
+    public PackedPodiumModel(E[] universe, List<E> init, int capacity) {
+        Contract.checkCondition(universe != null);
+        Contract.checkCondition(universe.length <= MAX_UNIVERSE);
+        Contract.checkCondition(init != null);
+        Contract.checkCondition(init.size() <= capacity);
+        Contract.checkCondition(capacity <= MAX_CAPACITY);
+
+        this.universe = universe;
+        this.capacity = capacity;
+        long w = 0;
+        for (E e : init) {
+            w = withTop(w, ordinalOf(e));
+        }
+        word = w;
+    }
+
+    // REQUETES
+
+    @Override
+    public E bottom() {
+        Contract.checkCondition(size() > 0);
+
+        return universe[ordinalAt(word, 0)];
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public E elementAt(int i) {
+        Contract.checkCondition(0 <= i && i < capacity());
+
+        return i < size() ? universe[ordinalAt(i)] : null;
+    }
+
+    @Override
+    public ChangeListener[] getChangeListeners() {
+        if (eventListeners == null) {
+            return new ChangeListener[0];
+        }
+        return eventListeners.getListeners(ChangeListener.class);
+    }
+
+    /**
+     * L'ordinal (rang dans l'univers) de elementAt(i).
+     * @pre <pre>
+     *     0 <= i < size() </pre>
+     */
+    public int ordinalAt(int i) {
+        Contract.checkCondition(0 <= i && i < size());
+
+        return ordinalAt(word, i);
+    }
+
+    /**
+     * Une copie de l'univers de ce modèle.
+     */
+    public E[] getUniverse() {
+        return universe.clone();
+    }
+
+    /**
+     * Le mot qui code l'état de ce modèle.
+     */
+    public long getWord() {
+        return word;
+    }
+
+    @Override
+    public boolean similar(PodiumModel<E> that) {
+        Contract.checkCondition(that != null);
+
+        if (that instanceof PackedPodiumModel) {
+            PackedPodiumModel<?> p = (PackedPodiumModel<?>) that;
+            if (p.universe == universe || Arrays.equals(p.universe, universe)) {
+                return p.capacity == capacity && p.word == word;
+            }
+        }
+        int size = size();
+        boolean result = (that.capacity() == capacity)
+                && (that.size() == size);
+        for (int i = 0; result && (i < size); i++) {
+            result = that.elementAt(i).equals(universe[ordinalAt(i)]);
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return sizeOf(word);
+    }
+
+    @Override
+    public E top() {
+        Contract.checkCondition(size() > 0);
+
+        return universe[ordinalAt(size() - 1)];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder("[");
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            res.append(universe[ordinalAt(i)]).append('|');
+        }
+        for (int i = size; i < capacity; i++) {
+            res.append(' ');
+            if (i < capacity - 1) {
+                res.append('|');
+            }
+        }
+        return res.append(']').toString();
+    }
+
+    // COMMANDES
+
+    @Override
+    public void addChangeListener(ChangeListener cl) {
+        Contract.checkCondition(cl != null);
+
+        if (eventListeners == null) {
+            eventListeners = new EventListenerList();
+            event = new ChangeEvent(this);
+        }
+        eventListeners.add(ChangeListener.class, cl);
+    }
+
+    @Override
+    public void addTop(E elem) {
+        Contract.checkCondition(elem != null);
+        Contract.checkCondition(size() < capacity());
+
+        word = withTop(word, ordinalOf(elem));
+        fireStateChanged();
+    }
+
+    @Override
+    public void removeBottom() {
+        Contract.checkCondition(size() > 0);
+
+        word = withoutBottom(word);
+        fireStateChanged();
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener cl) {
+        Contract.checkCondition(cl != null);
+
+        if (eventListeners != null) {
+            eventListeners.remove(ChangeListener.class, cl);
+        }
+    }
+
+    @Override
+    public void removeTop() {
+        Contract.checkCondition(size() > 0);
+
+        word = withoutTop(word);
+        fireStateChanged();
+    }
+
+    @Override
+    public void rotate() {
+        Contract.checkCondition(size() > 0);
+
+        word = rotated(word);
+        fireStateChanged();
+    }
+
+    /**
+     * Remplace l'état de ce modèle par celui codé par w, avec notification de
+     *  changement d'état.
+     * @pre <pre>
+     *     la taille codée par w est inférieure ou égale à capacity()
+     *     les quartets de w de rang supérieur ou égal à cette taille sont nuls
+     *     les quartets de w de rang inférieur sont des ordinaux distincts
+     *       de l'univers </pre>
+     * @post <pre>
+     *     getWord() == w </pre>
+     */
+    public void setWord(long w) {
+        int size = sizeOf(w);
+        Contract.checkCondition(size <= capacity);
+        Contract.checkCondition((w & ELEMS_MASK) >>> (BITS * size) == 0);
+
+        word = w;
+        fireStateChanged();
+    }
+
+    protected void fireStateChanged() {
+        if (eventListeners == null) {
+            return;
+        }
+        Object[] listeners = eventListeners.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            if (listeners[i] == ChangeListener.class) {
+                ((ChangeListener) listeners[i + 1]).stateChanged(event);
+            }
+        }
+    }
+
+    // OUTILS
+
+    /**
+     * La taille codée par le mot w.
+     */
+    static int sizeOf(long w) {
+        return (int) (w >>> SIZE_SHIFT);
+    }
+
+    /**
+     * L'ordinal contenu dans le quartet de rang i du mot w.
+     */
+    static int ordinalAt(long w, int i) {
+        return (int) ((w >>> (BITS * i)) & NIBBLE);
+    }
+
+    /**
+     * Le mot w auquel on ajoute l'ordinal o au sommet.
+     * @pre <pre>
+     *     sizeOf(w) < MAX_CAPACITY
+     *     0 <= o < MAX_UNIVERSE </pre>
+     */
+    static long withTop(long w, int o) {
+        int size = sizeOf(w);
+        return (w & ELEMS_MASK) | ((long) o << (BITS * size))
+                | ((long) (size + 1) << SIZE_SHIFT);
+    }
+
+    /**
+     * Le mot w privé de son sommet.
+     * @pre <pre>
+     *     sizeOf(w) > 0 </pre>
+     */
+    static long withoutTop(long w) {
+        int size = sizeOf(w) - 1;
+        return (w & ELEMS_MASK & ~(NIBBLE << (BITS * size)))
+                | ((long) size << SIZE_SHIFT);
+    }
+
+    /**
+     * Le mot w privé de sa base.
+     * @pre <pre>
+     *     sizeOf(w) > 0 </pre>
+     */
+    static long withoutBottom(long w) {
+        return ((w & ELEMS_MASK) >>> BITS)
+                | ((long) (sizeOf(w) - 1) << SIZE_SHIFT);
+    }
+
+    /**
+     * Le mot w dont la base est passée au sommet (w lui-même s'il a au plus
+     *  un élément).
+     */
+    static long rotated(long w) {
+        int size = sizeOf(w);
+        if (size <= 1) {
+            return w;
+        }
+        long elems = w & ELEMS_MASK;
+        return (elems >>> BITS) | ((elems & NIBBLE) << (BITS * (size - 1)))
+                | ((long) size << SIZE_SHIFT);
+    }
+
+    /**
+     * Le rang de e dans l'univers.
+     * Pour une énumération dont toutes les constantes forment l'univers dans
+     *  l'ordre de déclaration, c'est directement e.ordinal().
+     */
+    private int ordinalOf(E e) {
+        Contract.checkCondition(e != null);
+
+        if (e instanceof Enum) {
+            int i = ((Enum<?>) e).ordinal();
+            if (i < universe.length && universe[i] == e) {
+                return i;
+            }
+        }
+        for (int i = 0; i < universe.length; i++) {
+            if (universe[i].equals(e)) {
+                return i;
+            }
+        }
+        Contract.checkCondition(false);
+        return -1;
+    }
+}
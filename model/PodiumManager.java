@@ -3,6 +3,7 @@ package crazy.model;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyVetoException;
 import java.beans.VetoableChangeListener;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -37,6 +38,18 @@ public interface PodiumManager<E> {
 
     // REQUETES
 
+    /**
+     * Indique si un ordre annulé peut être exécuté à nouveau par redo().
+     */
+    boolean canRedo();
+
+    /**
+     * Indique si le dernier ordre de l'historique de la partie peut être
+     *  annulé par undo().
+     * L'historique peut être limité aux derniers ordres de la partie.
+     */
+    boolean canUndo();
+
     /**
      * Le dernier ordre donné.
      * Vaut null en début de partie.
@@ -45,6 +58,10 @@ public interface PodiumManager<E> {
 
     /**
      * Les quatre modèles de podium gérés par ce gestionnaire.
+     * Ils ne doivent être modifiés que par l'intermédiaire du gestionnaire :
+     *  une implémentation peut les fournir en lecture seule, leurs commandes
+     *  (addTop, removeBottom, removeTop, rotate) levant alors
+     *  UnsupportedOperationException (voir ConcurrentPodiumManager).
      */
     Map<Rank, PodiumModel<E>> getModels();
 
@@ -52,9 +69,17 @@ public interface PodiumManager<E> {
      * Tous les observateurs de changement de valeur de la propriété pName.
      */
     PropertyChangeListener[] getPropertyChangeListeners(String pName);
+
+    /**
+     * La graine de la partie en cours : reinit(getSeed()) régénère la même
+     *  configuration initiale.
+     */
+    long getSeed();
     
     /**
-     * Le nombre d'ordres donnés au cours d'une partie.
+     * Le nombre d'ordres donnés au cours d'une partie, c'est-à-dire le nombre
+     *  d'ordres de son historique : undo() le diminue de 1 et redo()
+     *  l'augmente de 1.
      */
     int getShotsNb();
 
@@ -113,6 +138,52 @@ public interface PodiumManager<E> {
      */
     void executeOrder(Order o) throws PropertyVetoException;
 
+    /**
+     * Exécute la suite d'ordres orders sur ce gestionnaire, comme une suite
+     *  d'appels à executeOrder mais en regroupant les notifications.
+     * Chaque ordre est d'abord soumis aux VCL de la propriété lastOrder (dans
+     *  l'ordre de la suite) : si l'un d'eux est refusé, aucun n'est exécuté.
+     * Les ordres sont ensuite exécutés sans notification de la part des
+     *  modèles ; chaque modèle modifié notifie ensuite un unique changement
+     *  d'état, puis un seul changement de valeur est notifié pour la
+     *  propriété lastOrder et un seul pour la propriété finished.
+     * Ne fait rien si orders est vide.
+     * @pre <pre>
+     *     orders != null
+     *     forall Order o in orders : o != null </pre>
+     * @post <pre>
+     *     les actions conformes aux ordres de orders ont été exécutées dans
+     *       l'ordre sur les modèles gérés par ce gestionnaire
+     *     getShotsNb() == old getShotsNb() + orders.size()
+     *     orders non vide ==> getLastOrder() == dernier ordre de orders </pre>
+     * @throws
+     *     PropertyVetoException si l'un des ordres a été refusé
+     */
+    void executeOrders(List<Order> orders) throws PropertyVetoException;
+
+    /**
+     * Équivalent à executeOrders(Arrays.asList(orders)).
+     * @pre <pre>
+     *     orders != null
+     *     forall Order o in orders : o != null </pre>
+     * @throws
+     *     PropertyVetoException si l'un des ordres a été refusé
+     */
+    void executeOrders(Order[] orders) throws PropertyVetoException;
+
+    /**
+     * Exécute à nouveau le dernier ordre annulé, sans le soumettre aux VCL.
+     * Les changements de valeur des propriétés lastOrder et finished sont
+     *  notifiés comme pour executeOrder.
+     * @pre <pre>
+     *     canRedo() </pre>
+     * @post <pre>
+     *     getShotsNb() == old getShotsNb() + 1
+     *     les podiums de travail sont dans l'état qui suivait cet ordre
+     *     getLastOrder() == l'ordre exécuté à nouveau </pre>
+     */
+    void redo();
+
     /**
      * Réinitialise ce gestionnaire.
      * Un changement de valeur pour la propriété finished est notifié
@@ -125,6 +196,38 @@ public interface PodiumManager<E> {
      */
     void reinit();
 
+    /**
+     * Réinitialise ce gestionnaire avec la configuration déterminée par seed.
+     * Deux gestionnaires de même implantation construits sur les mêmes
+     *  éléments produisent la même configuration pour une même graine.
+     * Un changement de valeur pour la propriété finished est notifié
+     *  (cette propriété passe de la valeur null à une valeur non null).
+     * @post <pre>
+     *     getSeed() == seed
+     *     getShotsNb() == 0
+     *     getTimeDelta() == 0
+     *     getLastOrder() == null </pre>
+     */
+    void reinit(long seed);
+
+    /**
+     * Annule le dernier ordre de l'historique de la partie.
+     * Les podiums de travail notifient chacun au plus un changement d'état,
+     *  puis les changements de valeur des propriétés lastOrder et finished
+     *  sont notifiés comme pour executeOrder.
+     * L'ordre annulé peut ensuite être exécuté à nouveau par redo(), tant
+     *  qu'aucun autre ordre n'a été exécuté.
+     * @pre <pre>
+     *     canUndo() </pre>
+     * @post <pre>
+     *     getShotsNb() == old getShotsNb() - 1
+     *     les podiums de travail sont dans l'état qui précédait cet ordre
+     *     canRedo()
+     *     getLastOrder() == l'ordre qui précédait l'ordre annulé (null s'il
+     *       n'y en a pas ou s'il n'est plus dans l'historique) </pre>
+     */
+    void undo();
+
     /**
      * Retire un PCL pour la propriété pName.
      * Ne fait rien si lnr a déjà été retiré.
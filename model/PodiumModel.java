@@ -132,4 +132,17 @@ public interface PodiumModel<E> {
      *         elementAt(i) == old elementAt(i) </pre>
      */
     void removeTop();
+
+    /**
+     * Fait passer l'élément de la base au sommet, avec une seule notification
+     *  de changement d'état.
+     * @pre <pre>
+     *     size() > 0 </pre>
+     * @post <pre>
+     *     size() == old size()
+     *     forall i, 0 <= i < size() - 1 :
+     *         elementAt(i) == old elementAt(i + 1)
+     *     elementAt(size() - 1) == old bottom() </pre>
+     */
+    void rotate();
 }
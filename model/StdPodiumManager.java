@@ -6,20 +6,92 @@ import java.beans.PropertyChangeListener;
 import java.beans.VetoableChangeListener;
 import java.beans.VetoableChangeSupport;
 import java.beans.PropertyChangeSupport;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import util.Contract;
 
+/**
+ * Implémentation standard de PodiumManager.
+ * Le gestionnaire tient à jour, pour chaque podium, une empreinte polynomiale
+ *  de son contenu : H = somme des v(elementAt(i)) * B^i (modulo 2^64), où
+ *  v(e) est dérivé de e.hashCode() et B est impair (donc inversible).
+ * Chaque ordre met à jour les empreintes des podiums de travail en temps
+ *  constant, y compris MA et NI : retirer la base revient à soustraire v(base)
+ *  puis à multiplier par l'inverse de B.
+ * isFinished() ne compare donc les podiums élément par élément que lorsque
+ *  les empreintes de travail et d'objectif coïncident.
+ * Chaque partie est entièrement déterminée par sa graine (getSeed()) : elle
+ *  est distribuée par un générateur pseudo-aléatoire privé, réinitialisé
+ *  avec la graine avant la distribution (comme le serait new Random(seed)).
+ *  Les graines des parties successives sont tirées d'un autre générateur,
+ *  qui peut être fourni à la construction et n'est jamais réinitialisé :
+ *  chaque graine ne dépend donc pas de la précédente. La distribution peut aussi être
+ *  confiée à un Dealer, qui détermine seul les configurations à partir de
+ *  la graine.
+ * Les quatre modèles de podiums sont créés une fois pour toutes et remplis à
+ *  nouveau à chaque réinitialisation.
+ * L'historique des ordres d'une partie est un journal circulaire d'octets
+ *  (l'ordinal de l'ordre, marqué lorsque l'ordre n'a rien changé) qui
+ *  conserve les HISTORY_SIZE derniers ordres, complété tous les
+ *  SNAPSHOT_PERIOD ordres par un instantané des podiums de travail (les
+ *  podiums objectif ne changent pas au cours d'une partie).
+ * Annuler un ordre revient à restaurer l'instantané qui le précède puis à
+ *  rejouer les ordres suivants, sans notification intermédiaire ; refaire un
+ *  ordre revient à le rejouer. Ni l'exécution ni l'annulation d'un ordre
+ *  n'allouent de mémoire.
+ * Les modèles retournés par getModels() ne doivent être modifiés que par
+ *  l'intermédiaire de ce gestionnaire.
+ */
 public class StdPodiumManager<E> implements PodiumManager<E> {
 
+    /**
+     * Une distribution des éléments déterminée par la graine de la partie.
+     * Les éléments sont désignés par leur indice dans l'ordre de référence :
+     *  leur ordre naturel s'ils sont comparables, sinon l'ordre d'itération
+     *  de l'ensemble fourni au gestionnaire.
+     */
+    public interface Dealer {
+        /**
+         * Range dans indices les n indices des éléments de la configuration
+         *  de travail (goal == false) ou objectif (goal == true) de la partie
+         *  de graine seed : ceux du podium gauche puis ceux du podium droit,
+         *  chacun de la base vers le sommet. Retourne la taille du podium
+         *  gauche.
+         * @pre <pre>
+         *     indices != null && indices.length == n </pre>
+         * @post <pre>
+         *     indices est une permutation de 0 .. n - 1
+         *     0 <= result <= n </pre>
+         */
+        int deal(long seed, boolean goal, int[] indices);
+    }
+
     // ATTRIBUTS
 
+    /**
+     * Le nombre d'ordres conservés dans l'historique (une puissance de 2).
+     */
+    public static final int HISTORY_SIZE = 1 << 10;
+
+    /**
+     * Le nombre d'ordres entre deux instantanés des podiums de travail.
+     */
+    public static final int SNAPSHOT_PERIOD = 1 << 5;
+
+    private static final long BASE = 0x9E3779B97F4A7C15L;
+    private static final long BASE_INV = inverse(BASE);
+
+    private static final Order[] ORDERS = Order.values();
+    private static final byte NO_OP = (byte) 0x80;
+    private static final int SNAPSHOTS_NB = HISTORY_SIZE / SNAPSHOT_PERIOD + 1;
+
     private int shotsNb;
     private long time;
     private long delta;
@@ -28,28 +100,102 @@ public class StdPodiumManager<E> implements PodiumManager<E> {
     private final VetoableChangeSupport vcs; 
     
     private final Set<E> elements;
-    private EnumMap<Rank, PodiumModel<E>> podiumModels;
+    private final EnumMap<Rank, StdPodiumModel<E>> podiumModels;
+    // tire les graines des parties, sans jamais être réinitialisé
+    private final Random random;
+    // distribue chaque partie, réinitialisé avec sa graine
+    private final Random dealing;
+    private final Dealer dealer;
+    // les indices distribués (par dealer ou par randomDeal)
+    private final int[] dealt;
+    private long seed;
+    // les éléments dans l'ordre de référence, et le paquet à distribuer
+    private final E[] base;
+    private final E[] deck;
+    // empreintes des podiums, indexées par l'ordinal de leur rang
+    private final long[] hashes;
+    // puissances de BASE, de 0 à elements.size()
+    private final long[] powers;
+
+    // l'ordre numéro p (à partir de 0) de la partie est dans
+    //  history[p % HISTORY_SIZE] tant que p >= historyEnd - HISTORY_SIZE
+    private final byte[] history;
+    // le nombre d'ordres de l'historique (getShotsNb() <= historyEnd)
+    private int historyEnd;
+    // l'instantané numéro k, pris après k * SNAPSHOT_PERIOD ordres, est dans
+    //  la case k % SNAPSHOTS_NB tant que snapshotIds[k % SNAPSHOTS_NB] == k :
+    //  les éléments de WORK_LEFT puis ceux de WORK_RIGHT, de la base vers le
+    //  sommet, et la taille de WORK_LEFT
+    private final E[][] snapshots;
+    private final int[] snapshotSplits;
+    private final int[] snapshotIds;
 
     
     // CONSTRUCTEURS
 
     /**
+     * Un gestionnaire dont les graines des parties sont tirées de rnd.
      * @pre <pre>
      *     drawables != null
-     *     drawables.size() >= 2 </pre>
+     *     drawables.size() >= 2
+     *     rnd != null </pre>
      */
-    public StdPodiumManager(Set<E> elems) {
+    public StdPodiumManager(Set<E> elems, Random rnd) {
+        this(elems, rnd, null);
+    }
+
+    /**
+     * Un gestionnaire dont les graines des parties sont tirées de rnd, et
+     *  dont les configurations sont distribuées par d (par randomDeal si d
+     *  est null).
+     * @pre <pre>
+     *     drawables != null
+     *     drawables.size() >= 2
+     *     rnd != null </pre>
+     */
+    public StdPodiumManager(Set<E> elems, Random rnd, Dealer d) {
         Contract.checkCondition(elems != null);
         Contract.checkCondition(elems.size() >= 2);
+        Contract.checkCondition(rnd != null);
 
         elements = new HashSet<E>(elems);
+        random = rnd;
+        dealing = new Random();
+        dealer = d;
+        dealt = new int[elements.size()];
+        base = referenceOrder(elements);
+        deck = base.clone();
 		pcs = new PropertyChangeSupport(this);
 		vcs = new VetoableChangeSupport(this);
-        podiumModels = new EnumMap<Rank, PodiumModel<E>>(Rank.class);
+        podiumModels = new EnumMap<Rank, StdPodiumModel<E>>(Rank.class);
+        for (Rank r : Rank.values()) {
+            podiumModels.put(r, new StdPodiumModel<E>(
+                    Collections.<E>emptyList(), elements.size()));
+        }
+        hashes = new long[Rank.values().length];
+        history = new byte[HISTORY_SIZE];
+        snapshots = newSnapshots(SNAPSHOTS_NB, elements.size());
+        snapshotSplits = new int[SNAPSHOTS_NB];
+        snapshotIds = new int[SNAPSHOTS_NB];
+        powers = new long[elements.size() + 1];
+        powers[0] = 1;
+        for (int i = 1; i < powers.length; i++) {
+            powers[i] = powers[i - 1] * BASE;
+        }
+        seed = random.nextLong();
         changePodiumModels();
         internalReinit();
     }
 
+    /**
+     * @pre <pre>
+     *     drawables != null
+     *     drawables.size() >= 2 </pre>
+     */
+    public StdPodiumManager(Set<E> elems) {
+        this(elems, new Random());
+    }
+
     // REQUETES
 
     @Override
@@ -59,7 +205,12 @@ public class StdPodiumManager<E> implements PodiumManager<E> {
 
     @Override
     public Map<Rank, PodiumModel<E>> getModels() {
-        return podiumModels.clone();
+        return new EnumMap<Rank, PodiumModel<E>>(podiumModels);
+    }
+
+    @Override
+    public long getSeed() {
+        return seed;
     }
 
     @Override
@@ -72,8 +223,28 @@ public class StdPodiumManager<E> implements PodiumManager<E> {
         return delta;
     }
 
+    @Override
+    public boolean canRedo() {
+        return shotsNb < historyEnd;
+    }
+
+    @Override
+    public boolean canUndo() {
+        if (shotsNb == 0) {
+            return false;
+        }
+        int k = (shotsNb - 1) / SNAPSHOT_PERIOD;
+        return k * SNAPSHOT_PERIOD >= historyEnd - HISTORY_SIZE
+                && snapshotIds[k % SNAPSHOTS_NB] == k;
+    }
+
     @Override
     public boolean isFinished() {
+        if (hashes[Rank.WORK_LEFT.ordinal()] != hashes[Rank.GOAL_LEFT.ordinal()]
+                || hashes[Rank.WORK_RIGHT.ordinal()]
+                        != hashes[Rank.GOAL_RIGHT.ordinal()]) {
+            return false;
+        }
         PodiumModel<E> workLeft = podiumModels.get(Rank.WORK_LEFT);
         PodiumModel<E> workRight = podiumModels.get(Rank.WORK_RIGHT);
         PodiumModel<E> goalLeft = podiumModels.get(Rank.GOAL_LEFT);
@@ -87,88 +258,278 @@ public class StdPodiumManager<E> implements PodiumManager<E> {
     public void executeOrder(Order o) throws PropertyVetoException {
         Contract.checkCondition(o != null);
 
-        vcs.fireVetoableChange(PROP_LAST_ORDER, getLastOrder(), o); 
+        // sans observateur, aucun événement n'est construit
+        if (vcs.hasListeners(PROP_LAST_ORDER)) {
+            fireVetoableOrder(getLastOrder(), o);
+        }
+        record(o, apply(o));
+        lastOrder = o;
+        fireOrderChanges();
+    }
+
+    @Override
+    public void executeOrders(List<Order> orders) throws PropertyVetoException {
+        Contract.checkCondition(orders != null);
+
+        executeOrders(orders.toArray(new Order[orders.size()]));
+    }
+
+    @Override
+    public void executeOrders(Order[] orders) throws PropertyVetoException {
+        Contract.checkCondition(orders != null);
+        for (Order o : orders) {
+            Contract.checkCondition(o != null);
+        }
+
+        if (orders.length == 0) {
+            return;
+        }
+        if (vcs.hasListeners(PROP_LAST_ORDER)) {
+            Order previous = getLastOrder();
+            for (Order o : orders) {
+                fireVetoableOrder(previous, o);
+                previous = o;
+            }
+        }
+        for (StdPodiumModel<E> m : podiumModels.values()) {
+            m.suspendNotifications();
+        }
+        try {
+            for (Order o : orders) {
+                record(o, apply(o));
+            }
+        } finally {
+            for (StdPodiumModel<E> m : podiumModels.values()) {
+                m.resumeNotifications();
+            }
+        }
+        lastOrder = orders[orders.length - 1];
+        fireOrderChanges();
+    }
+
+    @Override
+    public void redo() {
+        Contract.checkCondition(canRedo());
+
+        byte entry = history[shotsNb & (HISTORY_SIZE - 1)];
+        Order o = ORDERS[entry & ~NO_OP];
+        if (entry >= 0) {
+            apply(o);
+        }
+        advance();
+        lastOrder = o;
+        fireOrderChanges();
+    }
+
+    @Override
+    public void reinit() {
+        reinit(random.nextLong());
+    }
+
+    @Override
+    public void reinit(long s) {
+        seed = s;
+        changePodiumModels();
+        internalReinit();
+        if (pcs.hasListeners(PROP_FINISHED)) {
+            pcs.firePropertyChange(PROP_FINISHED, null, isFinished());
+        }
+
+    }
+
+    @Override
+    public void undo() {
+        Contract.checkCondition(canUndo());
+
+        int target = shotsNb - 1;
+        int k = target / SNAPSHOT_PERIOD;
+        int slot = k % SNAPSHOTS_NB;
+        for (StdPodiumModel<E> m : podiumModels.values()) {
+            m.suspendNotifications();
+        }
+        try {
+            int n = deck.length;
+            int split = snapshotSplits[slot];
+            podiumModels.get(Rank.WORK_LEFT).fill(snapshots[slot], 0, split);
+            podiumModels.get(Rank.WORK_RIGHT).fill(snapshots[slot], split, n);
+            hashes[Rank.WORK_LEFT.ordinal()] =
+                    hash(podiumModels.get(Rank.WORK_LEFT));
+            hashes[Rank.WORK_RIGHT.ordinal()] =
+                    hash(podiumModels.get(Rank.WORK_RIGHT));
+            for (int p = k * SNAPSHOT_PERIOD; p < target; p++) {
+                byte entry = history[p & (HISTORY_SIZE - 1)];
+                if (entry >= 0) {
+                    apply(ORDERS[entry]);
+                }
+            }
+        } finally {
+            for (StdPodiumModel<E> m : podiumModels.values()) {
+                m.resumeNotifications();
+            }
+        }
+        shotsNb = target;
+        lastOrder = target > 0 && target > historyEnd - HISTORY_SIZE
+                ? ORDERS[history[(target - 1) & (HISTORY_SIZE - 1)] & ~NO_OP]
+                : null;
+        fireOrderChanges();
+    }
+
+    // OUTILS
+
+    /**
+     * Inscrit l'ordre o à la position courante de l'historique, dont il
+     *  devient le dernier ordre, et avance d'un ordre.
+     * effective indique si o a modifié les podiums.
+     */
+    private void record(Order o, boolean effective) {
+        byte entry = (byte) o.ordinal();
+        history[shotsNb & (HISTORY_SIZE - 1)] =
+                effective ? entry : (byte) (entry | NO_OP);
+        historyEnd = shotsNb + 1;
+        advance();
+    }
+
+    /**
+     * Avance d'un ordre dans l'historique, en prenant un instantané des
+     *  podiums de travail si c'est le moment.
+     */
+    private void advance() {
+        shotsNb += 1;
+        if (shotsNb % SNAPSHOT_PERIOD == 0) {
+            takeSnapshot(shotsNb / SNAPSHOT_PERIOD);
+        }
+    }
+
+    /**
+     * Range dans l'instantané numéro k le contenu des podiums de travail.
+     */
+    private void takeSnapshot(int k) {
+        int slot = k % SNAPSHOTS_NB;
+        E[] snap = snapshots[slot];
+        PodiumModel<E> left = podiumModels.get(Rank.WORK_LEFT);
+        PodiumModel<E> right = podiumModels.get(Rank.WORK_RIGHT);
+        int split = left.size();
+        for (int i = 0; i < split; i++) {
+            snap[i] = left.elementAt(i);
+        }
+        for (int i = 0; i < right.size(); i++) {
+            snap[split + i] = right.elementAt(i);
+        }
+        snapshotSplits[slot] = split;
+        snapshotIds[slot] = k;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E[][] newSnapshots(int count, int n) {
+        return (E[][]) new Object[count][n];
+    }
+
+    /**
+     * Applique l'ordre o aux modèles, sans autre effet.
+     * Retourne false si o n'a rien changé.
+     */
+    private boolean apply(Order o) {
         switch (o) {
             case LO:
-                sendTop(Rank.WORK_LEFT, Rank.WORK_RIGHT);
-                break;
+                return sendTop(Rank.WORK_LEFT, Rank.WORK_RIGHT);
             case KI:
-                sendTop(Rank.WORK_RIGHT, Rank.WORK_LEFT);
-                break;
+                return sendTop(Rank.WORK_RIGHT, Rank.WORK_LEFT);
             case MA:
-                cycle(Rank.WORK_LEFT);
-                break;
+                return cycle(Rank.WORK_LEFT);
             case NI:
-                cycle(Rank.WORK_RIGHT);
-                break;
+                return cycle(Rank.WORK_RIGHT);
             case SO:
-                exchangeTops();
-                break;
+                return exchangeTops();
             default:
                 throw new AssertionError();
         }
-
-        shotsNb += 1;
-        lastOrder = o;
-        pcs.firePropertyChange(PROP_LAST_ORDER, null, lastOrder);
-        boolean b = isFinished();
-        if (b) {
-            delta = System.currentTimeMillis() - time;
-        }
-        pcs.firePropertyChange(PROP_FINISHED, null, b);
     }
 
-    @Override
-    public void reinit() { 
-        podiumModels.clear();
-        changePodiumModels();
-        internalReinit();
-        pcs.firePropertyChange(PROP_FINISHED, null, isFinished());
-
+    /**
+     * Soumet l'ordre o, qui suit l'ordre previous, aux VCL de lastOrder.
+     * L'ancienne valeur est omise lorsqu'elle est égale à o : sinon
+     *  VetoableChangeSupport ne transmettrait pas le changement, et un même
+     *  ordre répété échapperait au veto.
+     */
+    private void fireVetoableOrder(Order previous, Order o)
+            throws PropertyVetoException {
+        vcs.fireVetoableChange(PROP_LAST_ORDER, previous == o ? null : previous,
+                o);
     }
 
-    // OUTILS
+    /**
+     * Met à jour la durée de la partie et notifie les changements de
+     *  lastOrder et de finished qui suivent l'exécution d'ordres.
+     */
+    private void fireOrderChanges() {
+        if (pcs.hasListeners(PROP_LAST_ORDER)) {
+            pcs.firePropertyChange(PROP_LAST_ORDER, null, lastOrder);
+        }
+        boolean b = isFinished();
+        delta = b ? System.currentTimeMillis() - time : 0;
+        if (pcs.hasListeners(PROP_FINISHED)) {
+            pcs.firePropertyChange(PROP_FINISHED, null, b);
+        }
+    }
 
-    private void exchangeTops() {
+    private boolean exchangeTops() {
         PodiumModel<E> left = podiumModels.get(Rank.WORK_LEFT);
         PodiumModel<E> right = podiumModels.get(Rank.WORK_RIGHT);
         if (left.size() > 0 && right.size() > 0) {
             E elem = left.top();
+            E other = right.top();
+            long d = value(other) - value(elem);
+            hashes[Rank.WORK_LEFT.ordinal()] += d * powers[left.size() - 1];
+            hashes[Rank.WORK_RIGHT.ordinal()] -= d * powers[right.size() - 1];
             left.removeTop();
-            left.addTop(right.top());
+            left.addTop(other);
             right.removeTop();
             right.addTop(elem);
+            return true;
         }
+        return false;
     }
 
-    private void cycle(Rank r) {
+    private boolean cycle(Rank r) {
         PodiumModel<E> m = podiumModels.get(r);
-        if (m.size() > 0) {
-            E elem = m.bottom();
-            m.removeBottom();
-            m.addTop(elem);
+        if (m.size() > 1) {
+            long v = value(m.bottom());
+            int i = r.ordinal();
+            hashes[i] = (hashes[i] - v) * BASE_INV + v * powers[m.size() - 1];
+            m.rotate();
+            return true;
         }
+        return false;
     }
 
-    private void sendTop(Rank from, Rank to) {
+    private boolean sendTop(Rank from, Rank to) {
         PodiumModel<E> f = podiumModels.get(from);
         PodiumModel<E> t = podiumModels.get(to);
         if (f.size() > 0 && t.size() < t.capacity()) {
             E elem = f.top();
+            long v = value(elem);
+            hashes[from.ordinal()] -= v * powers[f.size() - 1];
+            hashes[to.ordinal()] += v * powers[t.size()];
             f.removeTop();
             t.addTop(elem);
+            return true;
         }
+        return false;
     }
 
     private void internalReinit() {
+        lastOrder = null;
         shotsNb = 0;
         delta = 0;
         time = System.currentTimeMillis();
+        historyEnd = 0;
+        Arrays.fill(snapshotIds, -1);
+        takeSnapshot(0);
     }
 
     /**
-     * Construit les 4 séquences d'éléments de E, puis les 4 modèles de podiums
-     *  basés sur ces séquences.
+     * Régénère les 4 séquences d'éléments de E à partir de la graine de la
+     *  partie, et les range dans les 4 modèles de podiums existants.
      * La concaténation des deux premières séquences est une permutation des
      *  éléments de drawables.
      * La concaténation des deux dernières séquences est aussi une permutation
@@ -176,64 +537,135 @@ public class StdPodiumManager<E> implements PodiumManager<E> {
      * Il se peut que les permutations soient identiques.
      */
     private void changePodiumModels() {
-        int capacity = elements.size();
-        
-        List<List<E>> population = createRandomElements();
-        podiumModels.put(Rank.WORK_LEFT,
-                new StdPodiumModel<E>(population.get(0), capacity));
-        podiumModels.put(Rank.WORK_RIGHT,
-                new StdPodiumModel<E>(population.get(1), capacity));
-        
-        population = createRandomElements();
-        podiumModels.put(Rank.GOAL_LEFT,
-                new StdPodiumModel<E>(population.get(0), capacity));
-        podiumModels.put(Rank.GOAL_RIGHT,
-                new StdPodiumModel<E>(population.get(1), capacity));
+        int n = deck.length;
+        dealing.setSeed(seed);
+
+        int k = deal(false);
+        podiumModels.get(Rank.WORK_LEFT).fill(deck, 0, k);
+        podiumModels.get(Rank.WORK_RIGHT).fill(deck, k, n);
+
+        k = deal(true);
+        podiumModels.get(Rank.GOAL_LEFT).fill(deck, 0, k);
+        podiumModels.get(Rank.GOAL_RIGHT).fill(deck, k, n);
+
+        for (Rank r : Rank.values()) {
+            hashes[r.ordinal()] = hash(podiumModels.get(r));
+        }
+    }
+
+    /**
+     * L'empreinte du contenu de m.
+     */
+    private long hash(PodiumModel<E> m) {
+        long h = 0;
+        for (int i = m.size() - 1; i >= 0; i--) {
+            h = h * BASE + value(m.elementAt(i));
+        }
+        return h;
+    }
+
+    /**
+     * La valeur de e dans les empreintes : un mélange de e.hashCode().
+     */
+    private static long value(Object e) {
+        long h = e.hashCode() * 0xC2B2AE3D27D4EB4FL;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * L'inverse de b (impair) modulo 2^64, par la méthode de Newton.
+     */
+    private static long inverse(long b) {
+        long x = b;
+        for (int i = 0; i < 5; i++) {
+            x *= 2 - b * x;
+        }
+        return x;
+    }
+
+    /**
+     * Distribue dans deck la configuration de travail ou objectif (selon
+     *  goal) : celle du Dealer s'il y en a un, sinon celle de randomDeal, à
+     *  partir de dealing.
+     * Retourne k : le tas de gauche est deck[0 .. k[, celui de droite
+     *  deck[k .. n[.
+     */
+    private int deal(boolean goal) {
+        int k = dealer != null
+                ? dealer.deal(seed, goal, dealt)
+                : randomDeal(dealing, dealt);
+        Contract.checkCondition(0 <= k && k <= deck.length);
+        for (int i = 0; i < deck.length; i++) {
+            deck[i] = base[dealt[i]];
+        }
+        return k;
     }
 
     /**
-     * Construit une séquence de deux séquences aléatoires d'éléments de E, à
-     *  partir de l'ensemble drawables, un peu comme on distribue des cartes :
-     *  - on commence par mélanger les cartes,
+     * Distribue aléatoirement les indices, un peu comme on distribue des
+     *  cartes :
+     *  - on commence par mélanger les cartes (mélange de Fisher-Yates sur
+     *  place de indices, à partir de l'ordre de référence),
      *  - puis on les distribue au hasard, une par une, en deux tas (de tailles
      *  pas forcément égales donc).
+     * Le paquet étant uniformément mélangé, distribuer chaque carte à pile ou
+     *  face revient à tirer la taille k du tas de gauche (loi binomiale, ici
+     *  le nombre de bits à 1 de mots aléatoires) et à lui donner les k
+     *  premières cartes.
+     * C'est la distribution des parties sans Dealer : un Dealer qui
+     *  l'applique deux fois (travail puis objectif) à new Random(seed)
+     *  redonne exactement les parties de StdPodiumManager.
+     * Retourne k : le tas de gauche est indices[0 .. k[, celui de droite
+     *  indices[k .. n[.
+     * @pre <pre>
+     *     rnd != null && indices != null </pre>
+     * @post <pre>
+     *     indices est une permutation de 0 .. n - 1
+     *     0 <= result <= n </pre>
      */
-    private List<List<E>> createRandomElements() {
-        final double ratio = 0.5;
-        final int n = elements.size();
-        List<E> elementStock = new LinkedList<E>(elements);
-        
-        /* On mélange les éléments de elementStock en les vidant dans
-         *  shuffledElements.
-         * C'est de complexité quadratique en temps mais on s'en fout ici.
-         * Rq : une meilleure version utiliserait un ListIterator pour
-         *      supprimer dans elementStock.
-         */
-        List<E> shuffledElements = new ArrayList<E>(n);
-        for (int i = n; i > 0; i--) {
-            int k = ((int) (Math.random() * i));
-            shuffledElements.add(elementStock.get(k));
-            elementStock.remove(k);
+    public static int randomDeal(Random rnd, int[] indices) {
+        Contract.checkCondition(rnd != null && indices != null);
+
+        final int wordSize = Integer.SIZE;
+        final int n = indices.length;
+        for (int i = 0; i < n; i++) {
+            indices[i] = i;
         }
-        
-        /* On distribue au hasard les éléments de shuffledElements entre
-         *  leftElements et rightElements (les éléments de gauche, et ceux
-         *  de droite).
-         */
-        List<E> leftElements = new ArrayList<E>(elements.size());
-        List<E> rightElements = new ArrayList<E>(elements.size());
-        for (E e : shuffledElements) {
-            if (Math.random() < ratio) {
-                leftElements.add(e);
-            } else {
-                rightElements.add(e);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int e = indices[i];
+            indices[i] = indices[j];
+            indices[j] = e;
+        }
+
+        int k = 0;
+        for (int i = 0; i < n; i += wordSize) {
+            int bits = rnd.nextInt();
+            int len = n - i;
+            if (len < wordSize) {
+                bits &= (1 << len) - 1;
             }
+            k += Integer.bitCount(bits);
+        }
+        return k;
+    }
+
+    /**
+     * Les éléments de elems dans un ordre de référence indépendant de
+     *  l'exécution : leur ordre naturel s'ils sont comparables (c'est le cas
+     *  des énumérations), sinon l'ordre d'itération de elems.
+     * Une même graine donne ainsi la même configuration d'une exécution à
+     *  l'autre.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> E[] referenceOrder(Set<E> elems) {
+        Object[] a = elems.toArray();
+        try {
+            Arrays.sort(a);
+        } catch (ClassCastException e) {
+            a = elems.toArray();
         }
-        
-        List<List<E>> result = new ArrayList<List<E>>(2);
-        result.add(leftElements);
-        result.add(rightElements);
-        return result;
+        return (E[]) a;
     }
 
 	@Override
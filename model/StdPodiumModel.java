@@ -1,6 +1,7 @@
 package crazy.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.swing.event.ChangeEvent;
@@ -11,26 +12,40 @@ import util.Contract;
 
 /**
  * Implémentation standard de PodiumModel.
+ * Les éléments sont rangés dans un tampon circulaire de taille capacity() :
+ *  l'élément de rang i se trouve dans la case (head + i) modulo capacity().
+ * Retirer la base et faire tourner le podium ne déplacent ainsi aucun
+ *  élément : rotate() sur un podium plein se réduit à avancer head.
  */
 public class StdPodiumModel<E> implements PodiumModel<E> {
 
     // ATTRIBUTS
 
-    private List<E> data;
+    private final E[] data;
+    private int head;
+    private int size;
     private int capacity;
     private final EventListenerList eventListeners;
     private final ChangeEvent event;
+    // notifications suspendues, et changement survenu pendant la suspension
+    private boolean suspended;
+    private boolean changed;
 
     // CONSTRUCTEURS
 
     public StdPodiumModel(List<E> init, int capacity) {
         Contract.checkCondition(init != null);
         Contract.checkCondition(!init.contains(null));
+        Contract.checkCondition(init.size() <= capacity);
 
         this.capacity = capacity;
 		this.eventListeners = new EventListenerList();
 		this.event = null;
-        data = new ArrayList<E>(init);
+        @SuppressWarnings("unchecked")
+        E[] buffer = (E[]) new Object[capacity];
+        data = init.toArray(buffer);
+        head = 0;
+        size = init.size();
     }
 
     public StdPodiumModel() {
@@ -43,14 +58,14 @@ public class StdPodiumModel<E> implements PodiumModel<E> {
     public E bottom() {
         Contract.checkCondition(size() > 0);
 
-        return data.get(0);
+        return data[head];
     }
 
     @Override
     public E elementAt(int i) {
         Contract.checkCondition(0 <= i && i < capacity());
 
-        return i < size() ? data.get(i) : null;
+        return i < size ? data[index(i)] : null;
     }
 
     @Override
@@ -62,35 +77,33 @@ public class StdPodiumModel<E> implements PodiumModel<E> {
     public boolean similar(PodiumModel<E> that) {
         Contract.checkCondition(that != null);
 
-        int dataSize = data.size();
         boolean result = (that.capacity() == capacity)
-                && (that.size() == dataSize);
-        for (int i = 0; result && (i < dataSize); i++) {
-            result = that.elementAt(i).equals(data.get(i));
+                && (that.size() == size);
+        for (int i = 0; result && (i < size); i++) {
+            result = that.elementAt(i).equals(data[index(i)]);
         }
         return result;
     }
 
     @Override
     public int size() {
-        return data.size();
+        return size;
     }
 
     @Override
     public E top() {
         Contract.checkCondition(size() > 0);
 
-        return data.get(data.size() - 1);
+        return data[index(size - 1)];
     }
 
     @Override
     public String toString() {
         String res = "";
-        int dataSize = data.size();
-        for (int i = 0; i < dataSize; i++) {
-            res += data.get(i) + "|";
+        for (int i = 0; i < size; i++) {
+            res += data[index(i)] + "|";
         }
-        for (int i = data.size(); i < capacity; i++) {
+        for (int i = size; i < capacity; i++) {
             res += " ";
             if (i < capacity - 1) {
                 res += "|";
@@ -106,7 +119,33 @@ public class StdPodiumModel<E> implements PodiumModel<E> {
         Contract.checkCondition(elem != null);
         Contract.checkCondition(size() < capacity());
 
-        data.add(elem);
+        data[index(size)] = elem;
+        size += 1;
+        fireStateChanged();
+    }
+
+    /**
+     * Remplace le contenu de ce modèle par src[from .. to[ (de la base vers
+     *  le sommet), avec une seule notification de changement d'état.
+     * @pre <pre>
+     *     src != null
+     *     0 <= from <= to <= src.length
+     *     to - from <= capacity()
+     *     forall i, from <= i < to : src[i] != null </pre>
+     * @post <pre>
+     *     size() == to - from
+     *     forall i, 0 <= i < size() : elementAt(i) == src[from + i] </pre>
+     */
+    public void fill(E[] src, int from, int to) {
+        Contract.checkCondition(src != null);
+        Contract.checkCondition(0 <= from && from <= to && to <= src.length);
+        Contract.checkCondition(to - from <= capacity());
+
+        int n = to - from;
+        System.arraycopy(src, from, data, 0, n);
+        Arrays.fill(data, n, capacity, null);
+        head = 0;
+        size = n;
         fireStateChanged();
     }
 
@@ -114,7 +153,9 @@ public class StdPodiumModel<E> implements PodiumModel<E> {
     public void removeBottom() {
         Contract.checkCondition(size() > 0);
 
-        data.remove(0);
+        data[head] = null;
+        head = index(1);
+        size -= 1;
         fireStateChanged();
     }
 
@@ -122,11 +163,49 @@ public class StdPodiumModel<E> implements PodiumModel<E> {
     public void removeTop() {
         Contract.checkCondition(size() > 0);
 
-        data.remove(size() - 1);
+        size -= 1;
+        data[index(size)] = null;
+        fireStateChanged();
+    }
+
+    @Override
+    public void rotate() {
+        Contract.checkCondition(size() > 0);
+
+        if (size < capacity) {
+            data[index(size)] = data[head];
+            data[head] = null;
+        }
+        head = index(1);
         fireStateChanged();
     }
     
+    /**
+     * Suspend les notifications de changement d'état jusqu'à l'appel de
+     *  resumeNotifications().
+     */
+    void suspendNotifications() {
+        suspended = true;
+        changed = false;
+    }
+
+    /**
+     * Rétablit les notifications de changement d'état, et en émet une seule
+     *  si l'état a changé pendant la suspension.
+     */
+    void resumeNotifications() {
+        suspended = false;
+        if (changed) {
+            changed = false;
+            fireStateChanged();
+        }
+    }
+
     protected void fireStateChanged() {
+        if (suspended) {
+            changed = true;
+            return;
+        }
     	Object[] listeners = eventListeners.getListenerList();
     	for (int i = listeners.length-2; i >= 0; i-=2) {
     		if (listeners[i] == ChangeListener.class) {
@@ -153,4 +232,16 @@ public class StdPodiumModel<E> implements PodiumModel<E> {
 		
 		eventListeners.remove(ChangeListener.class, cl);
 	}
+
+    // OUTILS
+
+    /**
+     * La case du tampon qui contient l'élément de rang i.
+     * @pre <pre>
+     *     0 <= i <= capacity() </pre>
+     */
+    private int index(int i) {
+        int j = head + i;
+        return j < capacity ? j : j - capacity;
+    }
 }
@@ -0,0 +1,129 @@
+package crazy.puzzle;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import crazy.model.Order;
+import crazy.solver.AStarSolver;
+import crazy.solver.PackedState;
+import crazy.solver.Solver;
+import crazy.solver.StateRanking;
+import crazy.solver.TranspositionTable;
+
+/**
+ * Point d'entrée de la construction d'un catalogue (voir PuzzleCatalogue).
+ * Arguments, dans l'ordre :
+ * <ul>
+ *   <li> le fichier du catalogue (remplacé s'il existe) ;</li>
+ *   <li> le nombre d'éléments ;</li>
+ *   <li> le nombre de parties par longueur (DEFAULT_PER_LENGTH par
+ *        défaut) ;</li>
+ *   <li> "so" ou "noso", selon que SO est autorisé ou non ("noso" par
+ *        défaut, comme dans le jeu).</li>
+ * </ul>
+ * Les configurations objectif sont tirées uniformément parmi toutes ; une
+ *  fois sur deux, la configuration de travail l'est aussi, et sinon elle est
+ *  obtenue par une marche aléatoire depuis l'objectif, ce qui fournit les
+ *  parties courtes, rares parmi les tirages uniformes. Chaque partie est
+ *  ensuite résolue ; elle n'est retenue que si sa longueur attend encore
+ *  des parties et si aucune partie retenue ne s'en déduit en renommant les
+ *  éléments. Le tirage cesse lorsque PuzzleGenerator.MAX_MISSES tirages
+ *  consécutifs n'ont rien retenu.
+ */
+public final class BuildCatalogue {
+
+    private static final int DEFAULT_PER_LENGTH = 1000;
+
+    private BuildCatalogue() {
+        // rien
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage : BuildCatalogue fichier n"
+                    + " [parties par longueur] [so|noso]");
+            System.exit(1);
+        }
+        int n = Integer.parseInt(args[1]);
+        int perLength = args.length > 2
+                ? Integer.parseInt(args[2]) : DEFAULT_PER_LENGTH;
+        boolean so = args.length > 3 && args[3].equals("so");
+
+        Solver solver = new AStarSolver(so);
+        Random rnd = new Random();
+        long count = StateRanking.count(n);
+        Set<Long> keys = new HashSet<Long>();
+        int[] counts = new int[TranspositionTable.MAX_DISTANCE + 1];
+        long[] works = new long[perLength];
+        long[] goals = new long[perLength];
+        int[] lengths = new int[perLength];
+        int size = 0;
+        int misses = 0;
+        while (misses < PuzzleGenerator.MAX_MISSES) {
+            long goal = StateRanking.unrank(nextRank(rnd, count), n);
+            long work = rnd.nextBoolean()
+                    ? StateRanking.unrank(nextRank(rnd, count), n)
+                    : walk(goal, n, so, rnd.nextInt(counts.length), rnd);
+            List<Order> path = solver.solve(work, goal, n);
+            int d = path == null ? -1 : path.size();
+            if (d < 0 || d >= counts.length || counts[d] == perLength
+                    || !keys.add(TranspositionTable.key(work, goal, n))) {
+                misses += 1;
+                continue;
+            }
+            misses = 0;
+            counts[d] += 1;
+            if (size == works.length) {
+                works = Arrays.copyOf(works, 2 * size);
+                goals = Arrays.copyOf(goals, 2 * size);
+                lengths = Arrays.copyOf(lengths, 2 * size);
+            }
+            works[size] = work;
+            goals[size] = goal;
+            lengths[size] = d;
+            size += 1;
+        }
+        PuzzleCatalogue.write(Paths.get(args[0]), n, so,
+                Arrays.copyOf(works, size),
+                Arrays.copyOf(goals, size),
+                Arrays.copyOf(lengths, size));
+        for (int d = 0; d < counts.length; d++) {
+            if (counts[d] > 0) {
+                System.out.println(d + " coups : " + counts[d] + " parties");
+            }
+        }
+    }
+
+    /**
+     * La configuration atteinte depuis s par length ordres tirés au hasard
+     *  (SO compris si so).
+     */
+    private static long walk(long s, int n, boolean so, int length,
+            Random rnd) {
+        Order[] orders = Order.values();
+        int m = so ? orders.length : orders.length - 1;
+        long t = s;
+        for (int i = 0; i < length; i++) {
+            t = PackedState.apply(t, orders[rnd.nextInt(m)], n);
+        }
+        return t;
+    }
+
+    /**
+     * Un rang tiré uniformément entre 0 et count - 1.
+     */
+    private static long nextRank(Random rnd, long count) {
+        long bits;
+        long r;
+        do {
+            bits = rnd.nextLong() >>> 1;
+            r = bits % count;
+        } while (bits - r + (count - 1) < 0);
+        return r;
+    }
+}
@@ -0,0 +1,364 @@
+package crazy.puzzle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.Set;
+
+import crazy.model.StdPodiumManager;
+import crazy.solver.PackedState;
+import crazy.solver.StateRanking;
+import util.Contract;
+
+/**
+ * Catalogue de parties sur n éléments, lu dans un fichier projeté en mémoire.
+ * Les éléments sont désignés par leur indice dans l'ordre de référence de
+ *  StdPodiumManager (voir StdPodiumManager.Dealer) ; chaque partie est
+ *  donnée par les rangs (voir StateRanking) de ses configurations de
+ *  travail et objectif, et par la longueur de ses solutions minimales (avec
+ *  ou sans SO, selon isSoAllowed()).
+ * Les parties sont numérotées à partir de 0, par longueur croissante : le
+ *  fichier se compose
+ * <ul>
+ *   <li> d'un en-tête de HEADER_SIZE octets : MAGIC, n, 1 si SO est
+ *        autorisé (0 sinon) et la plus grande longueur L ;</li>
+ *   <li> d'un index de L + 2 long : le numéro de la première partie de
+ *        chaque longueur de 0 à L, puis le nombre de parties ;</li>
+ *   <li> des parties, RECORD_SIZE octets chacune : le rang de la
+ *        configuration de travail (les LENGTH_SHIFT bits de poids faible,
+ *        la longueur au-dessus), puis celui de la configuration objectif.</li>
+ * </ul>
+ * L'accès à une partie, ou à une partie au hasard d'une longueur donnée, se
+ *  fait donc en temps constant, sans solveur : seules les pages lues sont
+ *  chargées par le système.
+ * Un gestionnaire construit par newManager(elements) interprète ses graines
+ *  comme des numéros de parties : reinit(k) charge la partie k, et une même
+ *  graine (voir daily) désigne la même partie sur tous les postes qui
+ *  partagent le fichier.
+ * Les lectures n'utilisent que des accès absolus au tampon : un catalogue
+ *  peut être partagé entre threads.
+ * @inv <pre>
+ *     2 <= getElementsNb() <= PackedState.MAX_ELEMENTS
+ *     size() == somme des count(d), 0 <= d <= getMaxLength() </pre>
+ */
+public final class PuzzleCatalogue {
+
+    // ATTRIBUTS
+
+    public static final int MAGIC = 0x43435043;
+    public static final int HEADER_SIZE = 4 * Integer.BYTES;
+    public static final int RECORD_SIZE = 2 * Long.BYTES;
+
+    /**
+     * La position de la longueur dans le premier long d'une partie.
+     */
+    public static final int LENGTH_SHIFT = 48;
+
+    private static final long RANK_MASK = (1L << LENGTH_SHIFT) - 1;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int HALF = 32;
+
+    private final MappedByteBuffer buf;
+    private final int n;
+    private final boolean soAllowed;
+    private final int maxLength;
+    // firsts[d] : le numéro de la première partie de longueur d
+    private final int[] firsts;
+    private final int recordsStart;
+
+    // CONSTRUCTEURS
+
+    private PuzzleCatalogue(MappedByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            throw new IOException("catalogue invalide");
+        }
+        n = buf.getInt(Integer.BYTES);
+        soAllowed = buf.getInt(2 * Integer.BYTES) != 0;
+        maxLength = buf.getInt(3 * Integer.BYTES);
+        if (n < 2 || n > PackedState.MAX_ELEMENTS || maxLength < 0
+                || buf.capacity() < HEADER_SIZE
+                        + (long) (maxLength + 2) * Long.BYTES) {
+            throw new IOException("catalogue invalide");
+        }
+        firsts = new int[maxLength + 2];
+        for (int d = 0; d < firsts.length; d++) {
+            long f = buf.getLong(HEADER_SIZE + d * Long.BYTES);
+            if (f < (d == 0 ? 0 : firsts[d - 1]) || f > Integer.MAX_VALUE) {
+                throw new IOException("catalogue invalide");
+            }
+            firsts[d] = (int) f;
+        }
+        recordsStart = HEADER_SIZE + firsts.length * Long.BYTES;
+        if (buf.capacity() != recordsStart + (long) size() * RECORD_SIZE) {
+            throw new IOException("catalogue tronqué");
+        }
+    }
+
+    /**
+     * Le catalogue contenu dans file, projeté en mémoire en lecture seule.
+     * @pre <pre>
+     *     file != null </pre>
+     * @throws IOException si file ne peut être lu, ou n'est pas un catalogue
+     */
+    public static PuzzleCatalogue open(Path file) throws IOException {
+        Contract.checkCondition(file != null);
+
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException("catalogue trop gros");
+            }
+            return new PuzzleCatalogue(ch.map(MapMode.READ_ONLY, 0, ch.size()));
+        } finally {
+            // la projection survit à la fermeture du canal
+            ch.close();
+        }
+    }
+
+    // REQUETES
+
+    /**
+     * Le nombre d'éléments des parties.
+     */
+    public int getElementsNb() {
+        return n;
+    }
+
+    /**
+     * Indique si les longueurs sont celles des solutions avec SO.
+     */
+    public boolean isSoAllowed() {
+        return soAllowed;
+    }
+
+    /**
+     * La plus grande longueur de solution prévue par l'index.
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Le nombre de parties.
+     */
+    public int size() {
+        return firsts[maxLength + 1];
+    }
+
+    /**
+     * Le nombre de parties dont les solutions minimales ont length ordres.
+     * @pre <pre>
+     *     length >= 0 </pre>
+     */
+    public int count(int length) {
+        Contract.checkCondition(length >= 0);
+
+        return length > maxLength ? 0 : firsts[length + 1] - firsts[length];
+    }
+
+    /**
+     * Le numéro de la première partie de longueur length.
+     * @pre <pre>
+     *     count(length) > 0 </pre>
+     */
+    public int first(int length) {
+        Contract.checkCondition(count(length) > 0);
+
+        return firsts[length];
+    }
+
+    /**
+     * La configuration de travail de la partie k.
+     * @pre <pre>
+     *     0 <= k < size() </pre>
+     */
+    public long getWork(int k) {
+        Contract.checkCondition(0 <= k && k < size());
+
+        return StateRanking.unrank(buf.getLong(record(k)) & RANK_MASK, n);
+    }
+
+    /**
+     * La configuration objectif de la partie k.
+     * @pre <pre>
+     *     0 <= k < size() </pre>
+     */
+    public long getGoal(int k) {
+        Contract.checkCondition(0 <= k && k < size());
+
+        return StateRanking.unrank(buf.getLong(record(k) + Long.BYTES), n);
+    }
+
+    /**
+     * La longueur des solutions minimales de la partie k.
+     * @pre <pre>
+     *     0 <= k < size() </pre>
+     */
+    public int getLength(int k) {
+        Contract.checkCondition(0 <= k && k < size());
+
+        return (int) (buf.getLong(record(k)) >>> LENGTH_SHIFT);
+    }
+
+    /**
+     * Le numéro d'une partie de longueur length tirée au hasard par rnd.
+     * @pre <pre>
+     *     rnd != null
+     *     count(length) > 0 </pre>
+     */
+    public int random(int length, Random rnd) {
+        Contract.checkCondition(rnd != null);
+        Contract.checkCondition(count(length) > 0);
+
+        return firsts[length] + rnd.nextInt(count(length));
+    }
+
+    /**
+     * Le numéro de la partie du jour date de longueur length : le même sur
+     *  tous les postes qui partagent ce catalogue.
+     * @pre <pre>
+     *     date != null
+     *     count(length) > 0 </pre>
+     */
+    public int daily(LocalDate date, int length) {
+        Contract.checkCondition(date != null);
+        Contract.checkCondition(count(length) > 0);
+
+        long h = (date.toEpochDay() + length) * GOLDEN;
+        h ^= h >>> HALF;
+        return firsts[length] + (int) Math.floorMod(h, (long) count(length));
+    }
+
+    /**
+     * La distribution qui donne, pour la graine s, la partie numéro s modulo
+     *  size().
+     * @pre <pre>
+     *     size() > 0 </pre>
+     */
+    public StdPodiumManager.Dealer dealer() {
+        Contract.checkCondition(size() > 0);
+
+        return new StdPodiumManager.Dealer() {
+            @Override
+            public int deal(long seed, boolean goal, int[] indices) {
+                int k = (int) Math.floorMod(seed, (long) size());
+                return toIndices(goal ? getGoal(k) : getWork(k), indices);
+            }
+        };
+    }
+
+    /**
+     * Un gestionnaire dont les parties sont celles de ce catalogue : la
+     *  graine d'une partie est son numéro, et reinit() tire une partie au
+     *  hasard parmi toutes.
+     * @pre <pre>
+     *     elements != null && elements.size() == getElementsNb()
+     *     size() > 0 </pre>
+     */
+    public <E> StdPodiumManager<E> newManager(Set<E> elements) {
+        Contract.checkCondition(elements != null
+                && elements.size() == n);
+
+        return new StdPodiumManager<E>(elements, new Random(), dealer());
+    }
+
+    // COMMANDES
+
+    /**
+     * Écrit dans file (remplacé s'il existe) le catalogue des parties sur n
+     *  éléments dont les configurations de travail et objectif sont
+     *  works[i] et goals[i], et les solutions minimales de longueur
+     *  lengths[i].
+     * Les parties sont rangées par longueur croissante, dans l'ordre des
+     *  tableaux pour une même longueur.
+     * @pre <pre>
+     *     2 <= n <= PackedState.MAX_ELEMENTS
+     *     works != null && goals != null && lengths != null
+     *     works.length == goals.length && goals.length == lengths.length
+     *     forall i : works[i] et goals[i] sont des configurations sur les
+     *       mêmes n indices, et 0 <= lengths[i] < 2^(64 - LENGTH_SHIFT) </pre>
+     * @throws IOException si file ne peut être écrit
+     */
+    public static void write(Path file, int n, boolean soAllowed,
+            long[] works, long[] goals, int[] lengths) throws IOException {
+        Contract.checkCondition(file != null);
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+        Contract.checkCondition(works != null && goals != null
+                && lengths != null);
+        Contract.checkCondition(works.length == goals.length
+                && goals.length == lengths.length);
+
+        int max = 0;
+        for (int d : lengths) {
+            Contract.checkCondition(0 <= d && d < 1 << (Long.SIZE
+                    - LENGTH_SHIFT));
+            max = Math.max(max, d);
+        }
+        // tri par dénombrement des parties selon leur longueur
+        long[] firsts = new long[max + 2];
+        for (int d : lengths) {
+            firsts[d + 1] += 1;
+        }
+        for (int d = 1; d < firsts.length; d++) {
+            firsts[d] += firsts[d - 1];
+        }
+        long[] next = firsts.clone();
+        int[] order = new int[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            order[(int) next[lengths[i]]++] = i;
+        }
+
+        ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE
+                + firsts.length * Long.BYTES + order.length * RECORD_SIZE);
+        b.putInt(MAGIC).putInt(n).putInt(soAllowed ? 1 : 0).putInt(max);
+        for (long f : firsts) {
+            b.putLong(f);
+        }
+        for (int i : order) {
+            b.putLong(StateRanking.rank(works[i], n)
+                    | (long) lengths[i] << LENGTH_SHIFT);
+            b.putLong(StateRanking.rank(goals[i], n));
+        }
+        b.flip();
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        try {
+            while (b.hasRemaining()) {
+                ch.write(b);
+            }
+            ch.force(true);
+        } finally {
+            ch.close();
+        }
+    }
+
+    // OUTILS
+
+    private int record(int k) {
+        return recordsStart + k * RECORD_SIZE;
+    }
+
+    /**
+     * Range dans indices les indices de s (podium gauche puis podium droit,
+     *  chacun de la base vers le sommet) et retourne la taille du podium
+     *  gauche.
+     */
+    private int toIndices(long s, int[] indices) {
+        int k = PackedState.split(s);
+        for (int i = 0; i < k; i++) {
+            indices[i] = PackedState.nibble(s, i);
+        }
+        for (int i = k; i < n; i++) {
+            indices[i] = PackedState.nibble(s, n - 1 - i + k);
+        }
+        return k;
+    }
+}
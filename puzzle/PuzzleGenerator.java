@@ -0,0 +1,517 @@
+package crazy.puzzle;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import crazy.explore.ParallelBfs;
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+import crazy.model.StdPodiumManager;
+import crazy.model.StdPodiumManager.Dealer;
+import crazy.solver.AStarSolver;
+import crazy.solver.PackedState;
+import crazy.solver.Solver;
+import util.Contract;
+
+/**
+ * Générateur de parties de difficulté donnée : la longueur de leurs
+ *  solutions minimales, avec une contrainte sur l'ordre SO (voir SoRule).
+ * Une partie est entièrement déterminée par sa graine, distribuée par
+ *  dealer() : le générateur tire des graines au hasard, résout les parties
+ *  correspondantes sur un gestionnaire qui lui est propre et range chaque
+ *  graine dans les réserves (une par difficulté) auxquelles elle convient.
+ * Les graines ordinaires redonnent exactement les parties de
+ *  StdPodiumManager ; les graines marquées (voir isWalk) donnent un
+ *  objectif tiré au hasard et une configuration de travail obtenue par une
+ *  marche aléatoire depuis cet objectif, ce qui fournit les parties courtes,
+ *  rares parmi les tirages uniformes. Le générateur tire autant des unes
+ *  que des autres.
+ * Les réserves sont remplies en tâche de fond par un thread de faible
+ *  priorité, qui s'endort lorsqu'il n'a plus rien à faire : reinit(m,
+ *  length, rule) n'a alors qu'à prélever une graine et à la transmettre à
+ *  m. Aucune recherche n'est jamais faite dans le thread appelant : une
+ *  réserve vide lève NoSuchElementException, et sera remplie en tâche de
+ *  fond. Une réserve n'est créée qu'à la première demande d'une difficulté
+ *  (voir prefill) ; après MAX_MISSES graines consécutives qui ne lui
+ *  conviennent pas, elle n'est plus remplie jusqu'à la demande suivante.
+ * getMaxLength(rule) est la plus grande difficulté rencontrée : dès la
+ *  création pour ANY et FORBIDDEN lorsqu'il y a au plus EXACT_MAX_ELEMENTS
+ *  éléments (par un parcours de toutes les configurations, voir
+ *  ParallelBfs), au fil des tirages sinon. Chacune de ses augmentations est
+ *  notifiée aux PCL de la propriété maxLength, depuis le thread de
+ *  remplissage.
+ * @inv <pre>
+ *     getPoolSize() >= 1
+ *     forall rule : getMaxLength(rule) >= -1 </pre>
+ */
+public class PuzzleGenerator<E> {
+
+    /**
+     * Les contraintes sur l'ordre SO :
+     * <ul>
+     *   <li> ANY : SO est autorisé, la difficulté est la longueur des
+     *        solutions minimales ;</li>
+     *   <li> REQUIRED : de plus, toute solution sans SO est plus longue ;</li>
+     *   <li> FORBIDDEN : SO est interdit, la difficulté est la longueur des
+     *        solutions minimales sans SO.</li>
+     * </ul>
+     */
+    public enum SoRule { ANY, REQUIRED, FORBIDDEN }
+
+    // ATTRIBUTS
+
+    public static final String PROP_MAX_LENGTH = "maxLength";
+
+    public static final int DEFAULT_POOL_SIZE = 16;
+
+    /**
+     * Le nombre de graines consécutives qui ne conviennent pas à une réserve
+     *  au-delà duquel elle n'est plus remplie, jusqu'à la demande suivante.
+     * C'est aussi le nombre de graines consécutives qui n'augmentent aucune
+     *  difficulté maximale au-delà duquel le générateur cesse de les
+     *  chercher.
+     */
+    public static final int MAX_MISSES = 1 << 14;
+
+    /**
+     * Le plus grand nombre d'éléments pour lequel les difficultés maximales
+     *  de ANY et FORBIDDEN sont calculées exactement.
+     */
+    public static final int EXACT_MAX_ELEMENTS = 8;
+
+    private static final SoRule[] RULES = SoRule.values();
+
+    // les graines marquées ont WALK_TAG dans leurs bits de poids fort (à
+    //  partir de TAG_SHIFT) ; leurs bits de poids faible donnent le nombre
+    //  de pas de la marche (STEPS_MASK) et l'usage de SO (WALK_SO)
+    private static final long WALK_TAG = 0xC1C5L;
+    private static final int TAG_SHIFT = 48;
+    private static final long STEPS_MASK = 0x3FL;
+    private static final long WALK_SO = 0x40L;
+
+    private static final Order[] ORDERS = Order.values();
+
+    private final Set<E> elements;
+    private final int poolSize;
+    private final Solver soSolver;
+    private final Solver noSoSolver;
+    private final Dealer dealer;
+    private final PropertyChangeSupport pcs;
+    // les réserves, indexées par key(length, rule)
+    private final ConcurrentMap<Integer, Pool> pools;
+    // les difficultés maximales, indexées par l'ordinal de leur règle
+    private final AtomicIntegerArray maxLengths;
+    // le nombre de graines tirées depuis la dernière augmentation d'une
+    //  difficulté maximale (utilisé par le seul thread de remplissage)
+    private int discoveryMisses;
+    private final Thread filler;
+    private volatile boolean stopped;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un générateur de parties sur elements dont chaque réserve contient au
+     *  plus poolSize graines.
+     * @pre <pre>
+     *     elements != null
+     *     2 <= elements.size() <= PackedState.MAX_ELEMENTS
+     *     poolSize >= 1 </pre>
+     */
+    public PuzzleGenerator(Set<E> elements, int poolSize) {
+        Contract.checkCondition(elements != null && elements.size() >= 2
+                && elements.size() <= PackedState.MAX_ELEMENTS);
+        Contract.checkCondition(poolSize >= 1);
+
+        this.elements = elements;
+        this.poolSize = poolSize;
+        soSolver = new AStarSolver(true);
+        noSoSolver = new AStarSolver(false);
+        dealer = new WalkDealer(elements.size());
+        pcs = new PropertyChangeSupport(this);
+        pools = new ConcurrentHashMap<Integer, Pool>();
+        maxLengths = new AtomicIntegerArray(RULES.length);
+        for (int i = 0; i < RULES.length; i++) {
+            maxLengths.set(i, -1);
+        }
+        filler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fill();
+            }
+        }, "réserves");
+        filler.setDaemon(true);
+        filler.setPriority(Thread.MIN_PRIORITY);
+        filler.start();
+    }
+
+    public PuzzleGenerator(Set<E> elements) {
+        this(elements, DEFAULT_POOL_SIZE);
+    }
+
+    // REQUETES
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * La distribution des parties de ce générateur : les gestionnaires
+     *  auxquels ses graines sont transmises doivent l'utiliser.
+     * Elle redonne les parties de StdPodiumManager pour toute graine qui
+     *  n'est pas marquée.
+     */
+    public Dealer dealer() {
+        return dealer;
+    }
+
+    /**
+     * La plus grande difficulté de règle rule rencontrée jusqu'ici (-1 si
+     *  aucune).
+     * @pre <pre>
+     *     rule != null </pre>
+     */
+    public int getMaxLength(SoRule rule) {
+        Contract.checkCondition(rule != null);
+
+        return maxLengths.get(rule.ordinal());
+    }
+
+    /**
+     * Indique si seed est une graine marquée : sa partie est obtenue par une
+     *  marche aléatoire depuis l'objectif.
+     * Une graine tirée uniformément l'est avec une probabilité de 2^-16.
+     */
+    public static boolean isWalk(long seed) {
+        return seed >>> TAG_SHIFT == WALK_TAG;
+    }
+
+    /**
+     * Le nombre de graines en réserve pour la difficulté (length, rule).
+     * @pre <pre>
+     *     length >= 0 && rule != null </pre>
+     */
+    public int available(int length, SoRule rule) {
+        Contract.checkCondition(length >= 0 && rule != null);
+
+        Pool p = pools.get(key(length, rule));
+        return p == null ? 0 : p.seeds.size();
+    }
+
+    // COMMANDES
+
+    /**
+     * Ajoute un PCL pour la propriété maxLength, notifiée depuis le thread
+     *  de remplissage à chaque augmentation d'une difficulté maximale : le
+     *  nom de la règle est dans getPropagationId() de l'événement.
+     * @pre <pre>
+     *     lnr != null </pre>
+     */
+    public void addPropertyChangeListener(PropertyChangeListener lnr) {
+        Contract.checkCondition(lnr != null);
+
+        pcs.addPropertyChangeListener(PROP_MAX_LENGTH, lnr);
+    }
+
+    /**
+     * Retire un PCL pour la propriété maxLength.
+     * @pre <pre>
+     *     lnr != null </pre>
+     */
+    public void removePropertyChangeListener(PropertyChangeListener lnr) {
+        Contract.checkCondition(lnr != null);
+
+        pcs.removePropertyChangeListener(PROP_MAX_LENGTH, lnr);
+    }
+
+    /**
+     * Demande que la réserve de la difficulté (length, rule) soit remplie en
+     *  tâche de fond.
+     * @pre <pre>
+     *     length >= 0 && rule != null </pre>
+     */
+    public void prefill(int length, SoRule rule) {
+        Contract.checkCondition(length >= 0 && rule != null);
+
+        request(pool(length, rule));
+    }
+
+    /**
+     * Une graine dont la partie est de difficulté (length, rule), prélevée
+     *  dans sa réserve sans jamais attendre.
+     * @pre <pre>
+     *     length >= 0 && rule != null </pre>
+     * @throws NoSuchElementException si la réserve est vide : elle est alors
+     *  remplie en tâche de fond
+     */
+    public long nextSeed(int length, SoRule rule) {
+        Contract.checkCondition(length >= 0 && rule != null);
+
+        Pool p = pool(length, rule);
+        Long s = p.seeds.poll();
+        request(p);
+        if (s == null) {
+            throw new NoSuchElementException("réserve vide");
+        }
+        return s;
+    }
+
+    /**
+     * Réinitialise m avec une partie de difficulté (length, rule).
+     * @pre <pre>
+     *     m != null
+     *     m est un StdPodiumManager sur les éléments de ce générateur, qui
+     *     utilise dealer()
+     *     length >= 0 && rule != null </pre>
+     * @throws NoSuchElementException si la réserve est vide : elle est alors
+     *  remplie en tâche de fond
+     */
+    public void reinit(PodiumManager<E> m, int length, SoRule rule) {
+        Contract.checkCondition(m != null);
+
+        m.reinit(nextSeed(length, rule));
+    }
+
+    /**
+     * Arrête le remplissage des réserves.
+     */
+    public void shutdown() {
+        stopped = true;
+        filler.interrupt();
+    }
+
+    // OUTILS
+
+    private static int key(int length, SoRule rule) {
+        return length * RULES.length + rule.ordinal();
+    }
+
+    /**
+     * La réserve de la difficulté (length, rule), créée au besoin.
+     */
+    private Pool pool(int length, SoRule rule) {
+        int k = key(length, rule);
+        Pool p = pools.get(k);
+        if (p == null) {
+            Pool q = new Pool(poolSize);
+            p = pools.putIfAbsent(k, q);
+            if (p == null) {
+                p = q;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Relance le remplissage de p.
+     */
+    private void request(Pool p) {
+        p.misses = 0;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Les longueurs des solutions minimales de la partie de probe, avec et
+     *  sans SO (-1 si l'objectif est inaccessible).
+     */
+    private int[] distances(StdPodiumManager<E> probe) {
+        List<Order> so = soSolver.solve(probe.getModels());
+        List<Order> noSo = noSoSolver.solve(probe.getModels());
+        return new int[] {
+            so == null ? -1 : so.size(),
+            noSo == null ? -1 : noSo.size()
+        };
+    }
+
+    /**
+     * Le travail du thread de remplissage : calculer les difficultés
+     *  maximales exactes s'il y a lieu, puis tirer des graines tant qu'une
+     *  réserve demandée n'est pas pleine ou que les difficultés maximales
+     *  augmentent encore.
+     */
+    private void fill() {
+        if (elements.size() <= EXACT_MAX_ELEMENTS) {
+            explore();
+        }
+        StdPodiumManager<E> probe =
+                new StdPodiumManager<E>(elements, new Random(), dealer);
+        Random rnd = new Random();
+        while (!stopped) {
+            synchronized (this) {
+                while (!stopped && !hasWork()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            long seed = rnd.nextBoolean()
+                    ? rnd.nextLong() >>> 1
+                    : (WALK_TAG << TAG_SHIFT)
+                            | (rnd.nextLong() & ((1L << TAG_SHIFT) - 1));
+            probe.reinit(seed);
+            int[] d;
+            try {
+                d = distances(probe);
+            } catch (CancellationException e) {
+                return;
+            }
+            discoveryMisses += 1;
+            for (SoRule r : RULES) {
+                int length = r == SoRule.FORBIDDEN ? d[1] : d[0];
+                boolean ok = length >= 0
+                        && (r != SoRule.REQUIRED || d[1] != d[0]);
+                if (!ok) {
+                    continue;
+                }
+                if (raiseMaxLength(r, length)) {
+                    discoveryMisses = 0;
+                }
+                Pool hit = pools.get(key(length, r));
+                if (hit != null) {
+                    hit.seeds.offer(seed);
+                }
+            }
+            for (Pool p : pools.values()) {
+                if (p.seeds.isEmpty()) {
+                    p.misses += 1;
+                } else {
+                    p.misses = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Les difficultés maximales exactes de ANY et FORBIDDEN : la plus grande
+     *  distance à un objectif, pour chaque taille de son podium gauche (une
+     *  partie se ramène, en renommant ses éléments, à une partie dont
+     *  l'objectif est PackedState.identity(n, k)).
+     */
+    private void explore() {
+        int n = elements.size();
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            for (SoRule r : new SoRule[] { SoRule.ANY, SoRule.FORBIDDEN }) {
+                int max = 0;
+                for (int k = 0; k <= n / 2 && !stopped; k++) {
+                    max = Math.max(max, new ParallelBfs(n, k,
+                            r == SoRule.ANY, pool).run().getMaxDistance());
+                }
+                raiseMaxLength(r, max);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Porte la difficulté maximale de r à length si elle est inférieure.
+     * Retourne true si elle a augmenté.
+     */
+    private boolean raiseMaxLength(SoRule r, int length) {
+        int old = maxLengths.get(r.ordinal());
+        if (length <= old) {
+            return false;
+        }
+        maxLengths.set(r.ordinal(), length);
+        PropertyChangeEvent e =
+                new PropertyChangeEvent(this, PROP_MAX_LENGTH, old, length);
+        e.setPropagationId(r.name());
+        pcs.firePropertyChange(e);
+        return true;
+    }
+
+    private boolean hasWork() {
+        if (discoveryMisses < MAX_MISSES) {
+            return true;
+        }
+        for (Pool p : pools.values()) {
+            if (p.misses < MAX_MISSES && p.seeds.remainingCapacity() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * La réserve d'une difficulté.
+     */
+    private static final class Pool {
+        private final BlockingQueue<Long> seeds;
+        // le nombre de graines tirées depuis que la réserve est vide, remis
+        //  à 0 à chaque demande
+        private volatile int misses;
+
+        Pool(int size) {
+            seeds = new ArrayBlockingQueue<Long>(size);
+        }
+    }
+
+    /**
+     * La distribution des parties du générateur (voir dealer()).
+     * Une graine ordinaire est distribuée comme par StdPodiumManager : deux
+     *  fois StdPodiumManager.randomDeal sur new Random(seed), pour la
+     *  configuration de travail puis pour l'objectif. Une graine marquée
+     *  donne un objectif par randomDeal, puis la configuration de travail
+     *  atteinte depuis l'objectif par seed & STEPS_MASK ordres tirés au
+     *  hasard (SO compris si seed & WALK_SO).
+     * Sans état : elle peut être partagée entre threads.
+     */
+    private static final class WalkDealer implements Dealer {
+        // la taille des quartets de PackedState
+        private static final int NIBBLE_BITS = 4;
+
+        private final int n;
+
+        WalkDealer(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public int deal(long seed, boolean goal, int[] indices) {
+            Random rnd = new Random(seed);
+            int k = StdPodiumManager.randomDeal(rnd, indices);
+            if (!isWalk(seed)) {
+                return goal ? StdPodiumManager.randomDeal(rnd, indices) : k;
+            }
+            if (goal) {
+                return k;
+            }
+            long s = 0;
+            for (int i = 0; i < k; i++) {
+                s |= (long) indices[i] << (NIBBLE_BITS * i);
+            }
+            for (int i = k; i < n; i++) {
+                s |= (long) indices[i] << (NIBBLE_BITS * (n - 1 - i + k));
+            }
+            s = PackedState.withSplit(s, k);
+            int m = (seed & WALK_SO) != 0 ? ORDERS.length : ORDERS.length - 1;
+            for (long i = seed & STEPS_MASK; i > 0; i--) {
+                s = PackedState.apply(s, ORDERS[rnd.nextInt(m)], n);
+            }
+            k = PackedState.split(s);
+            for (int i = 0; i < k; i++) {
+                indices[i] = PackedState.nibble(s, i);
+            }
+            for (int i = k; i < n; i++) {
+                indices[i] = PackedState.nibble(s, n - 1 - i + k);
+            }
+            return k;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package crazy.record;
+
+import java.nio.ByteBuffer;
+
+import crazy.model.Order;
+
+/**
+ * Le format binaire des fichiers de parties enregistrées.
+ * Un fichier commence par MAGIC puis VERSION, et se poursuit par une suite de
+ *  parties ajoutées les unes après les autres. Chaque partie est précédée de
+ *  la longueur de son corps (varint), ce qui permet de lire un fichier partie
+ *  par partie et de s'arrêter proprement sur une dernière partie incomplète.
+ * Le corps d'une partie contient, dans l'ordre :
+ * <ul>
+ *   <li> un octet d'indicateurs (FINISHED, TIMED, TRUNCATED) ;</li>
+ *   <li> la graine de la partie (8 octets) ;</li>
+ *   <li> l'heure de début en millisecondes depuis l'époque (varint) ;</li>
+ *   <li> le nombre n d'éléments (varint) ;</li>
+ *   <li> la configuration de travail puis la configuration objectif : pour
+ *        chacune, la taille du podium gauche puis les indices des n éléments
+ *        (varints), podium gauche puis podium droit, de la base vers le
+ *        sommet ;</li>
+ *   <li> le nombre d'ordres (varint) ;</li>
+ *   <li> les ordres, trois par octet (en base 5, le premier ordre ayant le
+ *        poids le plus faible) ;</li>
+ *   <li> si la partie est chronométrée, pour chaque ordre le nombre de
+ *        nanosecondes écoulées depuis l'ordre précédent (ou le début de la
+ *        partie), en varint.</li>
+ * </ul>
+ * Sans chronométrage, un ordre occupe donc un tiers d'octet ; avec, il faut
+ *  y ajouter quatre ou cinq octets pour des délais humains.
+ * Les varints sont des entiers positifs codés par groupes de 7 bits, du
+ *  groupe de poids faible au groupe de poids fort, le bit de poids fort de
+ *  chaque octet indiquant qu'un autre groupe suit.
+ */
+final class GameFormat {
+
+    // ATTRIBUTS
+
+    static final byte[] MAGIC = {'C', 'C', 'R', 'G'};
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 1;
+
+    static final int FINISHED = 1;
+    static final int TIMED = 1 << 1;
+    static final int TRUNCATED = 1 << 2;
+
+    static final int ORDERS_PER_BYTE = 3;
+
+    private static final Order[] ORDERS = Order.values();
+    private static final int RADIX = ORDERS.length;
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MASK = (1 << VARINT_BITS) - 1;
+    private static final int VARINT_MORE = 1 << VARINT_BITS;
+
+    // CONSTRUCTEURS
+
+    private GameFormat() {
+        // rien
+    }
+
+    // OUTILS
+
+    /**
+     * Le nombre d'octets occupés par count ordres.
+     */
+    static int packedSize(int count) {
+        return (count + ORDERS_PER_BYTE - 1) / ORDERS_PER_BYTE;
+    }
+
+    /**
+     * Écrit dans buf les count premiers ordres de orders (des ordinaux).
+     */
+    static void putOrders(ByteBuffer buf, byte[] orders, int count) {
+        for (int i = 0; i < count; i += ORDERS_PER_BYTE) {
+            int v = 0;
+            for (int j = Math.min(count, i + ORDERS_PER_BYTE) - 1; j >= i; j--) {
+                v = v * RADIX + orders[j];
+            }
+            buf.put((byte) v);
+        }
+    }
+
+    /**
+     * Lit dans buf count ordres.
+     */
+    static Order[] getOrders(ByteBuffer buf, int count) {
+        Order[] result = new Order[count];
+        for (int i = 0; i < count; i += ORDERS_PER_BYTE) {
+            int v = buf.get() & 0xFF;
+            for (int j = i; j < Math.min(count, i + ORDERS_PER_BYTE); j++) {
+                result[j] = ORDERS[v % RADIX];
+                v /= RADIX;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Écrit v (positif ou nul) dans buf sous forme de varint.
+     */
+    static void putVarint(ByteBuffer buf, long v) {
+        long w = v;
+        while ((w & ~VARINT_MASK) != 0) {
+            buf.put((byte) ((w & VARINT_MASK) | VARINT_MORE));
+            w >>>= VARINT_BITS;
+        }
+        buf.put((byte) w);
+    }
+
+    /**
+     * Lit un varint dans buf.
+     */
+    static long getVarint(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            v |= (long) (b & VARINT_MASK) << shift;
+            shift += VARINT_BITS;
+        } while ((b & VARINT_MORE) != 0);
+        return v;
+    }
+
+    /**
+     * Lit un varint au début de buf sans le consommer.
+     * Retourne -1 si buf ne contient pas un varint complet.
+     */
+    static long peekVarint(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        for (int i = buf.position(); i < buf.limit(); i++) {
+            byte b = buf.get(i);
+            v |= (long) (b & VARINT_MASK) << shift;
+            shift += VARINT_BITS;
+            if ((b & VARINT_MORE) == 0) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Le nombre d'octets du varint qui code v.
+     */
+    static int varintSize(long v) {
+        int size = 1;
+        long w = v >>> VARINT_BITS;
+        while (w != 0) {
+            size += 1;
+            w >>>= VARINT_BITS;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,233 @@
+package crazy.record;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import crazy.model.Order;
+import util.Contract;
+
+/**
+ * Lecture, partie après partie, d'un fichier écrit par GameRecorder.
+ * Le fichier est lu par blocs de BLOCK_SIZE octets (ou de la taille de la
+ *  plus longue partie) : seule la partie courante est décodée en mémoire.
+ * Une dernière partie incomplète est ignorée.
+ * Les erreurs de lecture survenant pendant l'itération sont signalées par
+ *  une IllegalStateException.
+ */
+public class GameReader implements Iterator<RecordedGame>, Closeable {
+
+    // ATTRIBUTS
+
+    /**
+     * La taille initiale du tampon de lecture.
+     */
+    public static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int MAX_VARINT_SIZE = 10;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private boolean eof;
+    // la longueur du corps de la prochaine partie, -1 si elle est inconnue
+    private int next;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un lecteur des parties de file.
+     * @pre <pre>
+     *     file != null </pre>
+     * @throws IOException si file ne peut être ouvert, ou n'est pas un
+     *  fichier de parties
+     */
+    public GameReader(Path file) throws IOException {
+        Contract.checkCondition(file != null);
+
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            checkHeader(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channel.position(GameFormat.HEADER_SIZE);
+        buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        buffer.flip();
+        next = -1;
+    }
+
+    // REQUETES
+
+    @Override
+    public boolean hasNext() {
+        if (next < 0) {
+            try {
+                next = prepare();
+            } catch (IOException e) {
+                throw new IllegalStateException("lecture impossible", e);
+            }
+        }
+        return next >= 0;
+    }
+
+    // COMMANDES
+
+    @Override
+    public RecordedGame next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int end = buffer.position() + next;
+        next = -1;
+        RecordedGame g = decode(buffer);
+        if (buffer.position() != end) {
+            throw new IllegalStateException("partie mal formée");
+        }
+        return g;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // OUTILS
+
+    /**
+     * Vérifie l'en-tête de ch, sans changer sa position.
+     */
+    static void checkHeader(FileChannel ch) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(GameFormat.HEADER_SIZE);
+        while (h.hasRemaining()) {
+            if (ch.read(h, h.position()) < 0) {
+                throw new EOFException("en-tête incomplet");
+            }
+        }
+        byte[] magic = new byte[GameFormat.MAGIC.length];
+        h.flip();
+        h.get(magic);
+        if (!Arrays.equals(magic, GameFormat.MAGIC)) {
+            throw new IOException("ce n'est pas un fichier de parties");
+        }
+        if (h.get() != GameFormat.VERSION) {
+            throw new IOException("version non reconnue");
+        }
+    }
+
+    /**
+     * La longueur de la partie de ch formée des parties complètes, en sautant
+     *  de longueur en longueur sans lire les corps.
+     */
+    static long validLength(FileChannel ch) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(MAX_VARINT_SIZE);
+        long size = ch.size();
+        long p = GameFormat.HEADER_SIZE;
+        while (p < size) {
+            b.clear();
+            ch.read(b, p);
+            b.flip();
+            long len = GameFormat.peekVarint(b);
+            if (len < 0) {
+                break;
+            }
+            long end = p + GameFormat.varintSize(len) + len;
+            if (end > size) {
+                break;
+            }
+            p = end;
+        }
+        return Math.min(p, size);
+    }
+
+    /**
+     * Place au début du tampon le corps complet de la prochaine partie.
+     * Retourne sa longueur, ou -1 s'il n'y a plus de partie complète.
+     */
+    private int prepare() throws IOException {
+        long len = GameFormat.peekVarint(buffer);
+        while (len < 0 && fill(MAX_VARINT_SIZE)) {
+            len = GameFormat.peekVarint(buffer);
+        }
+        if (len < 0) {
+            return -1;
+        }
+        int prefix = GameFormat.varintSize(len);
+        if (len > Integer.MAX_VALUE - prefix) {
+            throw new IOException("partie trop longue");
+        }
+        int total = prefix + (int) len;
+        while (buffer.remaining() < total && fill(total)) {
+            // on remplit
+        }
+        if (buffer.remaining() < total) {
+            return -1;
+        }
+        buffer.position(buffer.position() + prefix);
+        return (int) len;
+    }
+
+    /**
+     * Lit la suite du fichier dans le tampon, agrandi au besoin pour contenir
+     *  au moins needed octets.
+     * Retourne false si la fin du fichier est atteinte sans lecture.
+     */
+    private boolean fill(int needed) throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (buffer.capacity() < needed) {
+            ByteBuffer b = ByteBuffer.allocate(Math.max(needed,
+                    2 * buffer.capacity()));
+            b.put(buffer);
+            buffer = b;
+        } else {
+            buffer.compact();
+        }
+        int r = channel.read(buffer);
+        buffer.flip();
+        if (r < 0) {
+            eof = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Décode le corps d'une partie.
+     */
+    private static RecordedGame decode(ByteBuffer b) {
+        int flags = b.get();
+        long seed = b.getLong();
+        long start = GameFormat.getVarint(b);
+        int n = (int) GameFormat.getVarint(b);
+        int[] conf = new int[2 * (n + 1)];
+        for (int i = 0; i < conf.length; i++) {
+            conf[i] = (int) GameFormat.getVarint(b);
+        }
+        int count = (int) GameFormat.getVarint(b);
+        Order[] orders = GameFormat.getOrders(b, count);
+        long[] delays = null;
+        if ((flags & GameFormat.TIMED) != 0) {
+            delays = new long[count];
+            for (int i = 0; i < count; i++) {
+                delays[i] = GameFormat.getVarint(b);
+            }
+        }
+        return new RecordedGame(seed, start, n, conf, orders, delays,
+                (flags & GameFormat.FINISHED) != 0,
+                (flags & GameFormat.TRUNCATED) != 0);
+    }
+}
@@ -0,0 +1,579 @@
+package crazy.record;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyVetoException;
+import java.beans.VetoableChangeListener;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+import crazy.model.PodiumManager.Rank;
+import crazy.model.PodiumModel;
+import util.Contract;
+
+/**
+ * Enregistre dans un fichier toutes les parties jouées sur un gestionnaire,
+ *  au format décrit par GameFormat.
+ * L'enregistreur observe les propriétés PROP_LAST_ORDER et PROP_FINISHED du
+ *  gestionnaire :
+ * <ul>
+ *   <li> une notification de PROP_FINISHED qui ne suit pas une notification
+ *        de PROP_LAST_ORDER signale une nouvelle partie (reinit) ;</li>
+ *   <li> une notification de PROP_LAST_ORDER ajoute les ordres exécutés
+ *        depuis la précédente, ou en retire s'il s'agit d'une annulation :
+ *        les ordres d'une exécution groupée (executeOrders) sont retrouvés
+ *        grâce aux notifications de veto qui les précèdent.</li>
+ * </ul>
+ * Une partie est ajoutée au fichier dès qu'elle est finie, ou lorsqu'elle est
+ *  abandonnée (nouvelle partie, fermeture de l'enregistreur). Si les ordres
+ *  d'une partie ne peuvent pas être retrouvés, la partie est marquée
+ *  tronquée et ses ordres ultérieurs sont ignorés.
+ * L'enregistrement peut être suspendu (suspend()), le temps de rejouer une
+ *  partie par exemple : la partie jouée pendant la suspension n'est pas
+ *  enregistrée, l'enregistrement reprend avec la suivante (resume()).
+ * Les parties sont accumulées dans un tampon de BATCH_SIZE octets qui n'est
+ *  écrit qu'une fois plein, lors de flush() ou lors de close(). À
+ *  l'ouverture, une éventuelle dernière partie incomplète (écriture
+ *  interrompue) est retirée du fichier.
+ * Aucune exception n'est levée depuis les PCL, pour ne pas priver les
+ *  autres observateurs du gestionnaire de leurs notifications : la première
+ *  erreur d'écriture met fin à l'enregistrement (l'enregistreur cesse
+ *  d'observer le gestionnaire), elle est conservée (voir getFailure()) et
+ *  elle est signalée par flush() et close().
+ * Les éléments sont désignés par leur indice dans une liste de référence,
+ *  qu'il faudra fournir à nouveau pour rejouer les parties.
+ * Un enregistreur n'est pas sûr vis-à-vis des threads : il doit être utilisé
+ *  sur le thread qui manipule le gestionnaire.
+ * @inv <pre>
+ *     getManager() != null
+ *     getUniverse() != null </pre>
+ */
+public class GameRecorder<E> implements Closeable {
+
+    // ATTRIBUTS
+
+    /**
+     * La taille du tampon d'écriture.
+     */
+    public static final int BATCH_SIZE = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final PodiumManager<E> manager;
+    private final List<E> universe;
+    private final Map<E, Integer> indexes;
+    private final boolean timed;
+    private final FileChannel channel;
+    private final ByteBuffer batch;
+    private ByteBuffer body;
+    private final PropertyChangeListener orderListener;
+    private final PropertyChangeListener finishedListener;
+    private final VetoableChangeListener pendingListener;
+    private boolean closed;
+    private boolean suspended;
+    // la première erreur d'écriture, qui a mis fin à l'enregistrement
+    private IOException failure;
+
+    // ordres soumis au veto depuis la dernière notification de lastOrder
+    private byte[] pending;
+    private int pendingNb;
+    // vrai entre une notification de lastOrder et celle de finished qui suit
+    private boolean orderSeen;
+
+    // la partie courante : graine, début, configuration initiale (taille
+    //  du podium gauche puis indices, pour le travail puis l'objectif)
+    private long seed;
+    private long startMillis;
+    private long lastNanos;
+    private final int[] configuration;
+    private byte[] orders;
+    private long[] delays;
+    private int ordersNb;
+    private boolean truncated;
+    private boolean finished;
+    // vrai si la partie courante a déjà été écrite
+    private boolean written;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un enregistreur des parties de m, ajoutées à la fin de file (créé au
+     *  besoin), où chaque élément est désigné par son indice dans universe.
+     * Si timed est vrai, le délai qui précède chaque ordre est enregistré.
+     * La partie en cours de m est enregistrée à partir de son état courant :
+     *  elle est tronquée si des ordres ont déjà été exécutés.
+     * @pre <pre>
+     *     m != null && universe != null && file != null
+     *     universe est sans doublon
+     *     universe contient exactement les éléments des podiums de m </pre>
+     * @throws IOException si file ne peut être ouvert, ou n'est pas un
+     *  fichier de parties
+     */
+    public GameRecorder(PodiumManager<E> m, List<E> universe, Path file,
+            boolean timed) throws IOException {
+        Contract.checkCondition(m != null && universe != null && file != null);
+        Map<E, Integer> idx = new HashMap<E, Integer>();
+        for (E e : universe) {
+            Contract.checkCondition(idx.put(e, idx.size()) == null);
+        }
+        Map<Rank, PodiumModel<E>> models = m.getModels();
+        int n = 0;
+        for (Rank r : new Rank[] {Rank.WORK_LEFT, Rank.WORK_RIGHT}) {
+            PodiumModel<E> pm = models.get(r);
+            for (int i = 0; i < pm.size(); i++) {
+                Contract.checkCondition(idx.containsKey(pm.elementAt(i)));
+            }
+            n += pm.size();
+        }
+        Contract.checkCondition(n == universe.size());
+
+        manager = m;
+        this.universe = Collections.unmodifiableList(new ArrayList<E>(universe));
+        indexes = idx;
+        this.timed = timed;
+        configuration = new int[2 * (n + 1)];
+        orders = new byte[INITIAL_CAPACITY];
+        delays = timed ? new long[INITIAL_CAPACITY] : null;
+        pending = new byte[INITIAL_CAPACITY];
+        batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+        body = ByteBuffer.allocate(INITIAL_CAPACITY);
+        channel = open(file);
+
+        startGame();
+        truncated = m.getShotsNb() > 0;
+        orderListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                orderSeen = true;
+                ordersChanged();
+            }
+        };
+        finishedListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (orderSeen) {
+                    orderSeen = false;
+                    finished = Boolean.TRUE.equals(evt.getNewValue());
+                } else {
+                    endGame();
+                    startGame();
+                }
+                if (finished) {
+                    endGame();
+                }
+            }
+        };
+        pendingListener = new VetoableChangeListener() {
+            @Override
+            public void vetoableChange(PropertyChangeEvent evt)
+                    throws PropertyVetoException {
+                Order o = (Order) evt.getNewValue();
+                if (o == null) {
+                    // retour arrière qui suit un veto
+                    return;
+                }
+                if (pendingNb == pending.length) {
+                    pending = Arrays.copyOf(pending, 2 * pendingNb);
+                }
+                pending[pendingNb] = (byte) o.ordinal();
+                pendingNb += 1;
+            }
+        };
+        startObserving();
+    }
+
+    /**
+     * Un enregistreur chronométré des parties de m.
+     * @pre <pre>
+     *     m != null && universe != null && file != null
+     *     universe est sans doublon
+     *     universe contient exactement les éléments des podiums de m </pre>
+     * @throws IOException si file ne peut être ouvert, ou n'est pas un
+     *  fichier de parties
+     */
+    public GameRecorder(PodiumManager<E> m, List<E> universe, Path file)
+            throws IOException {
+        this(m, universe, file, true);
+    }
+
+    // REQUETES
+
+    /**
+     * Le gestionnaire observé.
+     */
+    public PodiumManager<E> getManager() {
+        return manager;
+    }
+
+    /**
+     * La liste de référence des éléments.
+     */
+    public List<E> getUniverse() {
+        return universe;
+    }
+
+    /**
+     * Indique si les délais entre les ordres sont enregistrés.
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+
+    /**
+     * Indique si l'enregistrement est suspendu (voir suspend()).
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * La première erreur d'écriture, qui a mis fin à l'enregistrement, ou
+     *  null s'il n'y en a pas eu.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Les éléments de elems dans l'ordre de référence de StdPodiumManager :
+     *  leur ordre naturel s'ils sont comparables, sinon l'ordre d'itération
+     *  de elems.
+     * @pre <pre>
+     *     elems != null </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> List<E> referenceOrder(Set<E> elems) {
+        Contract.checkCondition(elems != null);
+
+        Object[] a = elems.toArray();
+        try {
+            Arrays.sort(a);
+        } catch (ClassCastException e) {
+            a = elems.toArray();
+        }
+        return (List<E>) Arrays.asList(a);
+    }
+
+    // COMMANDES
+
+    /**
+     * Suspend l'enregistrement : ajoute la partie en cours au tampon si elle
+     *  n'y est pas déjà, puis cesse d'observer le gestionnaire jusqu'à
+     *  resume().
+     * Sans effet si l'enregistreur est fermé ou déjà suspendu.
+     * @post <pre>
+     *     l'enregistreur n'est pas fermé ==> isSuspended() </pre>
+     */
+    public void suspend() {
+        if (closed || suspended) {
+            return;
+        }
+        suspended = true;
+        stopObserving();
+        endGame();
+    }
+
+    /**
+     * Reprend l'enregistrement suspendu. La partie courante du gestionnaire,
+     *  commencée pendant la suspension, n'est pas enregistrée : seules les
+     *  suivantes le sont.
+     * Sans effet si l'enregistrement n'est pas suspendu ; l'enregistrement
+     *  ne reprend pas s'il a été interrompu par une erreur (voir
+     *  getFailure()).
+     * @post <pre>
+     *     !isSuspended() </pre>
+     */
+    public void resume() {
+        if (!suspended) {
+            return;
+        }
+        suspended = false;
+        if (failure != null) {
+            return;
+        }
+        startGame();
+        written = true;
+        orderSeen = false;
+        startObserving();
+    }
+
+    /**
+     * Écrit dans le fichier les parties accumulées dans le tampon.
+     * @throws IOException en cas d'erreur d'écriture, maintenant ou
+     *  auparavant (voir getFailure())
+     */
+    public void flush() throws IOException {
+        if (failure != null) {
+            throw new IOException("enregistrement interrompu", failure);
+        }
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            batch.clear();
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Cesse d'observer le gestionnaire, ajoute la partie en cours au fichier
+     *  si elle n'y est pas déjà, et ferme le fichier.
+     * Sans effet si l'enregistreur est déjà fermé.
+     * @throws IOException en cas d'erreur d'écriture, maintenant ou
+     *  auparavant (voir getFailure())
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        stopObserving();
+        try {
+            endGame();
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // OUTILS
+
+    /**
+     * Ouvre file en ajout, en écrivant l'en-tête d'un fichier vide ou en
+     *  vérifiant celui d'un fichier existant, dont on retire une éventuelle
+     *  dernière partie incomplète.
+     */
+    private static FileChannel open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() == 0) {
+                ByteBuffer h = ByteBuffer.allocate(GameFormat.HEADER_SIZE);
+                h.put(GameFormat.MAGIC).put(GameFormat.VERSION).flip();
+                while (h.hasRemaining()) {
+                    ch.write(h);
+                }
+            } else {
+                GameReader.checkHeader(ch);
+                long end = GameReader.validLength(ch);
+                if (end < ch.size()) {
+                    ch.truncate(end);
+                }
+            }
+            ch.position(ch.size());
+            return ch;
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private void startObserving() {
+        manager.addVetoableChangeListener(PodiumManager.PROP_LAST_ORDER,
+                pendingListener);
+        manager.addPropertyChangeListener(PodiumManager.PROP_LAST_ORDER,
+                orderListener);
+        manager.addPropertyChangeListener(PodiumManager.PROP_FINISHED,
+                finishedListener);
+    }
+
+    private void stopObserving() {
+        manager.removePropertyChangeListener(PodiumManager.PROP_FINISHED,
+                finishedListener);
+        manager.removePropertyChangeListener(PodiumManager.PROP_LAST_ORDER,
+                orderListener);
+        manager.removeVetoableChangeListener(PodiumManager.PROP_LAST_ORDER,
+                pendingListener);
+    }
+
+    /**
+     * Met fin à l'enregistrement sur l'erreur e, si c'est la première.
+     * PropertyChangeSupport notifiant une copie de la liste de ses PCL, ils
+     *  peuvent être retirés pendant une notification.
+     */
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            stopObserving();
+        }
+    }
+
+    /**
+     * Commence l'enregistrement de la partie courante du gestionnaire.
+     */
+    private void startGame() {
+        seed = manager.getSeed();
+        startMillis = System.currentTimeMillis();
+        lastNanos = System.nanoTime();
+        Map<Rank, PodiumModel<E>> models = manager.getModels();
+        int i = describe(models.get(Rank.WORK_LEFT),
+                models.get(Rank.WORK_RIGHT), 0);
+        describe(models.get(Rank.GOAL_LEFT), models.get(Rank.GOAL_RIGHT), i);
+        ordersNb = 0;
+        pendingNb = 0;
+        truncated = false;
+        finished = manager.isFinished();
+        written = false;
+    }
+
+    /**
+     * Range dans configuration, à partir de la case i, la taille de left
+     *  puis les indices des éléments de left et de right.
+     * Retourne l'indice de la case qui suit.
+     */
+    private int describe(PodiumModel<E> left, PodiumModel<E> right, int i) {
+        int j = i;
+        configuration[j++] = left.size();
+        for (int k = 0; k < left.size(); k++) {
+            configuration[j++] = indexes.get(left.elementAt(k));
+        }
+        for (int k = 0; k < right.size(); k++) {
+            configuration[j++] = indexes.get(right.elementAt(k));
+        }
+        return j;
+    }
+
+    /**
+     * Met les ordres de la partie courante en accord avec le nombre de coups
+     *  du gestionnaire.
+     */
+    private void ordersChanged() {
+        int shots = manager.getShotsNb();
+        int added = shots - ordersNb;
+        if (written || truncated) {
+            pendingNb = 0;
+            return;
+        }
+        if (added <= 0) {
+            // annulation
+            ordersNb = shots;
+        } else if (added == 1) {
+            // un seul ordre (refaire n'est pas soumis au veto)
+            append((byte) manager.getLastOrder().ordinal());
+        } else if (added <= pendingNb) {
+            for (int i = pendingNb - added; i < pendingNb; i++) {
+                append(pending[i]);
+            }
+        } else {
+            truncated = true;
+        }
+        pendingNb = 0;
+    }
+
+    private void append(byte o) {
+        if (ordersNb == orders.length) {
+            orders = Arrays.copyOf(orders, 2 * ordersNb);
+            if (timed) {
+                delays = Arrays.copyOf(delays, 2 * ordersNb);
+            }
+        }
+        orders[ordersNb] = o;
+        if (timed) {
+            long now = System.nanoTime();
+            delays[ordersNb] = now - lastNanos;
+            lastNanos = now;
+        }
+        ordersNb += 1;
+    }
+
+    /**
+     * Ajoute la partie courante au tampon, si ce n'est déjà fait et si
+     *  l'enregistrement n'a pas été interrompu.
+     * Ne lève aucune exception : une erreur d'écriture est confiée à fail.
+     */
+    private void endGame() {
+        if (written || failure != null) {
+            return;
+        }
+        written = true;
+        try {
+            encode();
+            int len = body.remaining();
+            if (batch.remaining() < GameFormat.varintSize(len) + len) {
+                flush();
+            }
+            if (batch.remaining() < GameFormat.varintSize(len) + len) {
+                ByteBuffer big = ByteBuffer.allocate(
+                        GameFormat.varintSize(len) + len);
+                GameFormat.putVarint(big, len);
+                big.put(body).flip();
+                while (big.hasRemaining()) {
+                    channel.write(big);
+                }
+            } else {
+                GameFormat.putVarint(batch, len);
+                batch.put(body);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Code le corps de la partie courante dans body, prêt à être lu.
+     */
+    private void encode() {
+        int n = universe.size();
+        int size = 1 + Long.SIZE / Byte.SIZE
+                + GameFormat.varintSize(startMillis)
+                + GameFormat.varintSize(n)
+                + GameFormat.varintSize(ordersNb)
+                + GameFormat.packedSize(ordersNb);
+        for (int c : configuration) {
+            size += GameFormat.varintSize(c);
+        }
+        if (timed) {
+            for (int i = 0; i < ordersNb; i++) {
+                size += GameFormat.varintSize(delays[i]);
+            }
+        }
+        if (body.capacity() < size) {
+            body = ByteBuffer.allocate(Math.max(size, 2 * body.capacity()));
+        }
+        body.clear();
+
+        int flags = 0;
+        if (finished) {
+            flags |= GameFormat.FINISHED;
+        }
+        if (timed) {
+            flags |= GameFormat.TIMED;
+        }
+        if (truncated) {
+            flags |= GameFormat.TRUNCATED;
+        }
+        body.put((byte) flags);
+        body.putLong(seed);
+        GameFormat.putVarint(body, startMillis);
+        GameFormat.putVarint(body, n);
+        for (int c : configuration) {
+            GameFormat.putVarint(body, c);
+        }
+        GameFormat.putVarint(body, ordersNb);
+        GameFormat.putOrders(body, orders, ordersNb);
+        if (timed) {
+            for (int i = 0; i < ordersNb; i++) {
+                GameFormat.putVarint(body, delays[i]);
+            }
+        }
+        body.flip();
+    }
+}
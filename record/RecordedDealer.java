@@ -0,0 +1,80 @@
+package crazy.record;
+
+import java.util.Random;
+
+import crazy.model.StdPodiumManager;
+import crazy.model.StdPodiumManager.Dealer;
+import util.Contract;
+
+/**
+ * Une distribution qui restaure la configuration initiale d'une partie
+ *  enregistrée : un StdPodiumManager qui l'utilise redonne la partie
+ *  chargée par load(g) lorsqu'il est réinitialisé avec la graine
+ *  g.getSeed(), quels qu'aient été la distribution et l'ordre des éléments
+ *  lors de l'enregistrement.
+ * Les indices enregistrés sont ceux de la liste de référence de
+ *  l'enregistreur : ils désignent les mêmes éléments pour le gestionnaire
+ *  lorsque cette liste est GameRecorder.referenceOrder(...) de ses éléments.
+ * Toute autre graine est distribuée par la distribution de repli, ou comme
+ *  par un StdPodiumManager sans Dealer s'il n'y en a pas.
+ * Une telle distribution n'est pas sûre vis-à-vis des threads : elle doit
+ *  être utilisée sur le thread qui manipule le gestionnaire.
+ */
+public class RecordedDealer implements Dealer {
+
+    // ATTRIBUTS
+
+    private final Dealer fallback;
+    private RecordedGame game;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Une distribution qui confie les graines des parties qui ne sont pas
+     *  chargées à fallback (à StdPodiumManager.randomDeal si fallback est
+     *  null).
+     */
+    public RecordedDealer(Dealer fallback) {
+        this.fallback = fallback;
+    }
+
+    public RecordedDealer() {
+        this(null);
+    }
+
+    // REQUETES
+
+    /**
+     * La partie chargée, ou null.
+     */
+    public RecordedGame getGame() {
+        return game;
+    }
+
+    @Override
+    public int deal(long seed, boolean goal, int[] indices) {
+        if (game != null && seed == game.getSeed()) {
+            return game.deal(goal, indices);
+        }
+        if (fallback != null) {
+            return fallback.deal(seed, goal, indices);
+        }
+        Random rnd = new Random(seed);
+        int k = StdPodiumManager.randomDeal(rnd, indices);
+        return goal ? StdPodiumManager.randomDeal(rnd, indices) : k;
+    }
+
+    // COMMANDES
+
+    /**
+     * Charge g : sa configuration initiale sera distribuée pour sa graine,
+     *  jusqu'au prochain chargement.
+     * @pre <pre>
+     *     g != null </pre>
+     */
+    public void load(RecordedGame g) {
+        Contract.checkCondition(g != null);
+
+        game = g;
+    }
+}
@@ -0,0 +1,237 @@
+package crazy.record;
+
+import java.beans.PropertyVetoException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+import crazy.model.PodiumManager.Rank;
+import crazy.model.PodiumModel;
+import util.Contract;
+
+/**
+ * Une partie lue par GameReader.
+ * Les éléments y sont désignés par leur indice dans la liste de référence
+ *  fournie à l'enregistreur ; getConfiguration() les retrouve à partir d'une
+ *  liste équivalente.
+ * @inv <pre>
+ *     getElementsNb() >= 0
+ *     getOrders() != null
+ *     isTimed() ==> pour tout 0 <= i < getOrders().size() :
+ *         getDelay(i) >= 0 </pre>
+ */
+public final class RecordedGame {
+
+    // ATTRIBUTS
+
+    private static final Rank[] RANKS = {
+        Rank.WORK_LEFT, Rank.WORK_RIGHT, Rank.GOAL_LEFT, Rank.GOAL_RIGHT
+    };
+
+    private final long seed;
+    private final long startTime;
+    private final int elementsNb;
+    private final int[] configuration;
+    private final List<Order> orders;
+    private final long[] delays;
+    private final boolean finished;
+    private final boolean truncated;
+
+    // CONSTRUCTEURS
+
+    RecordedGame(long seed, long startTime, int n, int[] conf, Order[] orders,
+            long[] delays, boolean finished, boolean truncated) {
+        this.seed = seed;
+        this.startTime = startTime;
+        elementsNb = n;
+        configuration = conf;
+        this.orders = Collections.unmodifiableList(Arrays.asList(orders));
+        this.delays = delays;
+        this.finished = finished;
+        this.truncated = truncated;
+    }
+
+    // REQUETES
+
+    /**
+     * La graine de la partie.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * L'heure du début de la partie, en millisecondes depuis l'époque.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Le nombre d'éléments.
+     */
+    public int getElementsNb() {
+        return elementsNb;
+    }
+
+    /**
+     * Les ordres exécutés pendant la partie.
+     */
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    /**
+     * Indique si les délais entre les ordres sont connus.
+     */
+    public boolean isTimed() {
+        return delays != null;
+    }
+
+    /**
+     * Le délai, en nanosecondes, entre l'ordre i et celui qui le précède (ou
+     *  le début de la partie).
+     * @pre <pre>
+     *     isTimed()
+     *     0 <= i < getOrders().size() </pre>
+     */
+    public long getDelay(int i) {
+        Contract.checkCondition(isTimed());
+        Contract.checkCondition(0 <= i && i < orders.size());
+
+        return delays[i];
+    }
+
+    /**
+     * Indique si la partie a été gagnée.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Indique si des ordres de la partie manquent : la partie ne peut alors
+     *  pas être rejouée jusqu'au bout.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * La configuration initiale de la partie : pour chaque rang, les éléments
+     *  du podium de la base vers le sommet.
+     * @pre <pre>
+     *     universe != null
+     *     universe.size() == getElementsNb() </pre>
+     */
+    public <E> Map<Rank, List<E>> getConfiguration(List<E> universe) {
+        Contract.checkCondition(universe != null);
+        Contract.checkCondition(universe.size() == elementsNb);
+
+        Map<Rank, List<E>> result = new EnumMap<Rank, List<E>>(Rank.class);
+        int j = 0;
+        for (int r = 0; r < RANKS.length; r += 2) {
+            int split = configuration[j++];
+            List<E> left = new ArrayList<E>(split);
+            List<E> right = new ArrayList<E>(elementsNb - split);
+            for (int i = 0; i < elementsNb; i++) {
+                (i < split ? left : right).add(universe.get(configuration[j++]));
+            }
+            result.put(RANKS[r], left);
+            result.put(RANKS[r + 1], right);
+        }
+        return result;
+    }
+
+    /**
+     * Indique si les podiums de m sont dans la configuration initiale de la
+     *  partie.
+     * @pre <pre>
+     *     m != null
+     *     universe != null
+     *     universe.size() == getElementsNb() </pre>
+     */
+    public <E> boolean matches(PodiumManager<E> m, List<E> universe) {
+        Contract.checkCondition(m != null);
+
+        Map<Rank, List<E>> conf = getConfiguration(universe);
+        Map<Rank, PodiumModel<E>> models = m.getModels();
+        for (Rank r : RANKS) {
+            List<E> expected = conf.get(r);
+            PodiumModel<E> pm = models.get(r);
+            if (pm.size() != expected.size()) {
+                return false;
+            }
+            for (int i = 0; i < pm.size(); i++) {
+                if (!pm.elementAt(i).equals(expected.get(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Range dans indices la configuration initiale de travail (goal ==
+     *  false) ou objectif (goal == true), comme un StdPodiumManager.Dealer :
+     *  les indices du podium gauche puis ceux du podium droit, chacun de la
+     *  base vers le sommet. Retourne la taille du podium gauche.
+     * @pre <pre>
+     *     indices != null && indices.length == getElementsNb() </pre>
+     */
+    int deal(boolean goal, int[] indices) {
+        Contract.checkCondition(indices != null
+                && indices.length == elementsNb);
+
+        int j = goal ? elementsNb + 1 : 0;
+        System.arraycopy(configuration, j + 1, indices, 0, elementsNb);
+        return configuration[j];
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedGame[seed=" + seed + ", n=" + elementsNb
+                + ", orders=" + orders.size()
+                + (finished ? ", finished" : "")
+                + (truncated ? ", truncated" : "") + "]";
+    }
+
+    // COMMANDES
+
+    /**
+     * Rejoue la partie sur m : la réinitialise avec la graine de la partie,
+     *  puis exécute d'un coup tous ses ordres.
+     * Pour que la configuration initiale enregistrée soit restaurée quelle
+     *  qu'ait été la distribution lors de l'enregistrement, m doit utiliser
+     *  un RecordedDealer dans lequel la partie est chargée.
+     * @pre <pre>
+     *     m != null
+     *     universe != null
+     *     universe.size() == getElementsNb() </pre>
+     * @post <pre>
+     *     m.getSeed() == getSeed()
+     *     m.getShotsNb() == getOrders().size() </pre>
+     * @throws IllegalStateException si la graine ne redonne pas la
+     *  configuration initiale enregistrée (m n'utilise pas de
+     *  RecordedDealer chargé avec la partie, ou universe n'est pas la
+     *  liste de référence de m)
+     * @throws PropertyVetoException si un ordre est refusé par m
+     */
+    public <E> void replay(PodiumManager<E> m, List<E> universe)
+            throws PropertyVetoException {
+        Contract.checkCondition(m != null);
+        Contract.checkCondition(universe != null);
+        Contract.checkCondition(universe.size() == elementsNb);
+
+        m.reinit(seed);
+        if (!matches(m, universe)) {
+            throw new IllegalStateException("configuration différente");
+        }
+        m.executeOrders(orders);
+    }
+}
@@ -0,0 +1,99 @@
+package crazy.record;
+
+import java.beans.PropertyVetoException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import crazy.model.PodiumManager;
+import crazy.model.StdPodiumManager;
+
+/**
+ * Point d'entrée du rejeu sans interface graphique d'un fichier de parties.
+ * L'argument attendu est le chemin du fichier.
+ * Chaque partie non tronquée est rejouée sur un StdPodiumManager dont les
+ *  éléments sont les entiers de 0 à n - 1, à partir de sa configuration
+ *  initiale enregistrée (voir RecordedDealer) : les indices des éléments
+ *  suffisent, quels qu'aient été la distribution et l'ordre des éléments
+ *  lors de l'enregistrement.
+ * On vérifie que la partie rejouée est gagnée si et seulement si la partie
+ *  enregistrée l'était.
+ */
+public final class Replay {
+
+    private Replay() {
+        // rien
+    }
+
+    public static void main(String[] args)
+            throws IOException, PropertyVetoException {
+        if (args.length != 1) {
+            System.err.println("usage : java crazy.record.Replay fichier");
+            System.exit(1);
+        }
+        Path file = Paths.get(args[0]);
+        Map<Integer, PodiumManager<Integer>> managers =
+                new HashMap<Integer, PodiumManager<Integer>>();
+        RecordedDealer dealer = new RecordedDealer();
+        Map<Integer, List<Integer>> universes =
+                new HashMap<Integer, List<Integer>>();
+        long games = 0;
+        long orders = 0;
+        long finished = 0;
+        long truncated = 0;
+        long mismatches = 0;
+
+        GameReader reader = new GameReader(file);
+        try {
+            while (reader.hasNext()) {
+                RecordedGame g = reader.next();
+                games += 1;
+                orders += g.getOrders().size();
+                if (g.isFinished()) {
+                    finished += 1;
+                }
+                if (g.isTruncated()) {
+                    truncated += 1;
+                    continue;
+                }
+                int n = g.getElementsNb();
+                PodiumManager<Integer> m = managers.get(n);
+                if (m == null) {
+                    Set<Integer> elems = new HashSet<Integer>();
+                    List<Integer> universe = new ArrayList<Integer>();
+                    for (int i = 0; i < n; i++) {
+                        elems.add(i);
+                        universe.add(i);
+                    }
+                    m = new StdPodiumManager<Integer>(elems, new Random(),
+                            dealer);
+                    managers.put(n, m);
+                    universes.put(n, universe);
+                }
+                dealer.load(g);
+                g.replay(m, universes.get(n));
+                if (m.isFinished() != g.isFinished()) {
+                    mismatches += 1;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        long size = Files.size(file);
+        System.out.println("parties : " + games + " (" + finished
+                + " gagnées, " + truncated + " tronquées)");
+        System.out.println("ordres : " + orders + String.format(
+                " (%.2f octets par ordre)",
+                orders == 0 ? 0.0 : (double) size / orders));
+        System.out.println("écarts au rejeu : " + mismatches);
+    }
+}
@@ -0,0 +1,228 @@
+package crazy.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import util.Contract;
+
+/**
+ * Serveur de parties : chaque connexion TCP est une session qui possède son
+ *  propre StdPodiumManager sur les entiers de 0 à n - 1, confiné au thread
+ *  qui la sert.
+ * Un thread est créé par connexion : un thread virtuel si la plateforme en
+ *  propose (Executors.newVirtualThreadPerTaskExecutor, cherchée par
+ *  réflexion pour rester compilable par les JDK antérieurs), un thread
+ *  démon ordinaire sinon. Aucun état n'est partagé entre sessions.
+ * Le protocole est textuel, une ligne par requête et une ligne par réponse
+ *  (voir Session) :
+ * <pre>
+ *     LO | KI | MA | NI | SO   exécute l'ordre      STATE ... ou VETO SO
+ *     NEW [graine]             nouvelle partie      STATE ...
+ *     ALLOW SO | FORBID SO     règle de veto de SO  OK
+ *     UNDO | REDO              historique           STATE ... ou ERR ...
+ *     STATE                    état courant         STATE ...
+ *     QUIT                     fin de session       BYE </pre>
+ * où STATE est suivi du nombre d'ordres joués, de 1 si la partie est finie
+ *  (0 sinon) et des quatre podiums (travail gauche et droit, objectif
+ *  gauche et droit), chacun écrit comme la liste de ses éléments de la base
+ *  vers le sommet, séparés par des virgules ("-" s'il est vide).
+ * Comme dans le jeu, SO est interdit au début de chaque session.
+ * @inv <pre>
+ *     getSessionsNb() >= 0
+ *     getOrdersNb() >= 0 </pre>
+ */
+public class GameServer {
+
+    // ATTRIBUTS
+
+    public static final int DEFAULT_PORT = 7777;
+    public static final int DEFAULT_ELEMENTS_NB = 5;
+
+    private final ServerSocket server;
+    private final Set<Integer> elements;
+    private final ExecutorService sessions;
+    private final Set<Socket> sockets;
+    private final AtomicInteger sessionsNb;
+    private final AtomicLong ordersNb;
+    private final Thread acceptor;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un serveur de parties sur n éléments, à l'écoute de port sur l'adresse
+     *  locale (port 0 : un port libre, voir getPort()).
+     * Les connexions ne sont acceptées qu'après start().
+     * @pre <pre>
+     *     n >= 2
+     *     0 <= port <= 65535 </pre>
+     * @throws IOException si port ne peut être ouvert
+     */
+    public GameServer(int port, int n) throws IOException {
+        Contract.checkCondition(n >= 2);
+        Contract.checkCondition(0 <= port && port <= 65535);
+
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                port), Integer.MAX_VALUE);
+        elements = new HashSet<Integer>();
+        for (int i = 0; i < n; i++) {
+            elements.add(i);
+        }
+        sessions = perTaskExecutor("session");
+        sockets = ConcurrentHashMap.newKeySet();
+        sessionsNb = new AtomicInteger();
+        ordersNb = new AtomicLong();
+        acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "serveur");
+    }
+
+    // REQUETES
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Le nombre de sessions ouvertes.
+     */
+    public int getSessionsNb() {
+        return sessionsNb.get();
+    }
+
+    /**
+     * Le nombre d'ordres reçus depuis le démarrage, toutes sessions
+     *  confondues.
+     */
+    public long getOrdersNb() {
+        return ordersNb.get();
+    }
+
+    // COMMANDES
+
+    /**
+     * Commence à accepter les connexions.
+     */
+    public void start() {
+        acceptor.start();
+    }
+
+    /**
+     * Ferme le port d'écoute et toutes les sessions.
+     */
+    public void close() throws IOException {
+        try {
+            server.close();
+        } finally {
+            for (Socket s : sockets) {
+                try {
+                    s.close();
+                } catch (IOException e) {
+                    // la session se termine de toute façon
+                }
+            }
+            sessions.shutdownNow();
+        }
+    }
+
+    /**
+     * Arguments (tous facultatifs) : le port (DEFAULT_PORT par défaut) et le
+     *  nombre d'éléments (DEFAULT_ELEMENTS_NB par défaut).
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int n = args.length > 1
+                ? Integer.parseInt(args[1]) : DEFAULT_ELEMENTS_NB;
+
+        GameServer s = new GameServer(port, n);
+        s.start();
+        System.out.println("à l'écoute du port " + s.getPort() + " ("
+                + (hasVirtualThreads() ? "threads virtuels"
+                        : "threads ordinaires") + ")");
+    }
+
+    // OUTILS
+
+    /**
+     * Indique si la plateforme propose des threads virtuels.
+     */
+    static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Un exécuteur qui démarre un thread par tâche : virtuel si possible,
+     *  démon nommé name sinon.
+     */
+    static ExecutorService perTaskExecutor(final String name) {
+        if (hasVirtualThreads()) {
+            try {
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // repli sur les threads ordinaires
+            }
+        }
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            final Socket s;
+            try {
+                s = server.accept();
+            } catch (IOException e) {
+                // port fermé
+                return;
+            }
+            sockets.add(s);
+            try {
+                sessions.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        sessionsNb.incrementAndGet();
+                        try {
+                            new Session(s, elements, ordersNb).run();
+                        } finally {
+                            sessionsNb.decrementAndGet();
+                            sockets.remove(s);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // serveur arrêté
+                sockets.remove(s);
+                return;
+            }
+        }
+    }
+}
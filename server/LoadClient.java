@@ -0,0 +1,167 @@
+package crazy.server;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import crazy.model.Order;
+
+/**
+ * Générateur de charge pour GameServer : des sessions simultanées, sur
+ *  l'adresse locale, qui envoient chacune des ordres tirés au hasard en
+ *  attendant chaque réponse avant l'ordre suivant ; une partie finie est
+ *  aussitôt remplacée (NEW, non mesuré).
+ * Arguments (tous facultatifs), dans l'ordre :
+ * <ul>
+ *   <li> le port (GameServer.DEFAULT_PORT par défaut) ;</li>
+ *   <li> le nombre de sessions (DEFAULT_SESSIONS_NB par défaut) ;</li>
+ *   <li> le nombre d'ordres par session (DEFAULT_ORDERS_NB par défaut) ;</li>
+ *   <li> "so" ou "noso", selon que les sessions autorisent SO ou non ("so"
+ *        par défaut : avec "noso", les SO tirés sont refusés par le
+ *        serveur).</li>
+ * </ul>
+ * Toutes les sessions sont ouvertes avant la première mesure. Le bilan
+ *  donne le débit total, le nombre de sessions par processeur et les
+ *  quantiles des durées aller-retour des ordres.
+ */
+public final class LoadClient {
+
+    private static final int DEFAULT_SESSIONS_NB = 1000;
+    private static final int DEFAULT_ORDERS_NB = 1000;
+    private static final double MEDIAN = 0.5;
+    private static final double P99 = 0.99;
+    private static final double P999 = 0.999;
+
+    private LoadClient() {
+        // rien
+    }
+
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        int port = args.length > 0
+                ? Integer.parseInt(args[0]) : GameServer.DEFAULT_PORT;
+        int sessionsNb = args.length > 1
+                ? Integer.parseInt(args[1]) : DEFAULT_SESSIONS_NB;
+        final int ordersNb = args.length > 2
+                ? Integer.parseInt(args[2]) : DEFAULT_ORDERS_NB;
+        final boolean so = !(args.length > 3 && args[3].equals("noso"));
+
+        List<Socket> sockets = new ArrayList<Socket>(sessionsNb);
+        for (int i = 0; i < sessionsNb; i++) {
+            Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+            s.setTcpNoDelay(true);
+            sockets.add(s);
+        }
+        final CountDownLatch go = new CountDownLatch(1);
+        ExecutorService exec = GameServer.perTaskExecutor("client");
+        List<Future<long[]>> results =
+                new ArrayList<Future<long[]>>(sessionsNb);
+        long seed = System.nanoTime();
+        for (final Socket s : sockets) {
+            final Random rnd = new Random(seed++);
+            results.add(exec.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() throws Exception {
+                    try {
+                        return play(s, ordersNb, so, rnd, go);
+                    } finally {
+                        s.close();
+                    }
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        long[] all = new long[sessionsNb * ordersNb];
+        int size = 0;
+        for (Future<long[]> f : results) {
+            try {
+                long[] t = f.get();
+                System.arraycopy(t, 0, all, size, t.length);
+                size += t.length;
+            } catch (ExecutionException e) {
+                System.err.println("session perdue : " + e.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        exec.shutdown();
+
+        Arrays.sort(all, 0, size);
+        int cpus = Runtime.getRuntime().availableProcessors();
+        System.out.println(sessionsNb + " sessions (" + (sessionsNb / cpus)
+                + " par processeur), " + size + " ordres en "
+                + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms : "
+                + (long) (size * 1e9 / elapsed) + " ordres/s");
+        if (size > 0) {
+            System.out.println("aller-retour : médiane "
+                    + micros(all[(int) (MEDIAN * (size - 1))]) + ", p99 "
+                    + micros(all[(int) (P99 * (size - 1))]) + ", p99.9 "
+                    + micros(all[(int) (P999 * (size - 1))]) + ", max "
+                    + micros(all[size - 1]));
+        }
+    }
+
+    /**
+     * Joue ordersNb ordres sur la session de s, une fois go ouvert, et
+     *  retourne la durée aller-retour de chacun, en nanosecondes.
+     */
+    private static long[] play(Socket s, int ordersNb, boolean so,
+            Random rnd, CountDownLatch go)
+            throws IOException, InterruptedException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                s.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new OutputStreamWriter(s.getOutputStream(),
+                StandardCharsets.UTF_8);
+        Order[] orders = Order.values();
+        request(in, out, (so ? "ALLOW " : "FORBID ") + Order.SO.name());
+        go.await();
+        long[] times = new long[ordersNb];
+        for (int i = 0; i < ordersNb; i++) {
+            String o = orders[rnd.nextInt(orders.length)].name();
+            long t = System.nanoTime();
+            String r = request(in, out, o);
+            times[i] = System.nanoTime() - t;
+            // STATE coups fini ...
+            if (r.startsWith("STATE ") && r.split(" ")[2].equals("1")) {
+                request(in, out, "NEW");
+            }
+        }
+        request(in, out, "QUIT");
+        return times;
+    }
+
+    /**
+     * Envoie la requête line et retourne la réponse.
+     */
+    private static String request(BufferedReader in, Writer out, String line)
+            throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        String r = in.readLine();
+        if (r == null) {
+            throw new EOFException("connexion fermée par le serveur");
+        }
+        return r;
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f µs", nanos / 1e3);
+    }
+}
@@ -0,0 +1,196 @@
+package crazy.server;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyVetoException;
+import java.beans.VetoableChangeListener;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+import crazy.model.PodiumManager.Rank;
+import crazy.model.PodiumModel;
+import crazy.model.StdPodiumManager;
+
+/**
+ * Une session du serveur (voir GameServer) : une partie, jouée par un seul
+ *  client sur une seule connexion.
+ * Le gestionnaire et la règle de veto de SO ne sont utilisés que par le
+ *  thread qui exécute run() : aucune synchronisation n'est nécessaire.
+ */
+final class Session implements Runnable {
+
+    // ATTRIBUTS
+
+    private static final String SEPARATOR = " ";
+
+    private final Socket socket;
+    private final StdPodiumManager<Integer> manager;
+    private final AtomicLong ordersNb;
+    private final StringBuilder reply;
+    private boolean soAllowed;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Une session sur socket, dont les parties portent sur elements ;
+     *  ordersNb compte les ordres reçus.
+     */
+    Session(Socket socket, Set<Integer> elements, AtomicLong ordersNb) {
+        this.socket = socket;
+        this.ordersNb = ordersNb;
+        manager = new StdPodiumManager<Integer>(elements);
+        manager.addVetoableChangeListener(PodiumManager.PROP_LAST_ORDER,
+                new VetoableChangeListener() {
+                    @Override
+                    public void vetoableChange(PropertyChangeEvent evt)
+                            throws PropertyVetoException {
+                        if (!soAllowed && evt.getNewValue() == Order.SO) {
+                            throw new PropertyVetoException("soAllowed", evt);
+                        }
+                    }
+                });
+        reply = new StringBuilder();
+    }
+
+    // COMMANDES
+
+    /**
+     * Répond aux requêtes du client jusqu'à QUIT ou la fermeture de la
+     *  connexion, puis ferme la connexion.
+     */
+    @Override
+    public void run() {
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                boolean quit = handle(line.trim());
+                reply.append('\n');
+                out.append(reply);
+                out.flush();
+                if (quit) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // connexion perdue : la session se termine
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // rien de plus à faire
+            }
+        }
+    }
+
+    // OUTILS
+
+    /**
+     * Range dans reply la réponse à la requête line.
+     * Retourne true si la session doit se terminer.
+     */
+    private boolean handle(String line) {
+        reply.setLength(0);
+        String[] words = line.split(SEPARATOR);
+        String cmd = words[0];
+        Order o = order(cmd);
+        if (o != null && words.length == 1) {
+            ordersNb.incrementAndGet();
+            try {
+                manager.executeOrder(o);
+                appendState();
+            } catch (PropertyVetoException e) {
+                reply.append("VETO ").append(o.name());
+            }
+            return false;
+        }
+        if (cmd.equals("NEW") && words.length <= 2) {
+            if (words.length == 1) {
+                manager.reinit();
+            } else {
+                try {
+                    manager.reinit(Long.parseLong(words[1]));
+                } catch (NumberFormatException e) {
+                    reply.append("ERR graine invalide");
+                    return false;
+                }
+            }
+            appendState();
+        } else if ((cmd.equals("ALLOW") || cmd.equals("FORBID"))
+                && words.length == 2 && words[1].equals(Order.SO.name())) {
+            soAllowed = cmd.equals("ALLOW");
+            reply.append("OK");
+        } else if (cmd.equals("UNDO") && words.length == 1) {
+            if (manager.canUndo()) {
+                manager.undo();
+                appendState();
+            } else {
+                reply.append("ERR rien à annuler");
+            }
+        } else if (cmd.equals("REDO") && words.length == 1) {
+            if (manager.canRedo()) {
+                manager.redo();
+                appendState();
+            } else {
+                reply.append("ERR rien à refaire");
+            }
+        } else if (cmd.equals("STATE") && words.length == 1) {
+            appendState();
+        } else if (cmd.equals("QUIT") && words.length == 1) {
+            reply.append("BYE");
+            return true;
+        } else {
+            reply.append("ERR requête inconnue");
+        }
+        return false;
+    }
+
+    /**
+     * L'ordre de nom name, ou null.
+     */
+    private static Order order(String name) {
+        for (Order o : Order.values()) {
+            if (o.name().equals(name)) {
+                return o;
+            }
+        }
+        return null;
+    }
+
+    private void appendState() {
+        reply.append("STATE ").append(manager.getShotsNb())
+                .append(manager.isFinished() ? " 1" : " 0");
+        Map<Rank, PodiumModel<Integer>> models = manager.getModels();
+        for (Rank r : Rank.values()) {
+            reply.append(SEPARATOR);
+            appendPodium(models.get(r));
+        }
+    }
+
+    private void appendPodium(PodiumModel<Integer> m) {
+        if (m.size() == 0) {
+            reply.append('-');
+            return;
+        }
+        for (int i = 0; i < m.size(); i++) {
+            if (i > 0) {
+                reply.append(',');
+            }
+            reply.append(m.elementAt(i));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package crazy.sim;
+
+import java.util.Random;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+
+/**
+ * Stratégie qui tire chaque ordre uniformément au hasard parmi les ordres
+ *  autorisés.
+ * Le générateur est réinitialisé au début de chaque partie à partir de la
+ *  graine de la stratégie et de celle de la partie : les ordres donnés dans
+ *  une partie ne dépendent que de ces deux graines.
+ */
+public class RandomStrategy<E> implements Strategy<E> {
+
+    // ATTRIBUTS
+
+    private final Order[] orders;
+    private final long seed;
+    private final Random random;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Une stratégie aléatoire qui utilise SO si et seulement si soAllowed.
+     */
+    public RandomStrategy(boolean soAllowed, long seed) {
+        Order[] all = Order.values();
+        orders = soAllowed ? all : new Order[] {
+            Order.LO, Order.KI, Order.MA, Order.NI
+        };
+        this.seed = seed;
+        random = new Random(seed);
+    }
+
+    // COMMANDES
+
+    @Override
+    public void newGame(PodiumManager<E> manager) {
+        random.setSeed(seed ^ manager.getSeed());
+    }
+
+    @Override
+    public Order nextOrder(PodiumManager<E> manager) {
+        return orders[random.nextInt(orders.length)];
+    }
+}
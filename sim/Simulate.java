@@ -0,0 +1,95 @@
+package crazy.sim;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import crazy.solver.AStarSolver;
+import crazy.solver.BfsSolver;
+
+/**
+ * Point d'entrée des simulations sans interface graphique.
+ * Arguments (tous facultatifs), dans l'ordre :
+ * <ul>
+ *   <li> le nombre d'éléments (DEFAULT_ELEMENTS_NB par défaut) ;</li>
+ *   <li> le nombre de parties (DEFAULT_GAMES_NB par défaut) ;</li>
+ *   <li> la stratégie : random, random-noso, solver, solver-noso (parcours
+ *        en largeur bidirectionnel), astar ou astar-noso (recherche A*)
+ *        (random par défaut) ;</li>
+ *   <li> le nombre maximal d'ordres par partie (DEFAULT_MAX_SHOTS par
+ *        défaut) ;</li>
+ *   <li> la graine de la simulation (tirée au hasard par défaut) : celle
+ *        qu'affiche le bilan reproduit la simulation.</li>
+ * </ul>
+ * Les éléments sont les entiers de 0 à n - 1.
+ */
+public final class Simulate {
+
+    private static final int DEFAULT_ELEMENTS_NB = 3;
+    private static final long DEFAULT_GAMES_NB = 1000000;
+    private static final String DEFAULT_STRATEGY = "random";
+    private static final int DEFAULT_MAX_SHOTS = 1000;
+
+    private Simulate() {
+        // rien
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0
+                ? Integer.parseInt(args[0]) : DEFAULT_ELEMENTS_NB;
+        long games = args.length > 1
+                ? Long.parseLong(args[1]) : DEFAULT_GAMES_NB;
+        String strategy = args.length > 2 ? args[2] : DEFAULT_STRATEGY;
+        int maxShots = args.length > 3
+                ? Integer.parseInt(args[3]) : DEFAULT_MAX_SHOTS;
+        long seed = args.length > 4
+                ? Long.parseLong(args[4]) : new Random().nextLong();
+
+        Simulator<Integer> sim = new Simulator<Integer>(elements(n),
+                factory(strategy, seed), maxShots,
+                Runtime.getRuntime().availableProcessors(), seed);
+        System.out.println(sim.run(games));
+    }
+
+    private static Set<Integer> elements(int n) {
+        Set<Integer> s = new HashSet<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        return s;
+    }
+
+    /**
+     * La fabrique des stratégies de nom name ; les stratégies aléatoires ont
+     *  toutes la graine seed (voir RandomStrategy).
+     */
+    private static Strategy.Factory<Integer> factory(String name,
+            final long seed) {
+        final boolean so = !name.endsWith("-noso");
+        if (name.startsWith("solver")) {
+            return new Strategy.Factory<Integer>() {
+                @Override
+                public Strategy<Integer> create() {
+                    return new SolverStrategy<Integer>(new BfsSolver(so));
+                }
+            };
+        }
+        if (name.startsWith("astar")) {
+            return new Strategy.Factory<Integer>() {
+                @Override
+                public Strategy<Integer> create() {
+                    return new SolverStrategy<Integer>(new AStarSolver(so));
+                }
+            };
+        }
+        if (name.startsWith("random")) {
+            return new Strategy.Factory<Integer>() {
+                @Override
+                public Strategy<Integer> create() {
+                    return new RandomStrategy<Integer>(so, seed);
+                }
+            };
+        }
+        throw new IllegalArgumentException("stratégie inconnue : " + name);
+    }
+}
@@ -0,0 +1,92 @@
+package crazy.sim;
+
+/**
+ * Le bilan d'une simulation : sa graine (qui permet de la reproduire, voir
+ *  Simulator), nombre de parties jouées et résolues, nombre total d'ordres
+ *  donnés dans les parties résolues, durée.
+ * @inv <pre>
+ *     0 <= getSolvedNb() <= getGamesNb()
+ *     getShotsNb() >= 0
+ *     getElapsedNanos() >= 0 </pre>
+ */
+public final class SimulationReport {
+
+    // ATTRIBUTS
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final long seed;
+    private final long gamesNb;
+    private final long solvedNb;
+    private final long shotsNb;
+    private final long elapsedNanos;
+
+    // CONSTRUCTEURS
+
+    public SimulationReport(long seed, long games, long solved, long shots,
+            long nanos) {
+        this.seed = seed;
+        gamesNb = games;
+        solvedNb = solved;
+        shotsNb = shots;
+        elapsedNanos = nanos;
+    }
+
+    // REQUETES
+
+    /**
+     * Le nombre moyen d'ordres (getShotsNb() du gestionnaire) par partie
+     *  résolue, 0 si aucune ne l'a été.
+     */
+    public double getAverageShots() {
+        return solvedNb == 0 ? 0 : (double) shotsNb / solvedNb;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * La graine de la simulation.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getGamesNb() {
+        return gamesNb;
+    }
+
+    /**
+     * Le nombre de parties jouées par seconde.
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : gamesNb * NANOS_PER_SECOND / elapsedNanos;
+    }
+
+    /**
+     * Le nombre total d'ordres donnés dans les parties résolues.
+     */
+    public long getShotsNb() {
+        return shotsNb;
+    }
+
+    public long getSolvedNb() {
+        return solvedNb;
+    }
+
+    /**
+     * La proportion de parties résolues, entre 0 et 1.
+     */
+    public double getSolveRate() {
+        return gamesNb == 0 ? 0 : (double) solvedNb / gamesNb;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d parties en %.3f s (%.0f parties/s), "
+                + "%.2f%% résolues en %.2f coups en moyenne (graine %d)",
+                gamesNb, elapsedNanos / NANOS_PER_SECOND, getGamesPerSecond(),
+                100 * getSolveRate(), getAverageShots(), seed);
+    }
+}
@@ -0,0 +1,210 @@
+package crazy.sim;
+
+import java.beans.PropertyVetoException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import crazy.model.PodiumManager;
+import crazy.model.StdPodiumManager;
+import util.Contract;
+
+/**
+ * Moteur de simulation sans interface graphique.
+ * Les parties sont réparties entre plusieurs threads ; chacun possède son
+ *  propre gestionnaire de podiums (sans aucun observateur) et sa propre
+ *  stratégie, et réserve les parties à jouer par lots de BATCH pour limiter
+ *  les accès au compteur partagé.
+ * Les parties sont numérotées de 0 à gamesNb - 1 ; la graine de la partie i
+ *  est gameSeed(getSeed(), i), le mélange par une fonction de hachage du
+ *  compteur i et de la graine de la simulation. Les graines d'un lot sont
+ *  calculées d'un coup, puis chaque partie est réinitialisée avec la sienne
+ *  (reinit(seed)). Les parties jouées ne dépendent donc ni du nombre de
+ *  threads ni de la répartition des lots : une simulation se reproduit à
+ *  partir de sa graine, rappelée dans son bilan, pourvu que la stratégie ne
+ *  dépende que de la partie (voir RandomStrategy).
+ * Une partie s'arrête dès qu'elle est résolue ou lorsque maxShots ordres ont
+ *  été donnés.
+ * @inv <pre>
+ *     getThreadsNb() >= 1
+ *     getMaxShots() >= 1 </pre>
+ */
+public class Simulator<E> {
+
+    // ATTRIBUTS
+
+    private static final int BATCH = 256;
+
+    // l'incrément de SplitMix64 (partie fractionnaire du nombre d'or)
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final Set<E> elements;
+    private final Strategy.Factory<E> factory;
+    private final int maxShots;
+    private final int threadsNb;
+    private final long seed;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un simulateur dont les parties sont tirées à partir de seed.
+     * @pre <pre>
+     *     elements != null && elements.size() >= 2
+     *     factory != null
+     *     maxShots >= 1
+     *     threadsNb >= 1 </pre>
+     */
+    public Simulator(Set<E> elements, Strategy.Factory<E> factory,
+            int maxShots, int threadsNb, long seed) {
+        Contract.checkCondition(elements != null && elements.size() >= 2);
+        Contract.checkCondition(factory != null);
+        Contract.checkCondition(maxShots >= 1);
+        Contract.checkCondition(threadsNb >= 1);
+
+        this.elements = new HashSet<E>(elements);
+        this.factory = factory;
+        this.maxShots = maxShots;
+        this.threadsNb = threadsNb;
+        this.seed = seed;
+    }
+
+    /**
+     * Un simulateur dont la graine est tirée au hasard.
+     */
+    public Simulator(Set<E> elements, Strategy.Factory<E> factory,
+            int maxShots, int threadsNb) {
+        this(elements, factory, maxShots, threadsNb, new Random().nextLong());
+    }
+
+    /**
+     * Un simulateur qui utilise tous les processeurs disponibles.
+     */
+    public Simulator(Set<E> elements, Strategy.Factory<E> factory,
+            int maxShots) {
+        this(elements, factory, maxShots,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    // REQUETES
+
+    public int getMaxShots() {
+        return maxShots;
+    }
+
+    public int getThreadsNb() {
+        return threadsNb;
+    }
+
+    /**
+     * La graine de la simulation, dont sont tirées celles des parties.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * La graine de la partie numéro i d'une simulation de graine seed : le
+     *  mélange de seed + (i + 1) * GAMMA par la fonction finale de SplitMix64.
+     */
+    public static long gameSeed(long seed, long i) {
+        long z = seed + (i + 1) * GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // COMMANDES
+
+    /**
+     * Joue gamesNb parties et en retourne le bilan.
+     * @pre <pre>
+     *     gamesNb >= 0 </pre>
+     */
+    public SimulationReport run(long gamesNb) throws InterruptedException {
+        Contract.checkCondition(gamesNb >= 0);
+
+        final long total = gamesNb;
+        final AtomicLong next = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threadsNb);
+        List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < threadsNb; i++) {
+                results.add(pool.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        return play(next, total);
+                    }
+                }));
+            }
+            long games = 0;
+            long solved = 0;
+            long shots = 0;
+            for (Future<long[]> f : results) {
+                long[] r = f.get();
+                games += r[0];
+                solved += r[1];
+                shots += r[2];
+            }
+            return new SimulationReport(seed, games, solved, shots,
+                    System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // OUTILS
+
+    /**
+     * Joue des parties tant qu'il en reste à réserver : next est le numéro de
+     *  la prochaine partie à réserver, total le nombre de parties.
+     * Retourne { parties jouées, parties résolues, ordres des parties
+     *  résolues }.
+     */
+    private long[] play(AtomicLong next, long total) {
+        PodiumManager<E> manager = new StdPodiumManager<E>(elements);
+        Strategy<E> strategy = factory.create();
+        long[] seeds = new long[BATCH];
+        long games = 0;
+        long solved = 0;
+        long shots = 0;
+        long first = next.getAndAdd(BATCH);
+        while (first < total) {
+            int batch = (int) Math.min(BATCH, total - first);
+            for (int i = 0; i < batch; i++) {
+                seeds[i] = gameSeed(seed, first + i);
+            }
+            for (int i = 0; i < batch; i++) {
+                manager.reinit(seeds[i]);
+                strategy.newGame(manager);
+                boolean finished = manager.isFinished();
+                try {
+                    while (!finished && manager.getShotsNb() < maxShots) {
+                        manager.executeOrder(strategy.nextOrder(manager));
+                        finished = manager.isFinished();
+                    }
+                } catch (PropertyVetoException e) {
+                    // aucun observateur : ne peut pas arriver
+                    throw new AssertionError(e);
+                }
+                games += 1;
+                if (finished) {
+                    solved += 1;
+                    shots += manager.getShotsNb();
+                }
+            }
+            first = next.getAndAdd(BATCH);
+        }
+        return new long[] {games, solved, shots};
+    }
+}
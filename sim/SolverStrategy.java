@@ -0,0 +1,48 @@
+package crazy.sim;
+
+import java.util.List;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+import crazy.solver.Solver;
+import util.Contract;
+
+/**
+ * Stratégie optimale : la solution est calculée par un solveur en début de
+ *  partie, puis rejouée ordre par ordre.
+ */
+public class SolverStrategy<E> implements Strategy<E> {
+
+    // ATTRIBUTS
+
+    private final Solver solver;
+    private List<Order> solution;
+    private int next;
+
+    // CONSTRUCTEURS
+
+    /**
+     * @pre <pre>
+     *     solver != null </pre>
+     */
+    public SolverStrategy(Solver solver) {
+        Contract.checkCondition(solver != null);
+
+        this.solver = solver;
+    }
+
+    // COMMANDES
+
+    @Override
+    public void newGame(PodiumManager<E> manager) {
+        solution = solver.solve(manager.getModels());
+        next = 0;
+    }
+
+    @Override
+    public Order nextOrder(PodiumManager<E> manager) {
+        Contract.checkCondition(solution != null && next < solution.size());
+
+        return solution.get(next++);
+    }
+}
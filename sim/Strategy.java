@@ -0,0 +1,45 @@
+package crazy.sim;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+
+/**
+ * Un joueur automatique : il choisit les ordres à donner à un gestionnaire de
+ *  podiums au cours d'une partie.
+ * Une stratégie n'est utilisée que par un seul thread à la fois et peut donc
+ *  conserver un état entre deux appels.
+ */
+public interface Strategy<E> {
+
+    // COMMANDES
+
+    /**
+     * Signale le début d'une nouvelle partie sur manager.
+     * @pre <pre>
+     *     manager != null </pre>
+     */
+    void newGame(PodiumManager<E> manager);
+
+    /**
+     * Le prochain ordre à donner à manager.
+     * @pre <pre>
+     *     manager != null
+     *     !manager.isFinished() </pre>
+     * @post <pre>
+     *     result != null </pre>
+     */
+    Order nextOrder(PodiumManager<E> manager);
+
+    /**
+     * Fabrique de stratégies : chaque thread de simulation possède la sienne.
+     */
+    interface Factory<E> {
+
+        /**
+         * Une nouvelle stratégie.
+         * @post <pre>
+         *     result != null </pre>
+         */
+        Strategy<E> create();
+    }
+}
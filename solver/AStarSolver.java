@@ -0,0 +1,410 @@
+package crazy.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import crazy.model.Order;
+import util.Contract;
+
+/**
+ * Solveur par recherche A* dans l'espace des configurations compactes.
+ * L'estimation de la distance restante découle de la sémantique des ordres :
+ *  c'est la distance exacte dans une abstraction du jeu où l'on ne distingue
+ *  plus les éléments que par le podium qu'ils occupent dans l'objectif. Les
+ *  ordres agissent de la même façon sur ces configurations abstraites, qui
+ *  sont au plus (n + 1) * 2^n ; leurs distances à l'objectif abstrait sont
+ *  calculées une fois pour toutes, pour chaque n et chaque taille k du podium
+ *  gauche de l'objectif, par un parcours en largeur.
+ * Cette distance tient compte des éléments à déplacer d'un podium à l'autre
+ *  (au moins a + b ordres sans SO, au moins max(a, b) avec, où a et b sont
+ *  les nombres d'éléments du mauvais côté) mais aussi des rotations (MA, NI)
+ *  nécessaires pour les amener au sommet.
+ * Lorsque tous les éléments sont du bon côté, l'estimation est le nombre de
+ *  podiums qui diffèrent de leur objectif. Elle reste un minorant : LO, KI
+ *  et SO mettent chacun un élément du mauvais côté et ne peuvent donc pas
+ *  achever la partie, MA et NI ne modifient qu'un podium ; si les deux
+ *  podiums diffèrent de leur objectif, il faut donc au moins deux ordres.
+ *  Elle ne prétend pas que chaque podium demande son propre MA ou NI, ce qui
+ *  est faux avec SO (gauche [a, b], droite [c], objectif gauche [b, a] :
+ *  LO, SO, KI).
+ * Cette estimation ne surestime jamais la distance et varie d'au plus 1 d'une
+ *  configuration à sa voisine : la première configuration développée pour
+ *  une valeur de f = g + h donnée l'est donc par un chemin minimal, et il
+ *  n'est jamais nécessaire de la développer à nouveau.
+ * Les configurations à développer sont rangées par valeur de f dans des piles
+ *  (les valeurs de f sont de petits entiers), ce qui favorise, à f égal, les
+ *  configurations les plus profondes.
+ * Un solveur peut aussi s'appuyer sur une table de distances
+ *  (PatternDatabase) : pour les configurations dont la distance y est
+ *  exacte, la recherche suit directement un chemin minimal ; pour les autres,
+ *  le minorant de la table et l'abstraction se complètent (le maximum de
+ *  deux estimations qui varient d'au plus 1 varie encore d'au plus 1).
+ * Avec une table de transposition, chaque configuration développée dont le
+ *  chemin vers l'objectif figure dans la table fournit une solution : la
+ *  recherche s'arrête dès que plus aucune configuration en attente ne
+ *  promet mieux, et n'engendre pas les configurations dont le minorant
+ *  mémorisé exclut qu'elles fassent mieux. L'estimation, elle, n'emprunte
+ *  rien à la table, dont les valeurs rompraient sa régularité.
+ */
+public class AStarSolver extends AbstractSolver {
+
+    // ATTRIBUTS
+
+    private static final int INITIAL_BUCKET = 1 << 6;
+    private static final byte ROOT = (byte) Order.values().length;
+    private static final int BITS = 4;
+
+    /**
+     * Le nombre maximal de configurations d'une abstraction (voir
+     *  Abstraction).
+     */
+    public static final int ABSTRACT_STATES = 1 << 20;
+
+    // abstractions, indexées par n * (MAX_ELEMENTS + 1) + k
+    private final Abstraction[] abstractions;
+    // null si le solveur n'utilise pas de table de distances
+    private final PatternDatabase database;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un solveur qui autorise SO si et seulement si soAllowed.
+     */
+    public AStarSolver(boolean soAllowed) {
+        super(soAllowed);
+        int m = PackedState.MAX_ELEMENTS + 1;
+        abstractions = new Abstraction[m * m];
+        database = null;
+    }
+
+    /**
+     * Un solveur qui autorise SO si et seulement si db le fait, et qui
+     *  s'appuie sur db pour les configurations sur db.getElementsNb()
+     *  éléments.
+     * @pre <pre>
+     *     db != null </pre>
+     */
+    public AStarSolver(PatternDatabase db) {
+        super(db.isSoAllowed());
+        int m = PackedState.MAX_ELEMENTS + 1;
+        abstractions = new Abstraction[m * m];
+        database = db;
+    }
+
+    /**
+     * Un solveur qui autorise tous les ordres.
+     */
+    public AStarSolver() {
+        this(true);
+    }
+
+    // REQUETES
+
+    @Override
+    protected List<Order> search(long start, long goal, int n) {
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+
+        if (start == goal) {
+            return new ArrayList<Order>(0);
+        }
+        Order[] orders = orders();
+        Heuristic h = new Heuristic(goal, n,
+                abstraction(n, PackedState.split(goal)),
+                database != null && database.getElementsNb() == n
+                        ? database : null);
+        StateMap closed = new StateMap();
+        Buckets open = new Buckets();
+        open.push(h.estimate(start), start, ROOT);
+        TranspositionTable table = getTable();
+        int k = PackedState.split(goal);
+        // la plus courte solution connue qui quitte la recherche par un chemin
+        //  de la table : sa longueur, sa configuration de sortie et sa fin
+        int bound = Integer.MAX_VALUE;
+        long exit = 0;
+        List<Order> tail = null;
+        int popped = 0;
+        try {
+            while (!open.isEmpty() && open.min() < bound) {
+                if (++popped % CHECK_PERIOD == 0) {
+                    checkInterrupted();
+                }
+                int f = open.min();
+                byte from = open.topOrder();
+                long s = open.pop();
+                if (!closed.putIfAbsent(s, from)) {
+                    continue;
+                }
+                if (s == goal) {
+                    return pathTo(closed, start, s, n);
+                }
+                int g = f - h.estimate(s);
+                if (table != null) {
+                    List<Order> rest = cachedPath(table, h.relabel(s), n, k);
+                    if (rest != null && g + rest.size() < bound) {
+                        bound = g + rest.size();
+                        exit = s;
+                        tail = rest;
+                    }
+                }
+                for (Order o : orders) {
+                    long t = PackedState.apply(s, o, n);
+                    if (t != s && !closed.contains(t)) {
+                        int ft = g + 1 + h.estimate(t);
+                        // t ne mène à rien de plus court que la solution connue
+                        if (ft >= bound || bound != Integer.MAX_VALUE
+                                && g + 1 + table.getLowerBound(
+                                        TranspositionTable.relativeKey(
+                                                h.relabel(t), n, k),
+                                        isSoAllowed()) >= bound) {
+                            continue;
+                        }
+                        open.push(ft, t, (byte) o.ordinal());
+                    }
+                }
+            }
+        } catch (CancellationException e) {
+            // toute solution passe par une configuration en attente
+            rememberLowerBound(start, goal, n,
+                    open.isEmpty() ? bound : Math.min(open.min(), bound));
+            throw e;
+        }
+        if (tail != null) {
+            List<Order> path = pathTo(closed, start, exit, n);
+            path.addAll(tail);
+            return path;
+        }
+        return null;
+    }
+
+    // OUTILS
+
+    /**
+     * L'abstraction associée aux objectifs sur n éléments dont k à gauche,
+     *  construite au besoin.
+     */
+    private synchronized Abstraction abstraction(int n, int k) {
+        int key = n * (PackedState.MAX_ELEMENTS + 1) + k;
+        if (abstractions[key] == null) {
+            abstractions[key] = new Abstraction(n, k, orders());
+        }
+        return abstractions[key];
+    }
+
+    /**
+     * Une abstraction du jeu : les positions de l'objectif (au sens de
+     *  PackedState) sont réparties en groupes consécutifs de g positions au
+     *  plus, sans mélanger podium gauche et podium droit, et les éléments ne
+     *  sont plus distingués que par le groupe de leur position dans
+     *  l'objectif.
+     * g est le plus petit entier pour lequel l'abstraction compte au plus
+     *  ABSTRACT_STATES configurations (g = 1 redonne le jeu lui-même pour les
+     *  petites valeurs de n).
+     * Une configuration abstraite est un long au format de PackedState dont
+     *  les quartets sont des numéros de groupes, à partir de 1.
+     */
+    private static final class Abstraction {
+        private final int n;
+        // le groupe de chaque position de l'objectif
+        private final int[] groups;
+        // les distances des configurations abstraites à l'objectif abstrait
+        private final StateMap distances;
+
+        Abstraction(int n, int k, Order[] orders) {
+            this.n = n;
+            int g = 1;
+            while (size(n, k, g) > ABSTRACT_STATES) {
+                g += 1;
+            }
+            groups = new int[n];
+            int leftGroups = (k + g - 1) / g;
+            for (int p = 0; p < n; p++) {
+                groups[p] = 1 + (p < k ? p / g : leftGroups + (p - k) / g);
+            }
+            long goal = 0;
+            for (int p = 0; p < n; p++) {
+                goal |= (long) groups[p] << (BITS * p);
+            }
+            goal = PackedState.withSplit(goal, k);
+
+            distances = new StateMap();
+            distances.putIfAbsent(goal, (byte) 0);
+            long[] layer = new long[] {goal};
+            long[] next = new long[INITIAL_BUCKET];
+            int size = 1;
+            for (byte d = 1; size > 0; d++) {
+                int count = 0;
+                for (int i = 0; i < size; i++) {
+                    for (Order o : orders) {
+                        long t = PackedState.unapply(layer[i], o, n);
+                        if (distances.putIfAbsent(t, d)) {
+                            if (count == next.length) {
+                                next = Arrays.copyOf(next, 2 * count);
+                            }
+                            next[count++] = t;
+                        }
+                    }
+                }
+                long[] tmp = layer;
+                layer = next;
+                next = tmp;
+                size = count;
+            }
+        }
+
+        /**
+         * Le nombre de configurations abstraites pour des groupes de g
+         *  positions au plus : (n + 1) * n! / produit des (taille d'un
+         *  groupe)!.
+         */
+        private static double size(int n, int k, int g) {
+            double r = n + 1;
+            for (int i = 2; i <= n; i++) {
+                r *= i;
+            }
+            for (int len : new int[] {k, n - k}) {
+                for (int p = 0; p < len; p += g) {
+                    for (int i = 2; i <= Math.min(g, len - p); i++) {
+                        r /= i;
+                    }
+                }
+            }
+            return r;
+        }
+    }
+
+    /**
+     * L'estimation de la distance à une configuration objectif.
+     */
+    private static final class Heuristic {
+        private final long goal;
+        private final int n;
+        private final int k;
+        private final StateMap distances;
+        private final PatternDatabase database;
+        // le groupe de chaque élément, et sa position dans l'objectif
+        private final long[] groups;
+        private final long[] positions;
+        // les quartets du podium gauche, puis du podium droit, de l'objectif
+        private final long leftBits;
+        private final long rightBits;
+
+        Heuristic(long goal, int n, Abstraction a, PatternDatabase db) {
+            this.goal = goal;
+            this.n = n;
+            k = PackedState.split(goal);
+            distances = a.distances;
+            database = db;
+            groups = new long[n];
+            positions = new long[n];
+            for (int p = 0; p < n; p++) {
+                groups[PackedState.nibble(goal, p)] = a.groups[p];
+                positions[PackedState.nibble(goal, p)] = p;
+            }
+            leftBits = (1L << (BITS * k)) - 1;
+            rightBits = ((1L << (BITS * n)) - 1) & ~leftBits;
+        }
+
+        /**
+         * La configuration s rapportée à l'objectif (voir
+         *  PackedState.relabel).
+         */
+        long relabel(long s) {
+            long t = 0;
+            for (int i = 0; i < n; i++) {
+                t |= positions[PackedState.nibble(s, i)] << (BITS * i);
+            }
+            return PackedState.withSplit(t, PackedState.split(s));
+        }
+
+        int estimate(long s) {
+            if (database != null) {
+                long t = relabel(s);
+                int d = database.distance(t, k);
+                if (d != PatternDatabase.UNKNOWN) {
+                    return d;
+                }
+                return Math.max(database.lowerBound(t, k), abstractEstimate(s));
+            }
+            return abstractEstimate(s);
+        }
+
+        private int abstractEstimate(long s) {
+            long t = 0;
+            for (int i = 0; i < n; i++) {
+                t |= groups[PackedState.nibble(s, i)] << (BITS * i);
+            }
+            int d = distances.get(PackedState.withSplit(t,
+                    PackedState.split(s)));
+            if (d == 0) {
+                // chaque élément est du bon côté
+                long x = s ^ goal;
+                return ((x & leftBits) != 0 ? 1 : 0)
+                        + ((x & rightBits) != 0 ? 1 : 0);
+            }
+            return d;
+        }
+    }
+
+    /**
+     * Les configurations à développer, rangées dans une pile par valeur de f,
+     *  chacune avec l'ordinal de l'ordre qui l'a produite.
+     * Les valeurs de f empilées ne sont jamais inférieures à la plus petite
+     *  valeur de f non vide, qui ne fait donc que croître.
+     */
+    private static final class Buckets {
+        private long[][] states = new long[INITIAL_BUCKET][];
+        private byte[][] orders = new byte[INITIAL_BUCKET][];
+        private int[] sizes = new int[INITIAL_BUCKET];
+        private int min = Integer.MAX_VALUE;
+        private int count;
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        /**
+         * La plus petite valeur de f.
+         */
+        int min() {
+            while (sizes[min] == 0) {
+                min += 1;
+            }
+            return min;
+        }
+
+        byte topOrder() {
+            int f = min();
+            return orders[f][sizes[f] - 1];
+        }
+
+        long pop() {
+            int f = min();
+            sizes[f] -= 1;
+            count -= 1;
+            return states[f][sizes[f]];
+        }
+
+        void push(int f, long s, byte o) {
+            if (f >= sizes.length) {
+                int len = Math.max(f + 1, 2 * sizes.length);
+                states = Arrays.copyOf(states, len);
+                orders = Arrays.copyOf(orders, len);
+                sizes = Arrays.copyOf(sizes, len);
+            }
+            if (states[f] == null) {
+                states[f] = new long[INITIAL_BUCKET];
+                orders[f] = new byte[INITIAL_BUCKET];
+            } else if (sizes[f] == states[f].length) {
+                states[f] = Arrays.copyOf(states[f], 2 * sizes[f]);
+                orders[f] = Arrays.copyOf(orders[f], 2 * sizes[f]);
+            }
+            states[f][sizes[f]] = s;
+            orders[f][sizes[f]] = o;
+            sizes[f] += 1;
+            count += 1;
+            min = Math.min(min, f);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package crazy.solver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import crazy.model.Order;
+import crazy.model.PodiumModel;
+import crazy.model.PodiumManager.Rank;
+import util.Contract;
+
+/**
+ * Base des solveurs : gère les ordres autorisés et la traduction des modèles
+ *  de podiums en configurations compactes.
+ * Les indices des éléments sont attribués dans l'ordre de la configuration
+ *  objectif (podium gauche de la base vers le sommet, puis podium droit du
+ *  sommet vers la base), éventuellement après échange des deux podiums (voir
+ *  CanonicalForm) : l'objectif est donc toujours PackedState.identity(n, k),
+ *  avec k <= n - k.
+ * Un solveur peut partager avec d'autres une table de transposition (voir
+ *  TranspositionTable) : les solutions qu'il calcule y sont mémorisées, pas
+ *  à pas, et une configuration dont tout le chemin vers l'objectif y figure
+ *  encore est résolue sans recherche.
+ */
+public abstract class AbstractSolver implements Solver {
+
+    // ATTRIBUTS
+
+    /**
+     * Le nombre de configurations développées entre deux vérifications de
+     *  l'interruption du thread de recherche (voir checkInterrupted).
+     */
+    protected static final int CHECK_PERIOD = 1 << 12;
+
+    private static final Order[] ALL_ORDERS = Order.values();
+
+    private final Order[] orders;
+    private final boolean soAllowed;
+    // null si le solveur n'utilise pas de table de transposition
+    private volatile TranspositionTable table;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un solveur qui autorise SO si et seulement si soAllowed.
+     */
+    protected AbstractSolver(boolean soAllowed) {
+        List<Order> l = new ArrayList<Order>(ALL_ORDERS.length);
+        for (Order o : ALL_ORDERS) {
+            if (soAllowed || o != Order.SO) {
+                l.add(o);
+            }
+        }
+        orders = l.toArray(new Order[l.size()]);
+        this.soAllowed = soAllowed;
+    }
+
+    // REQUETES
+
+    @Override
+    public boolean isAllowed(Order o) {
+        Contract.checkCondition(o != null);
+
+        for (Order p : orders) {
+            if (p == o) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * La table de transposition utilisée par ce solveur, ou null.
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    @Override
+    public <E> List<Order> solve(Map<Rank, PodiumModel<E>> models) {
+        Contract.checkCondition(models != null);
+        for (Rank r : Rank.values()) {
+            Contract.checkCondition(models.get(r) != null);
+        }
+
+        CanonicalForm<E> c = CanonicalForm.of(models);
+        List<Order> path = solve(c.getState(), c.getGoal(),
+                c.getElementsNb());
+        return path == null ? null : c.toOriginal(path);
+    }
+
+    /**
+     * Le chemin mémorisé dans la table de transposition s'il est complet,
+     *  sinon celui que calcule search, qui est alors mémorisé.
+     */
+    @Override
+    public final List<Order> solve(long start, long goal, int n) {
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+
+        TranspositionTable t = table;
+        if (t == null) {
+            return search(start, goal, n);
+        }
+        int k = PackedState.split(goal);
+        long s = PackedState.relabel(start, goal, n);
+        List<Order> path = cachedPath(t, s, n, k);
+        if (path == null) {
+            path = search(start, goal, n);
+            if (path != null) {
+                for (int i = 0; i <= path.size(); i++) {
+                    Order o = i < path.size() ? path.get(i) : null;
+                    t.putExact(TranspositionTable.relativeKey(s, n, k),
+                            soAllowed, path.size() - i, o);
+                    if (o != null) {
+                        s = PackedState.apply(s, o, n);
+                    }
+                }
+            }
+        }
+        return path;
+    }
+
+    // COMMANDES
+
+    /**
+     * Fait utiliser à ce solveur la table de transposition t, ou aucune si t
+     *  est null.
+     * Une même table peut être partagée par des solveurs de toutes sortes,
+     *  utilisés depuis des threads quelconques.
+     * @post <pre>
+     *     getTable() == t </pre>
+     */
+    public void setTable(TranspositionTable t) {
+        table = t;
+    }
+
+    // OUTILS
+
+    /**
+     * Une suite d'ordres de longueur minimale transformant la configuration
+     *  compacte start en la configuration compacte goal, sur n éléments, ou
+     *  null si goal est inaccessible (voir Solver.solve).
+     * @pre <pre>
+     *     2 <= n <= PackedState.MAX_ELEMENTS
+     *     start et goal sont des configurations sur les mêmes n indices </pre>
+     * @throws CancellationException si le thread appelant est interrompu
+     *  pendant la recherche
+     */
+    protected abstract List<Order> search(long start, long goal, int n);
+
+    /**
+     * Le chemin de s à PackedState.identity(n, k) formé par les ordres
+     *  mémorisés dans t, ou null s'il y manque une étape.
+     */
+    protected List<Order> cachedPath(TranspositionTable t, long s, int n,
+            int k) {
+        int v = t.lookup(TranspositionTable.relativeKey(s, n, k), soAllowed);
+        if (!TranspositionTable.isExact(v)) {
+            return null;
+        }
+        int d = TranspositionTable.distance(v);
+        List<Order> path = new ArrayList<Order>(d);
+        long u = s;
+        while (d > 0) {
+            Order o = TranspositionTable.nextOrder(v);
+            u = PackedState.apply(u, o, n);
+            v = t.lookup(TranspositionTable.relativeKey(u, n, k), soAllowed);
+            if (!TranspositionTable.isExact(v)
+                    || TranspositionTable.distance(v) != d - 1) {
+                return null;
+            }
+            path.add(o);
+            d -= 1;
+        }
+        return path;
+    }
+
+    /**
+     * Mémorise, si ce solveur utilise une table de transposition, que la
+     *  distance de start à goal est au moins d.
+     */
+    protected void rememberLowerBound(long start, long goal, int n, int d) {
+        TranspositionTable t = table;
+        if (t != null) {
+            t.putLowerBound(TranspositionTable.key(start, goal, n), soAllowed,
+                    d);
+        }
+    }
+
+    /**
+     * Indique si SO est autorisé.
+     */
+    protected boolean isSoAllowed() {
+        return soAllowed;
+    }
+
+    /**
+     * Les ordres autorisés, dans l'ordre de leur déclaration.
+     * Le tableau retourné ne doit pas être modifié.
+     */
+    protected Order[] orders() {
+        return orders;
+    }
+
+    /**
+     * Reconstitue le chemin de start à s à partir de visited, qui associe à
+     *  chaque configuration atteinte l'ordinal du dernier ordre appliqué pour
+     *  l'atteindre.
+     */
+    protected static List<Order> pathTo(StateMap visited, long start, long s,
+            int n) {
+        List<Order> path = new ArrayList<Order>();
+        long t = s;
+        while (t != start) {
+            Order o = ALL_ORDERS[visited.get(t)];
+            path.add(o);
+            t = PackedState.unapply(t, o, n);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Lève CancellationException si le thread courant a été interrompu.
+     * L'indicateur d'interruption n'est pas effacé.
+     */
+    protected static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("recherche interrompue");
+        }
+    }
+
+    /**
+     * L'ordre d'ordinal i.
+     */
+    protected static Order order(int i) {
+        return ALL_ORDERS[i];
+    }
+}
@@ -0,0 +1,310 @@
+package crazy.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import crazy.model.Order;
+import crazy.model.PodiumModel;
+import crazy.model.PodiumManager.Rank;
+import util.Contract;
+
+/**
+ * Solveur de lots de parties : un seul parcours en largeur, depuis
+ *  l'objectif, répond à toutes les parties qui le partagent.
+ * Une fois mises sous forme canonique (voir CanonicalForm), deux parties
+ *  sur n éléments dont les objectifs ont k et n - k éléments à gauche ont le
+ *  même objectif PackedState.identity(n, min(k, n - k)) : un lot se répartit
+ *  donc en au plus n / 2 + 1 groupes par valeur de n.
+ * Pour chaque groupe, le parcours défait les ordres depuis l'objectif et
+ *  note la distance de chaque configuration atteinte dans un tableau
+ *  d'octets indexé par rang (voir StateRanking) ; il s'arrête à la fin du
+ *  premier niveau où toutes les configurations de travail du groupe ont été
+ *  atteintes. Chaque solution est ensuite obtenue en descendant les
+ *  distances depuis sa configuration de travail.
+ * Les groupes sont traités en parallèle par un ForkJoinPool ; chacun
+ *  demande StateRanking.count(n) octets, plus 8 octets par configuration
+ *  des deux plus gros niveaux parcourus.
+ */
+public class BatchSolver extends AbstractSolver {
+
+    // ATTRIBUTS
+
+    /**
+     * Le plus grand nombre d'éléments pour lequel le tableau des distances
+     *  peut être alloué (il est indexé par des int).
+     */
+    public static final int MAX_ELEMENTS = 11;
+
+    private static final byte UNSEEN = -1;
+    private static final int INITIAL_LAYER = 1 << 6;
+
+    private final ForkJoinPool pool;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un solveur qui autorise SO si et seulement si soAllowed, et dont les
+     *  groupes sont traités par pool.
+     * @pre <pre>
+     *     pool != null </pre>
+     */
+    public BatchSolver(boolean soAllowed, ForkJoinPool pool) {
+        super(soAllowed);
+        Contract.checkCondition(pool != null);
+
+        this.pool = pool;
+    }
+
+    /**
+     * Un solveur qui autorise SO si et seulement si soAllowed, et dont les
+     *  groupes sont traités par ForkJoinPool.commonPool().
+     */
+    public BatchSolver(boolean soAllowed) {
+        this(soAllowed, ForkJoinPool.commonPool());
+    }
+
+    // REQUETES
+
+    /**
+     * @pre <pre>
+     *     2 <= n <= MAX_ELEMENTS
+     *     start et goal sont des configurations sur les mêmes n indices </pre>
+     */
+    @Override
+    protected List<Order> search(long start, long goal, int n) {
+        Contract.checkCondition(2 <= n && n <= MAX_ELEMENTS);
+
+        return solveAll(new long[] {start}, goal, n).get(0);
+    }
+
+    /**
+     * Pour chaque configuration compacte de starts, une suite d'ordres de
+     *  longueur minimale qui la transforme en goal, ou null si goal est
+     *  inaccessible, au moyen d'un seul parcours depuis goal.
+     * @pre <pre>
+     *     starts != null
+     *     2 <= n <= MAX_ELEMENTS
+     *     goal et les configurations de starts sont des configurations sur
+     *       les mêmes n indices </pre>
+     * @post <pre>
+     *     result.size() == starts.length </pre>
+     * @throws java.util.concurrent.CancellationException si le thread
+     *  appelant est interrompu pendant la recherche
+     */
+    public List<List<Order>> solveAll(long[] starts, long goal, int n) {
+        Contract.checkCondition(starts != null);
+        Contract.checkCondition(2 <= n && n <= MAX_ELEMENTS);
+
+        return new Group(goal, n, starts).solve(orders());
+    }
+
+    /**
+     * Pour chaque partie de puzzles, une suite d'ordres de longueur minimale
+     *  qui transforme sa configuration de travail en sa configuration
+     *  objectif, ou null si cette dernière est inaccessible.
+     * Les parties sont groupées par objectif canonique, et les groupes sont
+     *  traités en parallèle.
+     * @pre <pre>
+     *     puzzles != null
+     *     forall models in puzzles :
+     *         forall Rank r : models.get(r) != null
+     *         les deux podiums de travail et les deux podiums objectif
+     *           contiennent les mêmes n éléments distincts,
+     *           2 <= n <= MAX_ELEMENTS </pre>
+     * @post <pre>
+     *     result.size() == puzzles.size() </pre>
+     * @throws java.util.concurrent.CancellationException si le thread
+     *  appelant est interrompu pendant la recherche
+     */
+    public <E> List<List<Order>> solveAll(
+            List<Map<Rank, PodiumModel<E>>> puzzles) {
+        Contract.checkCondition(puzzles != null);
+
+        List<CanonicalForm<E>> forms =
+                new ArrayList<CanonicalForm<E>>(puzzles.size());
+        // les indices des parties de chaque groupe, par objectif canonique
+        Map<Long, List<Integer>> groups = new LinkedHashMap<Long, List<Integer>>();
+        for (Map<Rank, PodiumModel<E>> models : puzzles) {
+            Contract.checkCondition(models != null);
+            CanonicalForm<E> c = CanonicalForm.of(models);
+            Contract.checkCondition(c.getElementsNb() <= MAX_ELEMENTS);
+            List<Integer> g = groups.get(c.getGoal());
+            if (g == null) {
+                g = new ArrayList<Integer>();
+                groups.put(c.getGoal(), g);
+            }
+            g.add(forms.size());
+            forms.add(c);
+        }
+
+        List<Callable<List<List<Order>>>> tasks =
+                new ArrayList<Callable<List<List<Order>>>>(groups.size());
+        for (Map.Entry<Long, List<Integer>> e : groups.entrySet()) {
+            List<Integer> indices = e.getValue();
+            long[] starts = new long[indices.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = forms.get(indices.get(i)).getState();
+            }
+            final Group g = new Group(e.getKey(),
+                    forms.get(indices.get(0)).getElementsNb(), starts);
+            tasks.add(new Callable<List<List<Order>>>() {
+                @Override
+                public List<List<Order>> call() {
+                    return g.solve(orders());
+                }
+            });
+        }
+
+        List<List<Order>> result = new ArrayList<List<Order>>(puzzles.size());
+        for (int i = 0; i < puzzles.size(); i++) {
+            result.add(null);
+        }
+        List<Future<List<List<Order>>>> futures = pool.invokeAll(tasks);
+        int t = 0;
+        for (List<Integer> indices : groups.values()) {
+            List<List<Order>> paths = get(futures.get(t));
+            for (int i = 0; i < indices.size(); i++) {
+                List<Order> p = paths.get(i);
+                int j = indices.get(i);
+                result.set(j, p == null ? null : forms.get(j).toOriginal(p));
+            }
+            t += 1;
+        }
+        return result;
+    }
+
+    // OUTILS
+
+    /**
+     * Le résultat de f, les exceptions de la tâche étant propagées telles
+     *  quelles ; une interruption de l'attente lève CancellationException.
+     */
+    private static <T> T get(Future<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("recherche interrompue");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Les parties d'un même objectif.
+     */
+    private static final class Group {
+        private final long goal;
+        private final int n;
+        private final long[] starts;
+
+        Group(long goal, int n, long[] starts) {
+            this.goal = goal;
+            this.n = n;
+            this.starts = starts;
+        }
+
+        List<List<Order>> solve(Order[] orders) {
+            byte[] distances = search(orders);
+            List<List<Order>> paths = new ArrayList<List<Order>>(starts.length);
+            for (long s : starts) {
+                paths.add(descend(s, distances, orders));
+            }
+            return paths;
+        }
+
+        /**
+         * Les distances à goal, indexées par rang, de toutes les
+         *  configurations jusqu'à la plus éloignée de celles de starts.
+         */
+        private byte[] search(Order[] orders) {
+            byte[] distances = new byte[(int) StateRanking.count(n)];
+            Arrays.fill(distances, UNSEEN);
+            distances[(int) StateRanking.rank(goal, n)] = 0;
+            // les configurations de starts non encore atteintes
+            long[] pending = new long[starts.length];
+            int pendingNb = 0;
+            for (long s : starts) {
+                if (s != goal) {
+                    pending[pendingNb++] = StateRanking.rank(s, n);
+                }
+            }
+            long[] layer = new long[INITIAL_LAYER];
+            long[] next = new long[INITIAL_LAYER];
+            layer[0] = goal;
+            int size = 1;
+            for (byte d = 1; pendingNb > 0 && size > 0; d++) {
+                int count = 0;
+                for (int i = 0; i < size; i++) {
+                    if (i % CHECK_PERIOD == 0) {
+                        checkInterrupted();
+                    }
+                    long s = layer[i];
+                    for (Order o : orders) {
+                        long t = PackedState.unapply(s, o, n);
+                        int r = (int) StateRanking.rank(t, n);
+                        if (distances[r] == UNSEEN) {
+                            distances[r] = d;
+                            if (count == next.length) {
+                                next = Arrays.copyOf(next, 2 * count);
+                            }
+                            next[count++] = t;
+                        }
+                    }
+                }
+                long[] tmp = layer;
+                layer = next;
+                next = tmp;
+                size = count;
+                int still = 0;
+                for (int i = 0; i < pendingNb; i++) {
+                    if (distances[(int) pending[i]] == UNSEEN) {
+                        pending[still++] = pending[i];
+                    }
+                }
+                pendingNb = still;
+            }
+            return distances;
+        }
+
+        /**
+         * Le chemin de s à goal qui suit les distances décroissantes, ou null
+         *  si s n'a pas été atteinte.
+         */
+        private List<Order> descend(long s, byte[] distances, Order[] orders) {
+            int d = distances[(int) StateRanking.rank(s, n)];
+            if (d == UNSEEN) {
+                return null;
+            }
+            List<Order> path = new ArrayList<Order>(d);
+            long t = s;
+            while (d > 0) {
+                for (Order o : orders) {
+                    long u = PackedState.apply(t, o, n);
+                    if (distances[(int) StateRanking.rank(u, n)] == d - 1) {
+                        path.add(o);
+                        t = u;
+                        break;
+                    }
+                }
+                d -= 1;
+            }
+            return path;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package crazy.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import crazy.model.Order;
+import util.Contract;
+
+/**
+ * Solveur par parcours en largeur de l'espace des configurations compactes.
+ * Le parcours progresse par niveaux complets, alternativement depuis la
+ *  configuration de travail (en appliquant les ordres) et depuis l'objectif
+ *  (en les défaisant), en développant toujours la frontière la plus petite.
+ * Chaque configuration atteinte est mémorisée avec l'ordre qui la relie à
+ *  son prédécesseur ; le chemin est reconstitué à partir de la configuration
+ *  commune aux deux parcours qui minimise la longueur totale.
+ * Pour 10 éléments, l'espace compte 11 * 10! configurations et un diamètre
+ *  proche de 20 : un parcours depuis un seul côté en visiterait la plus
+ *  grande partie, alors que chaque côté s'arrête ici vers la profondeur 10.
+ */
+public class BfsSolver extends AbstractSolver {
+
+    // ATTRIBUTS
+
+    private static final int INITIAL_LAYER = 1 << 6;
+    private static final byte ROOT = (byte) Order.values().length;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un solveur qui autorise SO si et seulement si soAllowed.
+     */
+    public BfsSolver(boolean soAllowed) {
+        super(soAllowed);
+    }
+
+    /**
+     * Un solveur qui autorise tous les ordres.
+     */
+    public BfsSolver() {
+        this(true);
+    }
+
+    // REQUETES
+
+    @Override
+    protected List<Order> search(long start, long goal, int n) {
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+
+        if (start == goal) {
+            return new ArrayList<Order>(0);
+        }
+        Side fwd = new Side(start, true);
+        Side bwd = new Side(goal, false);
+        long meet = 0;
+        try {
+            while (meet == 0 && fwd.size > 0 && bwd.size > 0) {
+                if (fwd.size <= bwd.size) {
+                    meet = expand(fwd, bwd, n);
+                } else {
+                    meet = expand(bwd, fwd, n);
+                }
+            }
+        } catch (CancellationException e) {
+            // les niveaux terminés ne se sont pas rencontrés
+            rememberLowerBound(start, goal, n, fwd.depth + bwd.depth + 1);
+            throw e;
+        }
+        if (meet == 0) {
+            return null;
+        }
+        List<Order> path = pathTo(fwd.visited, start, meet, n);
+        long s = meet;
+        while (s != goal) {
+            Order o = order(bwd.visited.get(s));
+            path.add(o);
+            s = PackedState.apply(s, o, n);
+        }
+        return path;
+    }
+
+    // OUTILS
+
+    /**
+     * Développe d'un niveau complet la frontière de side, en cherchant les
+     *  configurations déjà atteintes par other.
+     * Retourne celle qui minimise la distance restante dans other, ou 0 si
+     *  les deux parcours ne se sont pas rencontrés.
+     */
+    private long expand(Side side, Side other, int n) {
+        Order[] orders = orders();
+        long best = 0;
+        int bestDist = Integer.MAX_VALUE;
+        long[] next = side.next;
+        int count = 0;
+        for (int i = 0; i < side.size; i++) {
+            if (i % CHECK_PERIOD == 0) {
+                checkInterrupted();
+            }
+            long s = side.layer[i];
+            for (Order o : orders) {
+                long t = side.forward
+                        ? PackedState.apply(s, o, n)
+                        : PackedState.unapply(s, o, n);
+                if (t != s && side.visited.putIfAbsent(t, (byte) o.ordinal())) {
+                    if (other.visited.contains(t)) {
+                        int d = other.distance(t, n);
+                        if (d < bestDist) {
+                            best = t;
+                            bestDist = d;
+                        }
+                    }
+                    if (count == next.length) {
+                        next = Arrays.copyOf(next, 2 * count);
+                    }
+                    next[count++] = t;
+                }
+            }
+        }
+        side.next = side.layer;
+        side.layer = next;
+        side.size = count;
+        side.depth += 1;
+        return best;
+    }
+
+    /**
+     * L'un des deux parcours : les configurations atteintes et la frontière
+     *  courante.
+     */
+    private static final class Side {
+        private final long root;
+        private final boolean forward;
+        private final StateMap visited;
+        private long[] layer;
+        private long[] next;
+        private int size;
+        // le nombre de niveaux terminés
+        private int depth;
+
+        Side(long root, boolean forward) {
+            this.root = root;
+            this.forward = forward;
+            visited = new StateMap();
+            visited.putIfAbsent(root, ROOT);
+            layer = new long[INITIAL_LAYER];
+            next = new long[INITIAL_LAYER];
+            layer[0] = root;
+            size = 1;
+        }
+
+        /**
+         * La distance entre s et la racine de ce parcours.
+         */
+        int distance(long s, int n) {
+            int d = 0;
+            long t = s;
+            while (t != root) {
+                Order o = order(visited.get(t));
+                t = forward
+                        ? PackedState.unapply(t, o, n)
+                        : PackedState.apply(t, o, n);
+                d += 1;
+            }
+            return d;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package crazy.solver;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import crazy.model.Order;
+import crazy.model.PodiumManager;
+import crazy.model.PodiumModel;
+import crazy.model.PodiumManager.Rank;
+import util.Contract;
+
+/**
+ * Forme canonique d'une partie : la configuration de travail, une fois les
+ *  éléments renommés pour que l'objectif devienne PackedState.identity(n, k).
+ * Deux symétries du jeu sont exploitées :
+ * <ul>
+ *   <li> renommer les éléments ne change rien aux ordres qui mènent de la
+ *        configuration de travail à l'objectif : seuls comptent n, k et la
+ *        configuration de travail renommée ;</li>
+ *   <li> échanger les deux podiums (miroir) échange LO et KI, MA et NI, et
+ *        laisse SO inchangé : on se ramène ainsi à k <= n - k, et, pour
+ *        k == n - k, à la plus petite des deux configurations.</li>
+ * </ul>
+ * Les parties sur n éléments se répartissent ainsi entre au plus
+ *  (n / 2 + 1) * (n + 1)! formes canoniques, au lieu de (n + 1)!² : toutes
+ *  les parties de même forme canonique partagent leurs solutions, aux
+ *  échanges près (voir toOriginal).
+ * @inv <pre>
+ *     2 <= getElementsNb() <= PackedState.MAX_ELEMENTS
+ *     0 <= getGoalSplit() <= getElementsNb() / 2
+ *     getGoal() == PackedState.identity(getElementsNb(), getGoalSplit())
+ *     forall 0 <= i < getElementsNb() : getElement(i) != null </pre>
+ */
+public final class CanonicalForm<E> {
+
+    // ATTRIBUTS
+
+    private final long state;
+    private final int n;
+    private final int k;
+    private final boolean mirrored;
+    // l'élément associé à chaque indice
+    private final List<E> elements;
+
+    // CONSTRUCTEURS
+
+    private CanonicalForm(long state, int n, int k, boolean mirrored,
+            List<E> elements) {
+        this.state = state;
+        this.n = n;
+        this.k = k;
+        this.mirrored = mirrored;
+        this.elements = elements;
+    }
+
+    /**
+     * La forme canonique de la partie en cours de m.
+     * @pre <pre>
+     *     m != null
+     *     2 <= nombre d'éléments de m <= PackedState.MAX_ELEMENTS </pre>
+     */
+    public static <E> CanonicalForm<E> of(PodiumManager<E> m) {
+        Contract.checkCondition(m != null);
+
+        return of(m.getModels());
+    }
+
+    /**
+     * La forme canonique des podiums de models.
+     * @pre <pre>
+     *     models != null
+     *     forall Rank r : models.get(r) != null
+     *     les deux podiums de travail et les deux podiums objectif contiennent
+     *       les mêmes n éléments distincts, 2 <= n <= PackedState.MAX_ELEMENTS </pre>
+     */
+    public static <E> CanonicalForm<E> of(Map<Rank, PodiumModel<E>> models) {
+        Contract.checkCondition(models != null);
+
+        Map<Rank, PodiumModel<E>> mirroredModels = mirror(models);
+        int goalSplit = models.get(Rank.GOAL_LEFT).size();
+        int size = goalSplit + models.get(Rank.GOAL_RIGHT).size();
+        long s = PackedState.encodeWork(models);
+        boolean mirror = false;
+        if (2 * goalSplit >= size) {
+            long t = PackedState.encodeWork(mirroredModels);
+            if (2 * goalSplit > size || t < s) {
+                mirror = true;
+                s = t;
+            }
+        }
+        if (!mirror) {
+            mirroredModels = models;
+        }
+        PodiumModel<E> left = mirroredModels.get(Rank.GOAL_LEFT);
+        PodiumModel<E> right = mirroredModels.get(Rank.GOAL_RIGHT);
+        int k = left.size();
+        List<E> elems = new ArrayList<E>(size);
+        for (int i = 0; i < k; i++) {
+            elems.add(left.elementAt(i));
+        }
+        for (int i = k; i < size; i++) {
+            elems.add(right.elementAt(size - 1 - i));
+        }
+        return new CanonicalForm<E>(s, size, k, mirror, elems);
+    }
+
+    // REQUETES
+
+    /**
+     * La configuration de travail canonique.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * La configuration objectif canonique :
+     *  PackedState.identity(getElementsNb(), getGoalSplit()).
+     */
+    public long getGoal() {
+        return PackedState.identity(n, k);
+    }
+
+    /**
+     * Le nombre d'éléments.
+     */
+    public int getElementsNb() {
+        return n;
+    }
+
+    /**
+     * Le nombre d'éléments du podium gauche de l'objectif canonique.
+     */
+    public int getGoalSplit() {
+        return k;
+    }
+
+    /**
+     * Indique si les podiums ont été échangés.
+     */
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    /**
+     * L'élément d'indice i des configurations canoniques.
+     * @pre <pre>
+     *     0 <= i < getElementsNb() </pre>
+     */
+    public E getElement(int i) {
+        Contract.checkCondition(0 <= i && i < n);
+
+        return elements.get(i);
+    }
+
+    /**
+     * Un entier qui identifie cette forme canonique parmi celles sur
+     *  getElementsNb() éléments : getGoalSplit() * StateRanking.count(n)
+     *  + StateRanking.rank(getState(), n).
+     */
+    public long getKey() {
+        return k * StateRanking.count(n) + StateRanking.rank(state, n);
+    }
+
+    /**
+     * Remplit left et right (préalablement vidées) avec les éléments, de la
+     *  base vers le sommet, des podiums gauche et droit de la partie
+     *  d'origine qui correspondent à la configuration canonique s.
+     * @pre <pre>
+     *     left != null && right != null
+     *     s est une configuration sur getElementsNb() éléments </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public void decode(long s, List<E> left, List<E> right) {
+        Contract.checkCondition(left != null && right != null);
+
+        E[] elems = (E[]) elements.toArray();
+        if (mirrored) {
+            PackedState.decode(s, n, elems, right, left);
+        } else {
+            PackedState.decode(s, n, elems, left, right);
+        }
+    }
+
+    /**
+     * La suite d'ordres de la partie d'origine qui correspond à la suite
+     *  d'ordres canoniques orders.
+     * @pre <pre>
+     *     orders != null </pre>
+     */
+    public List<Order> toOriginal(List<Order> orders) {
+        Contract.checkCondition(orders != null);
+
+        return translate(orders);
+    }
+
+    /**
+     * La suite d'ordres canoniques qui correspond à la suite d'ordres de la
+     *  partie d'origine orders.
+     * @pre <pre>
+     *     orders != null </pre>
+     */
+    public List<Order> toCanonical(List<Order> orders) {
+        Contract.checkCondition(orders != null);
+
+        // l'échange des podiums est une involution
+        return translate(orders);
+    }
+
+    /**
+     * L'ordre qui a sur les podiums échangés l'effet de o.
+     * @pre <pre>
+     *     o != null </pre>
+     */
+    public static Order mirror(Order o) {
+        Contract.checkCondition(o != null);
+
+        switch (o) {
+            case LO:
+                return Order.KI;
+            case KI:
+                return Order.LO;
+            case MA:
+                return Order.NI;
+            case NI:
+                return Order.MA;
+            case SO:
+                return Order.SO;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    // OUTILS
+
+    private List<Order> translate(List<Order> orders) {
+        List<Order> result = new ArrayList<Order>(orders.size());
+        for (Order o : orders) {
+            result.add(mirrored ? mirror(o) : o);
+        }
+        return result;
+    }
+
+    private static <E> Map<Rank, PodiumModel<E>> mirror(
+            Map<Rank, PodiumModel<E>> models) {
+        Map<Rank, PodiumModel<E>> result =
+                new EnumMap<Rank, PodiumModel<E>>(Rank.class);
+        result.put(Rank.WORK_LEFT, models.get(Rank.WORK_RIGHT));
+        result.put(Rank.WORK_RIGHT, models.get(Rank.WORK_LEFT));
+        result.put(Rank.GOAL_LEFT, models.get(Rank.GOAL_RIGHT));
+        result.put(Rank.GOAL_RIGHT, models.get(Rank.GOAL_LEFT));
+        return result;
+    }
+}
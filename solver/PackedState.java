@@ -0,0 +1,306 @@
+package crazy.solver;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import crazy.model.Order;
+import crazy.model.PodiumModel;
+import crazy.model.PodiumManager.Rank;
+import util.Contract;
+
+/**
+ * Représentation compacte, dans un long, d'une configuration de deux podiums
+ *  contenant à eux deux n éléments distincts (2 <= n <= MAX_ELEMENTS).
+ * Chaque élément est représenté par son indice (entre 0 et n - 1) codé sur
+ *  4 bits. Le quartet de rang i (bits 4i à 4i + 3) contient :
+ * <ul>
+ *   <li> pour 0 <= i < split : l'élément de rang i du podium gauche, de la
+ *        base vers le sommet ;</li>
+ *   <li> pour split <= i < n : l'élément de rang i - split du podium droit,
+ *        du sommet vers la base.</li>
+ * </ul>
+ * Le nombre split d'éléments du podium gauche occupe les bits 60 à 63.
+ * Les deux sommets sont ainsi toujours adjacents (quartets split - 1 et
+ *  split) : LO et KI se réduisent à une modification de split, SO à l'échange
+ *  de deux quartets, MA et NI à la rotation d'un segment de quartets.
+ * Les ordres sont appliqués avec la même sémantique que dans
+ *  StdPodiumManager (un ordre inapplicable ne change rien).
+ */
+public final class PackedState {
+
+    // ATTRIBUTS
+
+    /**
+     * Le nombre maximal d'éléments d'une configuration compacte.
+     */
+    public static final int MAX_ELEMENTS = 15;
+
+    private static final int BITS = 4;
+    private static final long NIBBLE = 0xFL;
+    private static final int SPLIT_SHIFT = 60;
+    private static final long PERM_MASK = (1L << SPLIT_SHIFT) - 1;
+
+    // CONSTRUCTEURS
+
+    private PackedState() {
+        // rien
+    }
+
+    // REQUETES
+
+    /**
+     * Le nombre d'éléments du podium gauche de s.
+     */
+    public static int split(long s) {
+        return (int) (s >>> SPLIT_SHIFT);
+    }
+
+    /**
+     * L'indice de l'élément stocké dans le quartet de rang i de s.
+     * @pre <pre>
+     *     0 <= i < MAX_ELEMENTS </pre>
+     */
+    public static int nibble(long s, int i) {
+        return (int) ((s >>> (BITS * i)) & NIBBLE);
+    }
+
+    /**
+     * La configuration s dans laquelle le podium gauche a k éléments.
+     * @pre <pre>
+     *     0 <= k <= MAX_ELEMENTS </pre>
+     */
+    public static long withSplit(long s, int k) {
+        return (s & PERM_MASK) | ((long) k << SPLIT_SHIFT);
+    }
+
+    /**
+     * La configuration dont la permutation est l'identité sur n éléments et
+     *  dont le podium gauche contient les k premiers.
+     * @pre <pre>
+     *     2 <= n <= MAX_ELEMENTS
+     *     0 <= k <= n </pre>
+     */
+    public static long identity(int n, int k) {
+        long s = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            s = (s << BITS) | i;
+        }
+        return withSplit(s, k);
+    }
+
+    /**
+     * La configuration obtenue en appliquant l'ordre o à s, sur n éléments.
+     * Retourne s lui-même si o n'a aucun effet sur s.
+     * @pre <pre>
+     *     o != null </pre>
+     */
+    public static long apply(long s, Order o, int n) {
+        int k = split(s);
+        switch (o) {
+            case LO:
+                return k > 0 ? withSplit(s, k - 1) : s;
+            case KI:
+                return k < n ? withSplit(s, k + 1) : s;
+            case MA:
+                return k > 1 ? rotateDown(s, 0, k) : s;
+            case NI:
+                return n - k > 1 ? rotateUp(s, k, n - k) : s;
+            case SO:
+                return k > 0 && k < n ? swap(s, k - 1) : s;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * L'unique configuration p telle que apply(p, o, n) == s et p != s.
+     * Retourne s lui-même si une telle configuration n'existe pas.
+     * @pre <pre>
+     *     o != null </pre>
+     */
+    public static long unapply(long s, Order o, int n) {
+        int k = split(s);
+        switch (o) {
+            case LO:
+                return k < n ? withSplit(s, k + 1) : s;
+            case KI:
+                return k > 0 ? withSplit(s, k - 1) : s;
+            case MA:
+                return k > 1 ? rotateUp(s, 0, k) : s;
+            case NI:
+                return n - k > 1 ? rotateDown(s, k, n - k) : s;
+            case SO:
+                return k > 0 && k < n ? swap(s, k - 1) : s;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    /**
+     * La configuration s, sur n éléments, dans laquelle chaque élément est
+     *  remplacé par sa position dans goal : goal devient ainsi
+     *  identity(n, split(goal)), et les ordres qui mènent de s à goal sont
+     *  ceux qui mènent du résultat à cette identité.
+     * @pre <pre>
+     *     2 <= n <= MAX_ELEMENTS
+     *     s et goal sont des configurations sur les mêmes n indices </pre>
+     */
+    public static long relabel(long s, long goal, int n) {
+        long[] positions = new long[MAX_ELEMENTS];
+        for (int p = 0; p < n; p++) {
+            positions[nibble(goal, p)] = p;
+        }
+        long t = 0;
+        for (int i = 0; i < n; i++) {
+            t |= positions[nibble(s, i)] << (BITS * i);
+        }
+        return withSplit(t, split(s));
+    }
+
+    /**
+     * La configuration compacte des podiums left et right, les indices des
+     *  éléments étant donnés par index.
+     * @pre <pre>
+     *     left != null && right != null && index != null
+     *     left.size() + right.size() <= MAX_ELEMENTS
+     *     index associe à chaque élément de left et right un indice
+     *       entre 0 et MAX_ELEMENTS - 1 </pre>
+     */
+    public static <E> long encode(PodiumModel<E> left, PodiumModel<E> right,
+            Map<E, Integer> index) {
+        Contract.checkCondition(left != null && right != null);
+        Contract.checkCondition(index != null);
+        int k = left.size();
+        int n = k + right.size();
+        Contract.checkCondition(n <= MAX_ELEMENTS);
+
+        long s = 0;
+        for (int i = 0; i < k; i++) {
+            s |= indexOf(index, left.elementAt(i)) << (BITS * i);
+        }
+        for (int i = k; i < n; i++) {
+            E e = right.elementAt(n - 1 - i);
+            s |= indexOf(index, e) << (BITS * i);
+        }
+        return withSplit(s, k);
+    }
+
+    /**
+     * La configuration compacte des podiums de travail de models, les
+     *  indices des éléments étant attribués dans l'ordre de la configuration
+     *  objectif (podium gauche de la base vers le sommet, puis podium droit
+     *  du sommet vers la base) : l'objectif est alors identity(n, k), où k
+     *  est la taille de GOAL_LEFT.
+     * @pre <pre>
+     *     models != null
+     *     forall Rank r : models.get(r) != null
+     *     les deux podiums de travail et les deux podiums objectif contiennent
+     *       les mêmes n éléments distincts, 2 <= n <= MAX_ELEMENTS </pre>
+     */
+    public static <E> long encodeWork(Map<Rank, PodiumModel<E>> models) {
+        Contract.checkCondition(models != null);
+        for (Rank r : Rank.values()) {
+            Contract.checkCondition(models.get(r) != null);
+        }
+
+        PodiumModel<E> goalLeft = models.get(Rank.GOAL_LEFT);
+        PodiumModel<E> goalRight = models.get(Rank.GOAL_RIGHT);
+        int k = goalLeft.size();
+        int n = k + goalRight.size();
+        Contract.checkCondition(2 <= n && n <= MAX_ELEMENTS);
+
+        Map<E, Integer> index = new HashMap<E, Integer>();
+        for (int i = 0; i < k; i++) {
+            index.put(goalLeft.elementAt(i), i);
+        }
+        for (int i = k; i < n; i++) {
+            index.put(goalRight.elementAt(n - 1 - i), i);
+        }
+        Contract.checkCondition(index.size() == n);
+        return encode(models.get(Rank.WORK_LEFT), models.get(Rank.WORK_RIGHT),
+                index);
+    }
+
+    /**
+     * Remplit left et right (préalablement vidées) avec les éléments de s,
+     *  de la base vers le sommet, l'élément d'indice i étant elements[i].
+     * @pre <pre>
+     *     elements != null && left != null && right != null </pre>
+     */
+    public static <E> void decode(long s, int n, E[] elements,
+            List<E> left, List<E> right) {
+        Contract.checkCondition(elements != null);
+        Contract.checkCondition(left != null && right != null);
+        int k = split(s);
+        for (int i = 0; i < k; i++) {
+            left.add(elements[nibble(s, i)]);
+        }
+        for (int i = n - 1; i >= k; i--) {
+            right.add(elements[nibble(s, i)]);
+        }
+    }
+
+    /**
+     * Une représentation lisible de s sur n éléments, sous la forme
+     *  "[0|2|] [1|]" (bases à gauche).
+     */
+    public static String toString(long s, int n) {
+        StringBuilder sb = new StringBuilder("[");
+        int k = split(s);
+        for (int i = 0; i < k; i++) {
+            sb.append(nibble(s, i)).append('|');
+        }
+        sb.append("] [");
+        for (int i = n - 1; i >= k; i--) {
+            sb.append(nibble(s, i)).append('|');
+        }
+        return sb.append(']').toString();
+    }
+
+    // OUTILS
+
+    private static long indexOf(Map<?, Integer> index, Object e) {
+        Integer i = index.get(e);
+        Contract.checkCondition(i != null && 0 <= i && i < MAX_ELEMENTS);
+        return i;
+    }
+
+    private static long mask(int len) {
+        return (1L << (BITS * len)) - 1;
+    }
+
+    /**
+     * Fait tourner d'un cran vers les rangs faibles les len quartets qui
+     *  commencent au rang from : le quartet de rang from passe au rang
+     *  from + len - 1.
+     */
+    private static long rotateDown(long s, int from, int len) {
+        int shift = BITS * from;
+        long seg = (s >>> shift) & mask(len);
+        long rot = (seg >>> BITS) | ((seg & NIBBLE) << (BITS * (len - 1)));
+        return (s & ~(mask(len) << shift)) | (rot << shift);
+    }
+
+    /**
+     * Fait tourner d'un cran vers les rangs forts les len quartets qui
+     *  commencent au rang from : le quartet de rang from + len - 1 passe au
+     *  rang from.
+     */
+    private static long rotateUp(long s, int from, int len) {
+        int shift = BITS * from;
+        long m = mask(len);
+        long seg = (s >>> shift) & m;
+        long rot = ((seg << BITS) & m) | (seg >>> (BITS * (len - 1)));
+        return (s & ~(m << shift)) | (rot << shift);
+    }
+
+    /**
+     * Échange les quartets de rangs i et i + 1.
+     */
+    private static long swap(long s, int i) {
+        int shift = BITS * i;
+        long d = ((s >>> shift) ^ (s >>> (shift + BITS))) & NIBBLE;
+        return s ^ ((d << shift) | (d << (shift + BITS)));
+    }
+}
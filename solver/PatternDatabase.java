@@ -0,0 +1,353 @@
+package crazy.solver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import crazy.model.PodiumModel;
+import crazy.model.PodiumManager.Rank;
+import util.Contract;
+
+/**
+ * Table des distances à l'objectif de toutes les configurations sur n
+ *  éléments, lue dans un fichier construit par PatternDatabaseBuilder.
+ * Les configurations sont relatives à l'objectif canonique
+ *  PackedState.identity(n, k) (voir PackedState.encodeWork) : le fichier
+ *  contient une table par valeur de k, de 0 à n.
+ * La distance d d'une configuration s n'est pas stockée telle quelle, mais
+ *  relativement à un minorant L(s) : la distance de s dans l'abstraction où
+ *  les positions de l'objectif sont réparties en trois classes (un podium,
+ *  et chacune des moitiés de l'autre) et où les éléments ne sont plus
+ *  distingués que par la classe de leur position. L(s) ne dépend que de la
+ *  taille du podium gauche et des classes des n éléments : sa table compte
+ *  (n + 1) * 3^n octets. L'écart d - L(s), qui dépasse rarement 14, est
+ *  stocké sur 4 bits ; la valeur SATURATED signifie
+ *  « SATURATED ou plus », et la distance n'est alors connue que par un
+ *  minorant (getSaturatedNb(k) configurations sont dans ce cas).
+ * Le fichier est projeté en mémoire (MappedByteBuffer) par blocs de 1 Go :
+ *  l'ouverture ne lit que l'en-tête, les pages des tables sont chargées par
+ *  le système à la demande et restent hors du tas. Une consultation coûte un
+ *  calcul de rang (voir StateRanking) et deux lectures.
+ * Format : MAGIC, VERSION, n, 1 si SO est autorisé (0 sinon), un octet
+ *  libre ; à partir de l'octet MAX_DISTANCES_OFFSET, pour chaque k la
+ *  distance maximale de sa table ; à partir de l'octet SATURATED_OFFSET, pour
+ *  chaque k le nombre de ses écarts saturés (8 octets) ; des zéros jusqu'à
+ *  HEADER_SIZE octets. Viennent ensuite, pour chaque k, la table de L
+ *  (indexée par coarseIndex) puis celle des écarts, où l'écart de la
+ *  configuration de rang r occupe les 4 bits de poids faible (r pair) ou
+ *  fort (r impair) de l'octet r / 2.
+ * @inv <pre>
+ *     2 <= getElementsNb() <= MAX_ELEMENTS
+ *     forall 0 <= k <= getElementsNb() :
+ *         getMaxDistance(k) >= 0
+ *         getSaturatedNb(k) >= 0 </pre>
+ */
+public final class PatternDatabase {
+
+    // ATTRIBUTS
+
+    /**
+     * Le plus grand nombre d'éléments pour lequel une table peut être
+     *  construite (12 tables de 240 Mo).
+     */
+    public static final int MAX_ELEMENTS = 11;
+
+    /**
+     * Le plus grand écart stocké : l'écart réel est au moins égal.
+     */
+    public static final int SATURATED = 15;
+
+    /**
+     * La valeur retournée par distance() lorsque la distance n'est pas
+     *  connue exactement.
+     */
+    public static final int UNKNOWN = -1;
+
+    static final byte[] MAGIC = {'C', 'C', 'P', 'D'};
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 256;
+    static final int MAX_DISTANCES_OFFSET = 8;
+    static final int SATURATED_OFFSET = 32;
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    private static final int NIBBLE = 0xF;
+    private static final int BITS = 4;
+
+    private final int n;
+    private final boolean soAllowed;
+    private final int[] maxDistances;
+    private final long[] saturatedNbs;
+    private final MappedByteBuffer[] chunks;
+
+    // CONSTRUCTEURS
+
+    private PatternDatabase(int n, boolean soAllowed, int[] maxDistances,
+            long[] saturatedNbs, MappedByteBuffer[] chunks) {
+        this.n = n;
+        this.soAllowed = soAllowed;
+        this.maxDistances = maxDistances;
+        this.saturatedNbs = saturatedNbs;
+        this.chunks = chunks;
+    }
+
+    /**
+     * La table contenue dans file.
+     * @pre <pre>
+     *     file != null </pre>
+     * @throws IOException si file ne peut être lu, ou ne contient pas une
+     *  table complète
+     */
+    public static PatternDatabase open(Path file) throws IOException {
+        Contract.checkCondition(file != null);
+
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE);
+            while (h.hasRemaining()) {
+                if (ch.read(h) < 0) {
+                    throw new EOFException("en-tête incomplet");
+                }
+            }
+            h.flip();
+            byte[] magic = new byte[MAGIC.length];
+            h.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || h.get() != VERSION) {
+                throw new IOException("ce n'est pas une table de distances");
+            }
+            int n = h.get();
+            boolean so = h.get() != 0;
+            if (n < 2 || n > MAX_ELEMENTS || ch.size() != fileSize(n)) {
+                throw new IOException("table incomplète");
+            }
+            int[] maxDistances = new int[n + 1];
+            long[] saturatedNbs = new long[n + 1];
+            for (int k = 0; k <= n; k++) {
+                maxDistances[k] = h.get(MAX_DISTANCES_OFFSET + k) & 0xFF;
+                saturatedNbs[k] = h.getLong(SATURATED_OFFSET + 8 * k);
+            }
+            return new PatternDatabase(n, so, maxDistances, saturatedNbs,
+                    map(ch, MapMode.READ_ONLY, fileSize(n)));
+        } finally {
+            // les projections survivent à la fermeture du canal
+            ch.close();
+        }
+    }
+
+    // REQUETES
+
+    /**
+     * Le nombre d'éléments des configurations.
+     */
+    public int getElementsNb() {
+        return n;
+    }
+
+    /**
+     * Indique si les distances tiennent compte de l'ordre SO.
+     */
+    public boolean isSoAllowed() {
+        return soAllowed;
+    }
+
+    /**
+     * La plus grande distance à l'objectif PackedState.identity(n, k).
+     * @pre <pre>
+     *     0 <= k <= getElementsNb() </pre>
+     */
+    public int getMaxDistance(int k) {
+        Contract.checkCondition(0 <= k && k <= n);
+
+        return maxDistances[k];
+    }
+
+    /**
+     * Le nombre de configurations dont la distance à l'objectif
+     *  PackedState.identity(n, k) n'est connue que par un minorant.
+     * @pre <pre>
+     *     0 <= k <= getElementsNb() </pre>
+     */
+    public long getSaturatedNb(int k) {
+        Contract.checkCondition(0 <= k && k <= n);
+
+        return saturatedNbs[k];
+    }
+
+    /**
+     * Un minorant de la distance de la configuration s à l'objectif
+     *  PackedState.identity(getElementsNb(), k), égal à cette distance
+     *  lorsqu'elle est connue.
+     * Ce minorant ne varie que d'au plus 1 d'une configuration à sa voisine.
+     * @pre <pre>
+     *     0 <= k <= getElementsNb()
+     *     s est une configuration sur getElementsNb() éléments </pre>
+     */
+    public int lowerBound(long s, int k) {
+        Contract.checkCondition(0 <= k && k <= n);
+
+        long coarse = coarseOffset(n, k);
+        int low = getByte(chunks, coarse + coarseIndex(s, n, k));
+        int gap = get(chunks, coarse + coarseSize(n), StateRanking.rank(s, n));
+        return low + gap;
+    }
+
+    /**
+     * La distance de la configuration s à l'objectif
+     *  PackedState.identity(getElementsNb(), k), ou UNKNOWN si elle n'est pas
+     *  connue exactement.
+     * @pre <pre>
+     *     0 <= k <= getElementsNb()
+     *     s est une configuration sur getElementsNb() éléments </pre>
+     */
+    public int distance(long s, int k) {
+        Contract.checkCondition(0 <= k && k <= n);
+
+        long coarse = coarseOffset(n, k);
+        int gap = get(chunks, coarse + coarseSize(n), StateRanking.rank(s, n));
+        if (gap == SATURATED) {
+            return UNKNOWN;
+        }
+        return getByte(chunks, coarse + coarseIndex(s, n, k)) + gap;
+    }
+
+    /**
+     * La distance de la configuration de travail de models à sa
+     *  configuration objectif, ou UNKNOWN si elle n'est pas connue
+     *  exactement.
+     * @pre <pre>
+     *     models != null
+     *     forall Rank r : models.get(r) != null
+     *     les deux podiums de travail et les deux podiums objectif contiennent
+     *       les mêmes getElementsNb() éléments distincts </pre>
+     */
+    public <E> int distance(Map<Rank, PodiumModel<E>> models) {
+        Contract.checkCondition(models != null);
+        Contract.checkCondition(models.get(Rank.GOAL_LEFT) != null
+                && models.get(Rank.GOAL_RIGHT) != null);
+        int k = models.get(Rank.GOAL_LEFT).size();
+        Contract.checkCondition(k + models.get(Rank.GOAL_RIGHT).size() == n);
+
+        return distance(PackedState.encodeWork(models), k);
+    }
+
+    // OUTILS
+
+    /**
+     * La classe de la position p de l'objectif PackedState.identity(n, k) :
+     *  0 ou 1 pour les deux moitiés du plus grand des deux podiums, 2 pour
+     *  l'autre.
+     */
+    static int coarseClass(int p, int n, int k) {
+        if (k >= n - k) {
+            return p < k ? 2 * p / k : 2;
+        }
+        return p < k ? 2 : 2 * (p - k) / (n - k);
+    }
+
+    /**
+     * L'indice de s dans la table de L : split(s) * 3^n + c, où le chiffre
+     *  de rang i de c en base 3 est la classe (voir coarseClass) de
+     *  l'élément de rang i de s.
+     */
+    static int coarseIndex(long s, int n, int k) {
+        int c = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            c = 3 * c + coarseClass(PackedState.nibble(s, i), n, k);
+        }
+        return PackedState.split(s) * pow3(n) + c;
+    }
+
+    /**
+     * La taille en octets d'une table de L sur n éléments.
+     */
+    static int coarseSize(int n) {
+        return (n + 1) * pow3(n);
+    }
+
+    private static int pow3(int n) {
+        int r = 1;
+        for (int i = 0; i < n; i++) {
+            r *= 3;
+        }
+        return r;
+    }
+
+    /**
+     * La taille en octets d'une table d'écarts sur n éléments.
+     */
+    static long tableSize(int n) {
+        return (StateRanking.count(n) + 1) / 2;
+    }
+
+    /**
+     * La position dans le fichier de la table de L de l'objectif
+     *  PackedState.identity(n, k), suivie de celle de ses écarts.
+     */
+    static long coarseOffset(int n, int k) {
+        return HEADER_SIZE + k * (coarseSize(n) + tableSize(n));
+    }
+
+    /**
+     * La taille en octets d'un fichier de tables sur n éléments.
+     */
+    static long fileSize(int n) {
+        return coarseOffset(n, n + 1);
+    }
+
+    /**
+     * Projette en mémoire les size premiers octets de ch, par blocs.
+     */
+    static MappedByteBuffer[] map(FileChannel ch, MapMode mode, long size)
+            throws IOException {
+        int count = (int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT);
+        MappedByteBuffer[] result = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long from = (long) i << CHUNK_SHIFT;
+            result[i] = ch.map(mode, from, Math.min(size - from,
+                    CHUNK_MASK + 1));
+        }
+        return result;
+    }
+
+    /**
+     * L'octet (positif) de rang p des blocs chunks.
+     */
+    static int getByte(MappedByteBuffer[] chunks, long p) {
+        return chunks[(int) (p >>> CHUNK_SHIFT)].get((int) (p & CHUNK_MASK))
+                & 0xFF;
+    }
+
+    /**
+     * Remplace par b l'octet de rang p des blocs chunks.
+     */
+    static void putByte(MappedByteBuffer[] chunks, long p, int b) {
+        chunks[(int) (p >>> CHUNK_SHIFT)].put((int) (p & CHUNK_MASK), (byte) b);
+    }
+
+    /**
+     * La valeur sur 4 bits de rang r de la table qui commence à l'octet
+     *  table.
+     */
+    static int get(MappedByteBuffer[] chunks, long table, long r) {
+        return (getByte(chunks, table + (r >>> 1)) >>> (BITS * (int) (r & 1)))
+                & NIBBLE;
+    }
+
+    /**
+     * Remplace par v la valeur sur 4 bits de rang r de la table qui commence
+     *  à l'octet table.
+     */
+    static void set(MappedByteBuffer[] chunks, long table, long r, int v) {
+        long p = table + (r >>> 1);
+        int shift = BITS * (int) (r & 1);
+        putByte(chunks, p, getByte(chunks, p) & ~(NIBBLE << shift)
+                | (v << shift));
+    }
+}
@@ -0,0 +1,246 @@
+package crazy.solver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import crazy.explore.DistanceReport;
+import crazy.explore.ParallelBfs;
+import crazy.model.Order;
+import util.Contract;
+
+/**
+ * Construction hors ligne des fichiers lus par PatternDatabase.
+ * Pour chaque k, les distances exactes sont d'abord calculées, un octet par
+ *  configuration, dans un fichier temporaire projeté en mémoire, par un
+ *  parcours en largeur parallèle (ParallelBfs, sur les threads de
+ *  ForkJoinPool.commonPool()) depuis l'objectif PackedState.identity(n, k).
+ *  Elles sont ensuite réduites à leur écart au minorant L (voir
+ *  PatternDatabase) sur 4 bits.
+ * Il faut (n + 1)! octets de disque temporaire, à côté du fichier, et, dans
+ *  le tas, la place d'un parcours (voir ParallelBfs).
+ * L'en-tête n'est écrit qu'à la fin : un fichier interrompu est refusé par
+ *  PatternDatabase.open.
+ * Arguments de main : n, le chemin du fichier et, facultatif, "noso" pour
+ *  interdire SO.
+ * Exemple : java crazy.solver.PatternDatabaseBuilder 10 pdb10.bin
+ */
+public final class PatternDatabaseBuilder {
+
+    // ATTRIBUTS
+
+    private static final Order[] ORDERS = Order.values();
+    private static final int UNSET = 0xFF;
+    private static final int BITS = 4;
+    private static final int INITIAL_LAYER = 1 << 6;
+
+    // CONSTRUCTEURS
+
+    private PatternDatabaseBuilder() {
+        // rien
+    }
+
+    // COMMANDES
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage : java crazy.solver.PatternDatabaseBuilder"
+                    + " n fichier [noso]");
+            System.exit(1);
+        }
+        int n = Integer.parseInt(args[0]);
+        boolean so = !(args.length > 2 && args[2].equals("noso"));
+        build(Paths.get(args[1]), n, so, System.out);
+    }
+
+    /**
+     * Construit dans file (remplacé s'il existe) les tables des distances
+     *  sur n éléments, en autorisant SO si et seulement si soAllowed.
+     * La progression est décrite dans log s'il n'est pas null.
+     * @pre <pre>
+     *     file != null
+     *     2 <= n <= PatternDatabase.MAX_ELEMENTS </pre>
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void build(Path file, int n, boolean soAllowed,
+            PrintStream log) throws IOException {
+        Contract.checkCondition(file != null);
+        Contract.checkCondition(2 <= n && n <= PatternDatabase.MAX_ELEMENTS);
+
+        Order[] orders = allowedOrders(soAllowed);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long size = PatternDatabase.fileSize(n);
+        long count = StateRanking.count(n);
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "pdb", ".tmp");
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileChannel tch = FileChannel.open(tmp, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        try {
+            ch.write(ByteBuffer.allocate(1), size - 1);
+            tch.write(ByteBuffer.allocate(1), count - 1);
+            MappedByteBuffer[] chunks =
+                    PatternDatabase.map(ch, MapMode.READ_WRITE, size);
+            MappedByteBuffer[] exact =
+                    PatternDatabase.map(tch, MapMode.READ_WRITE, count);
+            ByteBuffer h = ByteBuffer.allocate(PatternDatabase.HEADER_SIZE);
+            for (int k = 0; k <= n; k++) {
+                long start = System.nanoTime();
+                int max = distances(exact, n, k, soAllowed, pool);
+                byte[] low = coarseDistances(n, k, orders);
+                long saturated = reduce(exact, low, chunks, n, k);
+                h.put(PatternDatabase.MAX_DISTANCES_OFFSET + k, (byte) max);
+                h.putLong(PatternDatabase.SATURATED_OFFSET + 8 * k, saturated);
+                if (log != null) {
+                    log.printf("n=%d k=%d : distance maximale %d, %d écarts"
+                            + " saturés (%.1f s)%n", n, k, max, saturated,
+                            (System.nanoTime() - start) / 1e9);
+                }
+            }
+            for (MappedByteBuffer c : chunks) {
+                c.force();
+            }
+            h.put(PatternDatabase.MAGIC).put(PatternDatabase.VERSION)
+                    .put((byte) n).put((byte) (soAllowed ? 1 : 0));
+            h.clear();
+            while (h.hasRemaining()) {
+                ch.write(h, h.position());
+            }
+            ch.force(true);
+        } finally {
+            tch.close();
+            ch.close();
+        }
+    }
+
+    // OUTILS
+
+    private static Order[] allowedOrders(boolean soAllowed) {
+        if (soAllowed) {
+            return ORDERS;
+        }
+        return new Order[] {Order.LO, Order.KI, Order.MA, Order.NI};
+    }
+
+    /**
+     * Range dans exact la distance de chaque configuration à l'objectif
+     *  PackedState.identity(n, k), calculée par pool.
+     * Retourne la plus grande.
+     */
+    private static int distances(final MappedByteBuffer[] exact, int n,
+            int k, boolean soAllowed, ForkJoinPool pool) {
+        long count = StateRanking.count(n);
+        for (long r = 0; r < count; r++) {
+            PatternDatabase.putByte(exact, r, UNSET);
+        }
+        DistanceReport report = new ParallelBfs(n, k, soAllowed, pool).run(
+                new ParallelBfs.Visitor() {
+                    @Override
+                    public void visit(long r, int d) {
+                        // chaque octet n'est écrit que par un seul thread
+                        PatternDatabase.putByte(exact, r, d);
+                    }
+                });
+        return report.getMaxDistance();
+    }
+
+    /**
+     * Les distances dans l'abstraction de L (voir PatternDatabase) à
+     *  l'objectif PackedState.identity(n, k), indexées par
+     *  PatternDatabase.coarseIndex.
+     * Une configuration abstraite est représentée comme une configuration
+     *  compacte dont les quartets sont des classes.
+     */
+    private static byte[] coarseDistances(int n, int k, Order[] orders) {
+        int size = PatternDatabase.coarseSize(n);
+        byte[] low = new byte[size];
+        Arrays.fill(low, (byte) -1);
+        // un élément représentatif de chaque classe
+        int[] elements = new int[3];
+        for (int p = n - 1; p >= 0; p--) {
+            elements[PatternDatabase.coarseClass(p, n, k)] = p;
+        }
+        long goal = 0;
+        for (int p = 0; p < n; p++) {
+            goal |= (long) PatternDatabase.coarseClass(p, n, k) << (BITS * p);
+        }
+        goal = PackedState.withSplit(goal, k);
+        long[] layer = new long[] {goal};
+        long[] next = new long[INITIAL_LAYER];
+        low[classIndex(goal, n, k, elements)] = 0;
+        int count = 1;
+        for (byte d = 1; count > 0; d++) {
+            int nextCount = 0;
+            for (int i = 0; i < count; i++) {
+                for (Order o : orders) {
+                    long t = PackedState.unapply(layer[i], o, n);
+                    int j = classIndex(t, n, k, elements);
+                    if (low[j] < 0) {
+                        low[j] = d;
+                        if (nextCount == next.length) {
+                            next = Arrays.copyOf(next, 2 * nextCount);
+                        }
+                        next[nextCount++] = t;
+                    }
+                }
+            }
+            long[] tmp = layer;
+            layer = next;
+            next = tmp;
+            count = nextCount;
+        }
+        return low;
+    }
+
+    /**
+     * L'indice, au sens de PatternDatabase.coarseIndex, de la configuration
+     *  abstraite s : chaque classe y est remplacée par l'un de ses éléments.
+     */
+    private static int classIndex(long s, int n, int k, int[] elements) {
+        long t = 0;
+        for (int i = 0; i < n; i++) {
+            t |= (long) elements[PackedState.nibble(s, i)] << (BITS * i);
+        }
+        return PatternDatabase.coarseIndex(
+                PackedState.withSplit(t, PackedState.split(s)), n, k);
+    }
+
+    /**
+     * Écrit dans chunks la table de L (low) de l'objectif
+     *  PackedState.identity(n, k), puis celle des écarts entre les distances
+     *  exactes et L.
+     * Retourne le nombre d'écarts saturés.
+     */
+    private static long reduce(MappedByteBuffer[] exact, byte[] low,
+            MappedByteBuffer[] chunks, int n, int k) {
+        long coarse = PatternDatabase.coarseOffset(n, k);
+        for (int i = 0; i < low.length; i++) {
+            PatternDatabase.putByte(chunks, coarse + i, low[i]);
+        }
+        long table = coarse + PatternDatabase.coarseSize(n);
+        long count = StateRanking.count(n);
+        long saturated = 0;
+        for (long r = 0; r < count; r++) {
+            long s = StateRanking.unrank(r, n);
+            int gap = PatternDatabase.getByte(exact, r)
+                    - low[PatternDatabase.coarseIndex(s, n, k)];
+            if (gap >= PatternDatabase.SATURATED) {
+                gap = PatternDatabase.SATURATED;
+                saturated += 1;
+            }
+            PatternDatabase.set(chunks, table, r, gap);
+        }
+        return saturated;
+    }
+}
@@ -0,0 +1,462 @@
+package crazy.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import crazy.model.Order;
+import crazy.model.PodiumModel;
+import crazy.model.PodiumManager.Rank;
+import util.Contract;
+
+/**
+ * Énumération paresseuse de toutes les solutions minimales d'une partie, et
+ *  éventuellement des solutions qui comptent jusqu'à extra ordres de plus.
+ * Les solutions énumérées sont les suites d'ordres autorisés, de longueur
+ *  comprise entre la distance D de la partie et D + extra, qui mènent de la
+ *  configuration de travail à l'objectif sans passer deux fois par la même
+ *  configuration (les solutions minimales le sont toutes). Elles sont
+ *  produites par longueur croissante : toutes les solutions minimales
+ *  d'abord.
+ * Deux parcours en largeur, l'un depuis la configuration de travail et
+ *  l'autre depuis l'objectif, sont menés comme dans BfsSolver jusqu'à ce
+ *  que la somme de leurs profondeurs a et b atteigne D + extra ; chacun
+ *  mémorise la distance de chaque configuration atteinte à sa racine.
+ * Une solution de longueur L passe, au rang i = max(0, L - b), par une
+ *  configuration m dont les distances à la configuration de travail (au plus
+ *  i <= a) et à l'objectif (au plus L - i <= b) sont toutes deux connues :
+ *  pour chaque m, les débuts de solution sont énumérés en remontant de m
+ *  vers la configuration de travail et les fins en descendant de m vers
+ *  l'objectif, chaque pas n'étant retenu que si la distance de la
+ *  configuration atteinte à la racine visée ne dépasse pas le nombre de pas
+ *  restants. Aucune branche ne mène donc à une impasse, sinon par une
+ *  configuration répétée, et chaque solution est produite en un temps
+ *  proportionnel à sa longueur, sans que les précédentes soient conservées.
+ */
+public class SolutionEnumerator extends AbstractSolver {
+
+    // CONSTRUCTEURS
+
+    /**
+     * Un énumérateur qui autorise SO si et seulement si soAllowed.
+     */
+    public SolutionEnumerator(boolean soAllowed) {
+        super(soAllowed);
+    }
+
+    /**
+     * Un énumérateur qui autorise tous les ordres.
+     */
+    public SolutionEnumerator() {
+        this(true);
+    }
+
+    // REQUETES
+
+    @Override
+    protected List<Order> search(long start, long goal, int n) {
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+
+        Solutions it = enumerate(start, goal, n, 0);
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Les solutions de longueur au plus D + extra qui transforment la
+     *  configuration compacte start en la configuration compacte goal, sur n
+     *  éléments, où D est la distance de start à goal.
+     * Les parcours en largeur sont effectués par cet appel ; les solutions le
+     *  sont au fur et à mesure de leur lecture.
+     * @pre <pre>
+     *     2 <= n <= PackedState.MAX_ELEMENTS
+     *     start et goal sont des configurations sur les mêmes n indices
+     *     extra >= 0 </pre>
+     * @throws java.util.concurrent.CancellationException si le thread
+     *  appelant est interrompu pendant les parcours
+     */
+    public Solutions enumerate(long start, long goal, int n, int extra) {
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+        Contract.checkCondition(extra >= 0);
+
+        return new Solutions(start, goal, n, extra, orders(), null);
+    }
+
+    /**
+     * Les solutions de longueur au plus D + extra qui transforment la
+     *  configuration de travail de models en sa configuration objectif, où D
+     *  est la distance de la partie.
+     * @pre <pre>
+     *     models != null
+     *     forall Rank r : models.get(r) != null
+     *     les deux podiums de travail et les deux podiums objectif contiennent
+     *       les mêmes n éléments distincts, 2 <= n <= PackedState.MAX_ELEMENTS
+     *     extra >= 0 </pre>
+     * @throws java.util.concurrent.CancellationException si le thread
+     *  appelant est interrompu pendant les parcours
+     */
+    public <E> Solutions enumerate(Map<Rank, PodiumModel<E>> models,
+            int extra) {
+        Contract.checkCondition(models != null);
+        for (Rank r : Rank.values()) {
+            Contract.checkCondition(models.get(r) != null);
+        }
+        Contract.checkCondition(extra >= 0);
+
+        CanonicalForm<E> c = CanonicalForm.of(models);
+        return new Solutions(c.getState(), c.getGoal(), c.getElementsNb(),
+                extra, orders(), c);
+    }
+
+    // OUTILS
+
+    /**
+     * Un itérateur sur les solutions d'une partie, par longueur croissante.
+     * Les listes retournées par next() appartiennent à l'appelant.
+     * @inv <pre>
+     *     getDistance() == -1 ==> !hasNext()
+     *     getDistance() <= getMaxLength() </pre>
+     */
+    public static final class Solutions implements Iterator<List<Order>> {
+        private final int n;
+        private final Order[] orders;
+        // null si les ordres sont ceux des configurations compactes
+        private final CanonicalForm<?> form;
+        private final Side fwd;
+        private final Side bwd;
+        private final int distance;
+        private final int maxLength;
+        // la longueur des solutions en cours d'énumération, et le rang de
+        //  leur configuration intermédiaire
+        private int length;
+        private int middleRank;
+        // la position de la prochaine configuration intermédiaire candidate
+        //  dans les niveaux du parcours depuis la configuration de travail
+        private int layer;
+        private int index;
+        private Walk head;
+        private Walk tail;
+        private List<Order> next;
+
+        Solutions(long start, long goal, int n, int extra, Order[] orders,
+                CanonicalForm<?> form) {
+            this.n = n;
+            this.orders = orders;
+            this.form = form;
+            fwd = new Side(start, true);
+            bwd = new Side(goal, false);
+            int d = start == goal ? 0 : -1;
+            while (d == -1 && !fwd.complete && !bwd.complete) {
+                if (fwd.frontierSize() <= bwd.frontierSize()) {
+                    d = fwd.expand(bwd, orders, n);
+                } else {
+                    d = bwd.expand(fwd, orders, n);
+                }
+            }
+            distance = d;
+            maxLength = d == -1 ? -1 : d + extra;
+            // un parcours complet connaît toutes les distances à sa racine
+            while (d != -1 && !fwd.complete && !bwd.complete
+                    && fwd.depth() + bwd.depth() < maxLength) {
+                if (fwd.frontierSize() <= bwd.frontierSize()) {
+                    fwd.expand(bwd, orders, n);
+                } else {
+                    bwd.expand(fwd, orders, n);
+                }
+            }
+            length = distance;
+            if (distance != -1) {
+                startLength();
+                next = advance();
+            }
+        }
+
+        /**
+         * La distance D de la partie, ou -1 si l'objectif est inaccessible.
+         */
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * La longueur maximale des solutions énumérées : D + extra, ou -1 si
+         *  l'objectif est inaccessible.
+         */
+        public int getMaxLength() {
+            return maxLength;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public List<Order> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            List<Order> result = next;
+            next = advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void startLength() {
+            middleRank = Math.max(0, length - bwd.reach());
+            layer = 0;
+            index = 0;
+            head = null;
+            tail = null;
+        }
+
+        /**
+         * La solution suivante, ou null s'il n'y en a plus.
+         */
+        private List<Order> advance() {
+            while (length <= maxLength) {
+                if (tail != null && tail.next(orders, n)) {
+                    if (!head.meets(tail)) {
+                        return path();
+                    }
+                } else if (head != null && head.next(orders, n)) {
+                    tail = new Walk(head.root(), length - middleRank, bwd);
+                } else {
+                    long m = nextMiddle();
+                    if (m != 0) {
+                        head = new Walk(m, middleRank, fwd);
+                        tail = null;
+                    } else {
+                        length += 1;
+                        if (length <= maxLength) {
+                            startLength();
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * La prochaine configuration candidate au rang middleRank : à
+         *  distance au plus middleRank de la configuration de travail et au
+         *  plus length - middleRank de l'objectif. Vaut 0 s'il n'y en a
+         *  plus.
+         */
+        private long nextMiddle() {
+            int last = Math.min(middleRank, fwd.depth());
+            while (layer <= last) {
+                if (index < fwd.sizes.get(layer)) {
+                    long m = fwd.layers.get(layer)[index];
+                    index += 1;
+                    int d = bwd.visited.get(m);
+                    if (d != StateMap.ABSENT && d <= length - middleRank) {
+                        return m;
+                    }
+                } else {
+                    layer += 1;
+                    index = 0;
+                }
+            }
+            return 0;
+        }
+
+        private List<Order> path() {
+            List<Order> result = new ArrayList<Order>(length);
+            for (int j = head.length - 1; j >= 0; j--) {
+                result.add(head.moves[j]);
+            }
+            for (int j = 0; j < tail.length; j++) {
+                result.add(tail.moves[j]);
+            }
+            return form == null ? result : form.toOriginal(result);
+        }
+    }
+
+    /**
+     * L'un des deux parcours en largeur : ses niveaux, et la distance à sa
+     *  racine de chaque configuration atteinte.
+     * Depuis la configuration de travail, les ordres sont appliqués ; depuis
+     *  l'objectif, ils sont défaits.
+     */
+    private static final class Side {
+        private final boolean forward;
+        private final StateMap visited;
+        private final List<long[]> layers;
+        private final List<Integer> sizes;
+        // vrai si toutes les configurations accessibles ont été atteintes
+        private boolean complete;
+
+        Side(long root, boolean forward) {
+            this.forward = forward;
+            visited = new StateMap();
+            visited.putIfAbsent(root, (byte) 0);
+            layers = new ArrayList<long[]>();
+            sizes = new ArrayList<Integer>();
+            layers.add(new long[] {root});
+            sizes.add(1);
+        }
+
+        /**
+         * La profondeur du parcours.
+         */
+        int depth() {
+            return layers.size() - 1;
+        }
+
+        /**
+         * La plus grande distance à la racine en deçà de laquelle toute
+         *  configuration absente de visited est inaccessible.
+         */
+        int reach() {
+            return complete ? Integer.MAX_VALUE / 2 : depth();
+        }
+
+        int frontierSize() {
+            return sizes.get(depth());
+        }
+
+        /**
+         * Ajoute un niveau au parcours et retourne la plus petite distance
+         *  totale d'une nouvelle configuration déjà atteinte par other, ou -1
+         *  s'il n'y en a pas.
+         */
+        int expand(Side other, Order[] orders, int n) {
+            long[] layer = layers.get(depth());
+            int size = frontierSize();
+            byte d = (byte) (depth() + 1);
+            long[] next = new long[Math.max(1, size)];
+            int count = 0;
+            int best = -1;
+            for (int i = 0; i < size; i++) {
+                if (i % CHECK_PERIOD == 0) {
+                    checkInterrupted();
+                }
+                long s = layer[i];
+                for (Order o : orders) {
+                    long t = forward
+                            ? PackedState.apply(s, o, n)
+                            : PackedState.unapply(s, o, n);
+                    if (t != s && visited.putIfAbsent(t, d)) {
+                        int e = other.visited.get(t);
+                        if (e != StateMap.ABSENT && (best == -1 || d + e < best)) {
+                            best = d + e;
+                        }
+                        if (count == next.length) {
+                            next = Arrays.copyOf(next, 2 * count);
+                        }
+                        next[count++] = t;
+                    }
+                }
+            }
+            if (count == 0) {
+                complete = true;
+            } else {
+                layers.add(next);
+                sizes.add(count);
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Énumération en profondeur des chemins sans répétition de longueur
+     *  donnée qui mènent d'une configuration root à la racine d'un parcours
+     *  side : en défaisant les ordres vers la configuration de travail, en
+     *  les appliquant vers l'objectif.
+     * Un pas n'est retenu que si la distance à la racine de side de la
+     *  configuration atteinte ne dépasse pas le nombre de pas restants.
+     */
+    private static final class Walk {
+        private final int length;
+        private final Side side;
+        // states[j + 1] est atteinte depuis states[j] par moves[j]
+        private final long[] states;
+        private final Order[] moves;
+        // l'indice du prochain ordre à essayer à chaque pas
+        private final int[] tried;
+        private int step;
+        private boolean started;
+
+        Walk(long root, int length, Side side) {
+            this.length = length;
+            this.side = side;
+            states = new long[length + 1];
+            moves = new Order[length];
+            tried = new int[length + 1];
+            states[0] = root;
+        }
+
+        long root() {
+            return states[0];
+        }
+
+        /**
+         * Passe au chemin suivant ; retourne false s'il n'y en a plus.
+         */
+        boolean next(Order[] orders, int n) {
+            if (!started) {
+                started = true;
+                if (length == 0) {
+                    return true;
+                }
+            } else if (length == 0) {
+                return false;
+            }
+            while (step >= 0) {
+                if (tried[step] == orders.length) {
+                    step -= 1;
+                    continue;
+                }
+                Order o = orders[tried[step]];
+                tried[step] += 1;
+                long s = states[step];
+                // vers l'objectif, side est le parcours qui en part
+                long t = side.forward
+                        ? PackedState.unapply(s, o, n)
+                        : PackedState.apply(s, o, n);
+                int d = side.visited.get(t);
+                if (t == s || d == StateMap.ABSENT || d > length - step - 1
+                        || contains(step, t)) {
+                    continue;
+                }
+                moves[step] = o;
+                states[step + 1] = t;
+                if (step + 1 == length) {
+                    return true;
+                }
+                step += 1;
+                tried[step] = 0;
+            }
+            return false;
+        }
+
+        /**
+         * Indique si ce chemin et other partagent une configuration autre que
+         *  leur origine commune.
+         */
+        boolean meets(Walk other) {
+            for (int i = 1; i <= other.length; i++) {
+                if (contains(length, other.states[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean contains(int last, long t) {
+            for (int j = 0; j <= last; j++) {
+                if (states[j] == t) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package crazy.solver;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import crazy.model.Order;
+import crazy.model.PodiumModel;
+import crazy.model.PodiumManager.Rank;
+
+/**
+ * Un solveur calcule une suite d'ordres de longueur minimale qui transforme la
+ *  configuration de travail (WORK_LEFT, WORK_RIGHT) d'un gestionnaire de
+ *  podiums en sa configuration objectif (GOAL_LEFT, GOAL_RIGHT).
+ * Les ordres ont la même sémantique que dans StdPodiumManager.
+ * Un solveur peut interdire certains ordres (typiquement SO) : les solutions
+ *  ne contiennent alors que des ordres autorisés.
+ * Une recherche peut être annulée en interrompant le thread qui l'effectue :
+ *  solve lève alors CancellationException, sans effacer l'indicateur
+ *  d'interruption du thread.
+ * @inv <pre>
+ *     exists Order o : isAllowed(o) </pre>
+ */
+public interface Solver {
+
+    // REQUETES
+
+    /**
+     * Indique si l'ordre o peut figurer dans les solutions de ce solveur.
+     * @pre <pre>
+     *     o != null </pre>
+     */
+    boolean isAllowed(Order o);
+
+    /**
+     * Une suite d'ordres de longueur minimale transformant la configuration
+     *  de travail de models en sa configuration objectif.
+     * Vaut null si la configuration objectif est inaccessible avec les ordres
+     *  autorisés.
+     * @pre <pre>
+     *     models != null
+     *     forall Rank r : models.get(r) != null
+     *     les deux podiums de travail et les deux podiums objectif contiennent
+     *       les mêmes n éléments distincts, 2 <= n <= PackedState.MAX_ELEMENTS
+     *     forall Rank r : models.get(r).capacity() == n </pre>
+     * @throws CancellationException si le thread appelant est interrompu
+     *  pendant la recherche
+     */
+    <E> List<Order> solve(Map<Rank, PodiumModel<E>> models);
+
+    /**
+     * Une suite d'ordres de longueur minimale transformant la configuration
+     *  compacte start en la configuration compacte goal, sur n éléments.
+     * Vaut null si goal est inaccessible depuis start avec les ordres
+     *  autorisés.
+     * @pre <pre>
+     *     2 <= n <= PackedState.MAX_ELEMENTS
+     *     start et goal sont des configurations sur les mêmes n indices </pre>
+     * @throws CancellationException si le thread appelant est interrompu
+     *  pendant la recherche
+     */
+    List<Order> solve(long start, long goal, int n);
+}
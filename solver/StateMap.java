@@ -0,0 +1,144 @@
+package crazy.solver;
+
+import java.util.Arrays;
+
+import util.Contract;
+
+/**
+ * Table associative à adressage ouvert entre configurations compactes
+ *  (voir PackedState) et octets.
+ * Les clés et les valeurs sont stockées dans deux tableaux primitifs : aucune
+ *  allocation n'a lieu en dehors des agrandissements de la table.
+ * La clé 0 ne représente aucune configuration valide (les éléments sont
+ *  distincts) et sert à marquer les cases libres.
+ * @inv <pre>
+ *     0 <= size()
+ *     forall long s : contains(s) ==> s != 0 </pre>
+ */
+public final class StateMap {
+
+    // ATTRIBUTS
+
+    /**
+     * La valeur retournée par get pour une clé absente.
+     */
+    public static final byte ABSENT = -1;
+
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+
+    private long[] keys;
+    private byte[] values;
+    private int size;
+    private int mask;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Une table vide pouvant contenir expected clés sans agrandissement.
+     * @pre <pre>
+     *     expected >= 0 </pre>
+     */
+    public StateMap(int expected) {
+        Contract.checkCondition(expected >= 0);
+
+        int cap = DEFAULT_CAPACITY;
+        while (cap < 2L * expected) {
+            cap <<= 1;
+        }
+        keys = new long[cap];
+        values = new byte[cap];
+        mask = cap - 1;
+    }
+
+    public StateMap() {
+        this(0);
+    }
+
+    // REQUETES
+
+    /**
+     * Indique si s est une clé de cette table.
+     */
+    public boolean contains(long s) {
+        return keys[slot(s)] == s;
+    }
+
+    /**
+     * La valeur associée à s, ou ABSENT si s n'est pas une clé.
+     */
+    public byte get(long s) {
+        int i = slot(s);
+        return keys[i] == s ? values[i] : ABSENT;
+    }
+
+    /**
+     * Le nombre de clés de cette table.
+     */
+    public int size() {
+        return size;
+    }
+
+    // COMMANDES
+
+    /**
+     * Associe v à s si s n'est pas déjà une clé.
+     * Retourne true si s a été ajoutée.
+     * @pre <pre>
+     *     s != 0 </pre>
+     */
+    public boolean putIfAbsent(long s, byte v) {
+        int i = slot(s);
+        if (keys[i] == s) {
+            return false;
+        }
+        keys[i] = s;
+        values[i] = v;
+        size += 1;
+        if (2 * size > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Vide cette table sans la réduire.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        size = 0;
+    }
+
+    // OUTILS
+
+    /**
+     * La case contenant s, ou la case libre où s serait rangée.
+     */
+    private int slot(long s) {
+        int i = hash(s) & mask;
+        while (keys[i] != 0 && keys[i] != s) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        byte[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new byte[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long s = oldKeys[j];
+            if (s != 0) {
+                int i = slot(s);
+                keys[i] = s;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int hash(long s) {
+        long h = s * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,179 @@
+package crazy.solver;
+
+import java.util.Map;
+
+import crazy.model.PodiumModel;
+import util.Contract;
+
+/**
+ * Numérotation dense des configurations compactes sur n éléments : la
+ *  configuration s reçoit le rang split(s) * n! + r, où r est le rang de
+ *  Lehmer de sa permutation (lue dans l'ordre des quartets).
+ * Les rangs vont de 0 à count(n) - 1 = (n + 1) * n! - 1 : chaque répartition
+ *  de n éléments distincts sur deux podiums en reçoit exactement un. Un
+ *  ensemble de configurations peut donc être représenté par un tableau de
+ *  bits, et une fonction des configurations par un tableau indexé par les
+ *  rangs.
+ * rank et unrank coûtent O(n) opérations, sans allocation.
+ */
+public final class StateRanking {
+
+    // ATTRIBUTS
+
+    private static final int BITS = 4;
+    private static final long NIBBLE = 0xFL;
+    // 0, 1, ..., 14 dans les quartets de rang 0 à 14
+    private static final long IDENTITY = 0x0EDCBA9876543210L;
+    private static final long[] FACTORIALS = factorials();
+
+    // CONSTRUCTEURS
+
+    private StateRanking() {
+        // rien
+    }
+
+    // REQUETES
+
+    /**
+     * Le nombre de configurations sur n éléments : (n + 1) * n!.
+     * @pre <pre>
+     *     0 <= n <= PackedState.MAX_ELEMENTS </pre>
+     */
+    public static long count(int n) {
+        Contract.checkCondition(0 <= n && n <= PackedState.MAX_ELEMENTS);
+
+        return (n + 1) * FACTORIALS[n];
+    }
+
+    /**
+     * Le rang de la configuration s sur n éléments.
+     * @pre <pre>
+     *     0 <= n <= PackedState.MAX_ELEMENTS
+     *     s est une configuration sur n éléments </pre>
+     * @post <pre>
+     *     0 <= result < count(n)
+     *     unrank(result, n) == s </pre>
+     */
+    public static long rank(long s, int n) {
+        Contract.checkCondition(0 <= n && n <= PackedState.MAX_ELEMENTS);
+
+        long r = 0;
+        int used = 0;
+        for (int i = 0; i < n; i++) {
+            int e = PackedState.nibble(s, i);
+            r = r * (n - i) + e - Integer.bitCount(used & ((1 << e) - 1));
+            used |= 1 << e;
+        }
+        return PackedState.split(s) * FACTORIALS[n] + r;
+    }
+
+    /**
+     * Le rang de la configuration des podiums left et right, les indices des
+     *  éléments étant donnés par index (voir PackedState.encode).
+     * @pre <pre>
+     *     left != null && right != null && index != null
+     *     n = left.size() + right.size() <= PackedState.MAX_ELEMENTS
+     *     index associe aux éléments de left et right les indices
+     *       de 0 à n - 1 </pre>
+     */
+    public static <E> long rank(PodiumModel<E> left, PodiumModel<E> right,
+            Map<E, Integer> index) {
+        Contract.checkCondition(left != null && right != null);
+
+        return rank(PackedState.encode(left, right, index),
+                left.size() + right.size());
+    }
+
+    /**
+     * La configuration sur n éléments de rang r.
+     * @pre <pre>
+     *     0 <= n <= PackedState.MAX_ELEMENTS
+     *     0 <= r < count(n) </pre>
+     * @post <pre>
+     *     rank(result, n) == r </pre>
+     */
+    public static long unrank(long r, int n) {
+        Contract.checkCondition(0 <= n && n <= PackedState.MAX_ELEMENTS);
+        Contract.checkCondition(0 <= r && r < count(n));
+
+        long f = FACTORIALS[n];
+        int k = (int) (r / f);
+        long p = r - k * f;
+        // les chiffres du rang de Lehmer, un par quartet
+        long digits = 0;
+        int i = n - 1;
+        for (; p > Integer.MAX_VALUE; i--) {
+            int radix = n - i;
+            long q = p / radix;
+            digits |= (p - q * radix) << (BITS * i);
+            p = q;
+        }
+        // les divisions entières sont nettement plus rapides
+        int ip = (int) p;
+        for (; i >= 0; i--) {
+            int radix = n - i;
+            int q = ip / radix;
+            digits |= (long) (ip - q * radix) << (BITS * i);
+            ip = q;
+        }
+        // les éléments encore libres, par ordre croissant, un par quartet
+        long free = IDENTITY;
+        long s = 0;
+        for (i = 0; i < n; i++) {
+            int shift = BITS * PackedState.nibble(digits, i);
+            s |= ((free >>> shift) & NIBBLE) << (BITS * i);
+            long low = free & ((1L << shift) - 1);
+            free = low | ((free >>> BITS) & -(1L << shift));
+        }
+        return PackedState.withSplit(s, k);
+    }
+
+    // COMMANDES
+
+    /**
+     * Remplace le contenu de left et right par la configuration sur n
+     *  éléments de rang r, l'élément d'indice i étant elements[i].
+     * Les écouteurs des podiums sont notifiés de chaque modification.
+     * @pre <pre>
+     *     0 <= n <= PackedState.MAX_ELEMENTS
+     *     0 <= r < count(n)
+     *     elements != null && elements.length >= n
+     *     left != null && right != null
+     *     left.capacity() >= n && right.capacity() >= n </pre>
+     * @post <pre>
+     *     rank(left, right, index) == r, où index associe i à elements[i] </pre>
+     */
+    public static <E> void unrank(long r, int n, E[] elements,
+            PodiumModel<E> left, PodiumModel<E> right) {
+        Contract.checkCondition(elements != null && elements.length >= n);
+        Contract.checkCondition(left != null && right != null);
+        Contract.checkCondition(left.capacity() >= n
+                && right.capacity() >= n);
+
+        long s = unrank(r, n);
+        while (left.size() > 0) {
+            left.removeTop();
+        }
+        while (right.size() > 0) {
+            right.removeTop();
+        }
+        int k = PackedState.split(s);
+        for (int i = 0; i < k; i++) {
+            left.addTop(elements[PackedState.nibble(s, i)]);
+        }
+        for (int i = n - 1; i >= k; i--) {
+            right.addTop(elements[PackedState.nibble(s, i)]);
+        }
+    }
+
+    // OUTILS
+
+    private static long[] factorials() {
+        long[] f = new long[PackedState.MAX_ELEMENTS + 1];
+        f[0] = 1;
+        for (int i = 1; i < f.length; i++) {
+            f[i] = f[i - 1] * i;
+        }
+        return f;
+    }
+}
@@ -0,0 +1,419 @@
+package crazy.solver;
+
+import java.util.Arrays;
+
+import crazy.model.Order;
+import util.Contract;
+
+/**
+ * Table de transposition bornée, partagée entre solveurs et entre threads :
+ *  elle mémorise, pour des configurations rapportées à leur objectif, leur
+ *  distance exacte à cet objectif (avec le premier ordre d'une solution
+ *  minimale) ou un minorant de cette distance.
+ * Une configuration s d'objectif goal est désignée par la clé key(s, goal,
+ *  n), qui tient compte de n et de la taille du podium gauche de goal ; une
+ *  entrée vaut pour les solveurs qui autorisent SO ou pour ceux qui
+ *  l'interdisent, jamais pour les deux.
+ * La table est répartie en segments (lock striping), choisis selon la clé et
+ *  protégés chacun par son propre verrou. Un segment est une table à
+ *  adressage ouvert (sondage linéaire) de capacité fixe ; lorsqu'il est
+ *  plein, une entrée en est retirée par l'algorithme de l'horloge : chaque
+ *  entrée consultée est marquée, et l'aiguille retire la première entrée non
+ *  marquée qu'elle rencontre en effaçant les marques au passage.
+ * Les distances mémorisées sont au plus MAX_DISTANCE.
+ * @inv <pre>
+ *     0 <= size() <= getCapacity()
+ *     getHitsNb() >= 0 && getMissesNb() >= 0 && getEvictionsNb() >= 0 </pre>
+ */
+public final class TranspositionTable {
+
+    // ATTRIBUTS
+
+    /**
+     * La distance d'une configuration absente de la table.
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * La plus grande distance mémorisable.
+     */
+    public static final int MAX_DISTANCE = 63;
+
+    public static final int DEFAULT_STRIPES_NB = 16;
+
+    // une entrée est un int : distance (6 bits), exacte, SO autorisé, ordre
+    //  suivant (ordinal + 1, 0 s'il n'y en a pas), marque de l'horloge, case
+    //  occupée
+    private static final int EXACT = 1 << 6;
+    private static final int SO = 1 << 7;
+    private static final int NEXT_SHIFT = 8;
+    private static final int NEXT_MASK = 0x7;
+    private static final int REFERENCED = 1 << 29;
+    private static final int OCCUPIED = 1 << 30;
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int HALF = 32;
+    private static final Order[] ORDERS = Order.values();
+    // le nombre de clés des configurations sur moins de n éléments
+    private static final long[] OFFSETS = offsets();
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final int capacity;
+
+    // CONSTRUCTEURS
+
+    /**
+     * Une table d'au plus capacity entrées, répartie en stripesNb segments.
+     * @pre <pre>
+     *     stripesNb >= 1 et stripesNb est une puissance de 2
+     *     capacity >= stripesNb </pre>
+     */
+    public TranspositionTable(int capacity, int stripesNb) {
+        Contract.checkCondition(stripesNb >= 1
+                && Integer.bitCount(stripesNb) == 1);
+        Contract.checkCondition(capacity >= stripesNb);
+
+        int perStripe = capacity / stripesNb;
+        stripes = new Stripe[stripesNb];
+        for (int i = 0; i < stripesNb; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        stripeShift = Long.SIZE - Integer.numberOfTrailingZeros(stripesNb);
+        this.capacity = perStripe * stripesNb;
+    }
+
+    /**
+     * Une table d'au plus capacity entrées, répartie en DEFAULT_STRIPES_NB
+     *  segments.
+     * @pre <pre>
+     *     capacity >= DEFAULT_STRIPES_NB </pre>
+     */
+    public TranspositionTable(int capacity) {
+        this(capacity, DEFAULT_STRIPES_NB);
+    }
+
+    // REQUETES
+
+    /**
+     * La clé de la configuration s d'objectif goal, sur n éléments.
+     * Deux couples (s, goal) ont la même clé si et seulement si les mêmes
+     *  suites d'ordres mènent de s à goal.
+     * @pre <pre>
+     *     2 <= n <= PackedState.MAX_ELEMENTS
+     *     s et goal sont des configurations sur les mêmes n indices </pre>
+     */
+    public static long key(long s, long goal, int n) {
+        Contract.checkCondition(2 <= n && n <= PackedState.MAX_ELEMENTS);
+
+        return relativeKey(PackedState.relabel(s, goal, n), n,
+                PackedState.split(goal));
+    }
+
+    /**
+     * Le nombre maximal d'entrées.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * La distance exacte mémorisée pour key par les solveurs qui autorisent
+     *  SO si et seulement si soAllowed, ou UNKNOWN.
+     */
+    public int getDistance(long key, boolean soAllowed) {
+        int v = lookup(key, soAllowed);
+        return isExact(v) ? distance(v) : UNKNOWN;
+    }
+
+    /**
+     * Le meilleur minorant connu de la distance de key (sa distance si elle
+     *  est connue), 0 à défaut.
+     */
+    public int getLowerBound(long key, boolean soAllowed) {
+        int v = lookup(key, soAllowed);
+        return v == 0 ? 0 : distance(v);
+    }
+
+    /**
+     * Le premier ordre d'une solution minimale depuis key, ou null s'il
+     *  n'est pas connu (ou si key est son propre objectif).
+     */
+    public Order getNextOrder(long key, boolean soAllowed) {
+        return nextOrder(lookup(key, soAllowed));
+    }
+
+    /**
+     * Le nombre de consultations qui ont trouvé une entrée.
+     */
+    public long getHitsNb() {
+        long sum = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                sum += s.hits;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Le nombre de consultations qui n'ont pas trouvé d'entrée.
+     */
+    public long getMissesNb() {
+        long sum = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                sum += s.misses;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Le nombre d'entrées retirées pour faire de la place.
+     */
+    public long getEvictionsNb() {
+        long sum = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                sum += s.evictions;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Le nombre d'entrées.
+     */
+    public int size() {
+        int sum = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                sum += s.size;
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d entrées, %d succès, %d échecs,"
+                + " %d retraits", size(), capacity, getHitsNb(),
+                getMissesNb(), getEvictionsNb());
+    }
+
+    // COMMANDES
+
+    /**
+     * Mémorise que la distance de key est d, et que next est le premier
+     *  ordre d'une solution minimale.
+     * Ne fait rien si d > MAX_DISTANCE.
+     * @pre <pre>
+     *     d >= 0
+     *     d == 0 <==> next == null </pre>
+     */
+    public void putExact(long key, boolean soAllowed, int d, Order next) {
+        Contract.checkCondition(d >= 0);
+        Contract.checkCondition((d == 0) == (next == null));
+
+        if (d <= MAX_DISTANCE) {
+            int v = d | EXACT
+                    | (next == null ? 0 : next.ordinal() + 1) << NEXT_SHIFT;
+            stripe(key).put(key, soAllowed, v, mix(key));
+        }
+    }
+
+    /**
+     * Mémorise que la distance de key est au moins d, sauf si un meilleur
+     *  minorant ou la distance exacte sont déjà connus.
+     * Un minorant supérieur à MAX_DISTANCE est ramené à MAX_DISTANCE.
+     * @pre <pre>
+     *     d >= 0 </pre>
+     */
+    public void putLowerBound(long key, boolean soAllowed, int d) {
+        Contract.checkCondition(d >= 0);
+
+        stripe(key).put(key, soAllowed, Math.min(d, MAX_DISTANCE), mix(key));
+    }
+
+    /**
+     * Vide la table et remet ses compteurs à zéro.
+     */
+    public void clear() {
+        for (Stripe s : stripes) {
+            s.clear();
+        }
+    }
+
+    // OUTILS
+
+    /**
+     * La clé de la configuration r sur n éléments, rapportée à l'objectif
+     *  PackedState.identity(n, k).
+     */
+    static long relativeKey(long r, int n, int k) {
+        return OFFSETS[n] + k * StateRanking.count(n) + StateRanking.rank(r, n);
+    }
+
+    /**
+     * L'entrée de key, ou 0 s'il n'y en a pas.
+     */
+    int lookup(long key, boolean soAllowed) {
+        return stripe(key).get(key, soAllowed, mix(key));
+    }
+
+    static boolean isExact(int v) {
+        return (v & EXACT) != 0;
+    }
+
+    static int distance(int v) {
+        return v & MAX_DISTANCE;
+    }
+
+    static Order nextOrder(int v) {
+        int i = (v >>> NEXT_SHIFT) & NEXT_MASK;
+        return i == 0 ? null : ORDERS[i - 1];
+    }
+
+    private Stripe stripe(long key) {
+        return stripes.length == 1 ? stripes[0]
+                : stripes[(int) ((key * GOLDEN) >>> stripeShift)];
+    }
+
+    private static int mix(long key) {
+        long h = key * GOLDEN;
+        return (int) (h ^ (h >>> HALF));
+    }
+
+    private static long[] offsets() {
+        long[] result = new long[PackedState.MAX_ELEMENTS + 1];
+        for (int n = 1; n < result.length; n++) {
+            result[n] = result[n - 1] + n * StateRanking.count(n - 1);
+        }
+        return result;
+    }
+
+    /**
+     * Un segment de la table, dont toutes les méthodes s'exécutent sous son
+     *  verrou.
+     */
+    private static final class Stripe {
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+        private final int maxSize;
+        private int size;
+        private int hand;
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        Stripe(int maxSize) {
+            int cap = 2;
+            while (cap < 2 * maxSize) {
+                cap <<= 1;
+            }
+            keys = new long[cap];
+            values = new int[cap];
+            mask = cap - 1;
+            this.maxSize = maxSize;
+        }
+
+        synchronized int get(long key, boolean so, int hash) {
+            int i = find(key, so, hash);
+            if (values[i] == 0) {
+                misses += 1;
+                return 0;
+            }
+            hits += 1;
+            values[i] |= REFERENCED;
+            return values[i] & ~(REFERENCED | OCCUPIED);
+        }
+
+        synchronized void put(long key, boolean so, int v, int hash) {
+            int tag = (so ? SO : 0) | OCCUPIED | REFERENCED;
+            int i = find(key, so, hash);
+            int old = values[i];
+            if (old != 0) {
+                if (isExact(v) || !isExact(old) && distance(v) > distance(old)) {
+                    values[i] = v | tag;
+                } else {
+                    values[i] |= REFERENCED;
+                }
+                return;
+            }
+            if (size == maxSize) {
+                evict();
+                i = find(key, so, hash);
+            }
+            keys[i] = key;
+            values[i] = v | tag;
+            size += 1;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(values, 0);
+            size = 0;
+            hand = 0;
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+
+        /**
+         * La case de key, ou la case libre où l'insérer.
+         */
+        private int find(long key, boolean so, int hash) {
+            int tag = so ? SO : 0;
+            int i = hash & mask;
+            while (values[i] != 0
+                    && (keys[i] != key || (values[i] & SO) != tag)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        /**
+         * Retire une entrée : la première non marquée à partir de
+         *  l'aiguille, dont les marques sont effacées au passage.
+         */
+        private void evict() {
+            while (true) {
+                int v = values[hand];
+                if (v != 0) {
+                    if ((v & REFERENCED) != 0) {
+                        values[hand] = v & ~REFERENCED;
+                    } else {
+                        delete(hand);
+                        size -= 1;
+                        evictions += 1;
+                        return;
+                    }
+                }
+                hand = (hand + 1) & mask;
+            }
+        }
+
+        /**
+         * Libère la case i en ramenant vers elle les entrées suivantes qui
+         *  ne seraient plus accessibles depuis leur case d'origine.
+         */
+        private void delete(int i) {
+            int j = i;
+            while (true) {
+                values[i] = 0;
+                int home;
+                do {
+                    j = (j + 1) & mask;
+                    if (values[j] == 0) {
+                        return;
+                    }
+                    home = mix(keys[j]) & mask;
+                } while (i <= j ? i < home && home <= j : i < home || home <= j);
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+    }
+}
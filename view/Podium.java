@@ -46,6 +46,12 @@ public class Podium<E extends Drawable> extends JComponent {
     private static final int ELEM_HEIGHT = 40;
 
     private PodiumModel<E> model;
+    private final ChangeListener repainter = new ChangeListener() {
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            repaint();
+        }
+    };
 
     // CONSTRUCTEURS
 
@@ -159,15 +165,15 @@ public class Podium<E extends Drawable> extends JComponent {
      */
     private void fixModel(PodiumModel<E> pm) {
     	Contract.checkCondition(pm != null);
-    	model =pm;
-    	model.addChangeListener(new ChangeListener() {
-			@Override
-			public void stateChanged(ChangeEvent e) {
-				repaint();
-			}
-		});
-    	
-    	
+    	if (model == pm) {
+    	    // déjà observé : les gestionnaires réutilisent leurs modèles
+    	    return;
+    	}
+    	if (model != null) {
+    	    model.removeChangeListener(repainter);
+    	}
+    	model = pm;
+    	model.addChangeListener(repainter);
     }
     
     private void resetPreferredSize() {